@@ -0,0 +1,186 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.machine.ParallelModulePhase;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.module.QueueModule;
+import li.cil.tis3d.common.module.StackModule;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Differential check of {@link ParallelModulePhase} against serial stepping.
+ * <p>
+ * Generates random layouts of casings with execution, stack and queue modules,
+ * builds each layout twice, steps one copy serially and the other in parallel,
+ * and compares the full state of all modules and pipes after every step.
+ * Some programs halt and catch fire, which must happen in the same step for
+ * both copies, after which both are reset like a controller would.
+ */
+public final class ParallelStepCheck {
+    private static final String[] PROGRAMS = {
+        "MOV ANY, ACC\nADD 1\nMOV ACC, ANY",
+        "ADD 1\nMOV ACC, ANY",
+        "MOV UP, ACC\nMOV ACC, LEFT\nMOV ACC, DOWN",
+        "MOV ANY, ACC\nMOV ACC, LAST\nSWP\nADD 3\nSAV",
+        "MOV LEFT, RIGHT\nMOV RIGHT, LEFT",
+        "L: MOV ANY, ACC\nJGZ P\nNEG\nP: MOV ACC, ANY\nJMP L",
+        "MOV 7, ANY\nMOV ANY, NIL",
+        "MOV ANY, ACC\nJRO ACC\nMOV 1, UP\nMOV 2, RIGHT\nMOV 3, DOWN",
+        "L: MOV ANY, ACC\nSUB 20\nJGZ H\nADD 21\nMOV ACC, ANY\nJMP L\nH: HCF"
+    };
+
+    /**
+     * Size of the area layouts are generated in, per axis.
+     */
+    private static final int SIZE_XZ = 4, SIZE_Y = 2;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Checks layouts for the seeds and steps optionally specified as arguments
+     * and prints the result.
+     *
+     * @param args the number of layouts and steps per layout, both optional.
+     */
+    public static void main(final String[] args) {
+        final int layouts = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        final int partitions = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        final ForkJoinPool pool = new ForkJoinPool(partitions);
+        try {
+            int split = 0;
+            for (int seed = 0; seed < layouts; seed++) {
+                final VirtualMultiblock serial = generate(seed);
+                final VirtualMultiblock parallel = generate(seed);
+                parallel.setParallel(pool, partitions);
+                if (parallel.getPartitionCount() > 1) {
+                    split++;
+                }
+
+                final int divergence = check(serial, parallel, steps);
+                if (divergence >= 0) {
+                    System.out.println("Layout " + seed + " diverges in step " + divergence + ".");
+                    System.exit(1);
+                    return;
+                }
+            }
+            System.out.println("Checked " + layouts + " layouts (" + split + " split into partitions) for " + steps + " steps, all match.");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Step both multi-blocks the specified number of times, comparing their
+     * state after each step.
+     *
+     * @param expected the multi-block stepped serially.
+     * @param actual   the multi-block stepped in parallel.
+     * @param steps    the number of steps to run.
+     * @return the first step after which the states differ, or <code>-1</code> if they match.
+     */
+    public static int check(final VirtualMultiblock expected, final VirtualMultiblock actual, final int steps) {
+        for (int step = 0; step < steps; step++) {
+            final boolean expectedHalted = halts(expected);
+            final boolean actualHalted = halts(actual);
+            if (expectedHalted != actualHalted) {
+                return step;
+            }
+            if (!snapshot(expected).equals(snapshot(actual))) {
+                return step;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Generate a random layout for the specified seed. Modules are placed
+     * sparsely, so that layouts tend to contain separate groups of modules.
+     *
+     * @param seed the seed of the layout.
+     * @return the generated multi-block.
+     */
+    public static VirtualMultiblock generate(final long seed) {
+        final Random random = new Random(seed);
+        final VirtualMultiblock multiblock = new VirtualMultiblock();
+        for (int x = 0; x < SIZE_XZ; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_XZ; z++) {
+                    if (random.nextFloat() < 0.6f) {
+                        multiblock.addCasing(x, y, z);
+                    }
+                }
+            }
+        }
+
+        for (final VirtualCasing casing : multiblock.getCasings()) {
+            for (final Face face : Face.VALUES) {
+                if (!isOpen(multiblock, casing, face) || random.nextFloat() > 0.4f) {
+                    continue;
+                }
+
+                final int kind = random.nextInt(PROGRAMS.length + 2);
+                if (kind < PROGRAMS.length) {
+                    casing.setProgram(face, PROGRAMS[kind]);
+                } else if (kind == PROGRAMS.length) {
+                    casing.setModule(face, StackModule::new);
+                } else {
+                    casing.setModule(face, QueueModule::new);
+                }
+            }
+        }
+
+        return multiblock;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static boolean halts(final VirtualMultiblock multiblock) {
+        try {
+            multiblock.step();
+            return false;
+        } catch (final HaltAndCatchFireException e) {
+            multiblock.disable();
+            return true;
+        }
+    }
+
+    private static boolean isOpen(final VirtualMultiblock multiblock, final VirtualCasing casing, final Face face) {
+        final int x = casing.getPosition().getX() + Face.toDirection(face).getStepX();
+        final int y = casing.getPosition().getY() + Face.toDirection(face).getStepY();
+        final int z = casing.getPosition().getZ() + Face.toDirection(face).getStepZ();
+        return multiblock.getCasing(x, y, z) == null;
+    }
+
+    private static ListNBT snapshot(final VirtualMultiblock multiblock) {
+        final ListNBT nbt = new ListNBT();
+        for (final VirtualCasing casing : multiblock.getCasings()) {
+            for (final Face face : Face.VALUES) {
+                final CompoundNBT moduleNbt = new CompoundNBT();
+                final Module module = casing.getModule(face);
+                if (module != null) {
+                    module.save(moduleNbt);
+                }
+                nbt.add(moduleNbt);
+            }
+            for (final PipeImpl pipe : casing.getPipes()) {
+                final CompoundNBT pipeNbt = new CompoundNBT();
+                pipe.writeToNBT(pipeNbt);
+                nbt.add(pipeNbt);
+            }
+        }
+        return nbt;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ParallelStepCheck() {
+    }
+}
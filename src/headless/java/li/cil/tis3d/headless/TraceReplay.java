@@ -0,0 +1,171 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.TraceRecorder;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.BiFunction;
+
+import static li.cil.tis3d.common.machine.PipeTopology.pack;
+
+/**
+ * Replays traces recorded by a {@link TraceRecorder}, by rebuilding the
+ * multi-block from the keyframe of the trace in a {@link VirtualMultiblock}
+ * and stepping it, recording a new trace, which must match the original one.
+ * <p>
+ * Used to check that execution is deterministic, and to reproduce issues
+ * observed in the world outside of Minecraft.
+ */
+public final class TraceReplay {
+    /**
+     * Replays the trace stored in the file specified as the only argument
+     * and prints the result.
+     *
+     * @param args the command line arguments.
+     * @throws IOException if reading the trace fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TraceReplay <trace file>");
+            System.exit(2);
+            return;
+        }
+
+        final CompoundNBT nbt;
+        try (final InputStream stream = Files.newInputStream(Paths.get(args[0]))) {
+            nbt = CompressedStreamTools.readCompressed(stream);
+        }
+
+        final int steps = nbt.getInt(TraceRecorder.TAG_STEPS);
+        final int divergence = replay(nbt);
+        if (divergence < 0) {
+            System.out.println("Replayed " + steps + " steps, trace matches.");
+        } else {
+            System.out.println("Replayed " + steps + " steps, trace diverges in step " + divergence + ".");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replay the specified trace.
+     *
+     * @param nbt the trace, as stored by {@link TraceRecorder#save(CompoundNBT)}.
+     * @return the first step in which the replay differs from the trace, or
+     * <code>-1</code> if the replay matches the trace.
+     * @throws IllegalArgumentException if the trace has an unsupported version or module type.
+     */
+    public static int replay(final CompoundNBT nbt) {
+        if (nbt.getInt(TraceRecorder.TAG_VERSION) != TraceRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported trace version.");
+        }
+
+        final VirtualMultiblock multiblock = load(nbt.getList(TraceRecorder.TAG_KEYFRAME, Constants.NBT.TAG_COMPOUND));
+        final TraceRecorder recorder = multiblock.armTrace(nbt.getInt(TraceRecorder.TAG_CAPACITY));
+        multiblock.step(nbt.getInt(TraceRecorder.TAG_STEPS));
+
+        final int[] expected = nbt.getIntArray(TraceRecorder.TAG_RECORDS);
+        final int[] actual = recorder.getRecords();
+        for (int offset = 0; offset < Math.min(expected.length, actual.length); offset += TraceRecorder.RECORD_SIZE) {
+            if (!recordEquals(expected, actual, offset)) {
+                return Math.min(expected[offset + 1], actual[offset + 1]);
+            }
+        }
+        if (expected.length != actual.length) {
+            return expected.length < actual.length
+                ? actual[expected.length + 1]
+                : expected[actual.length + 1];
+        }
+        return -1;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Rebuild a multi-block from a keyframe. The last entry of the keyframe
+     * is the controller, all others are casings.
+     *
+     * @param keyframe the keyframe to rebuild the multi-block from.
+     * @return the rebuilt multi-block, enabled, in the state of the keyframe.
+     */
+    private static VirtualMultiblock load(final ListNBT keyframe) {
+        final VirtualMultiblock multiblock = new VirtualMultiblock();
+        final VirtualCasing[] hosts = new VirtualCasing[keyframe.size()];
+        for (int i = 0; i < keyframe.size(); i++) {
+            final CompoundNBT hostNbt = keyframe.getCompound(i);
+            final BlockPos position = BlockPos.of(hostNbt.getLong(TraceRecorder.TAG_POSITION));
+            hosts[i] = hostNbt.getBoolean(TraceRecorder.TAG_CASING)
+                ? multiblock.addCasing(position.getX(), position.getY(), position.getZ())
+                : multiblock.addController(position.getX(), position.getY(), position.getZ());
+        }
+
+        // Enable before loading state, enabling modules may reset their state.
+        multiblock.enable();
+
+        for (int i = 0; i < keyframe.size(); i++) {
+            final CompoundNBT hostNbt = keyframe.getCompound(i);
+            final VirtualCasing host = hosts[i];
+
+            final ListNBT modulesNbt = hostNbt.getList(TraceRecorder.TAG_MODULES, Constants.NBT.TAG_COMPOUND);
+            for (int j = 0; j < modulesNbt.size(); j++) {
+                final CompoundNBT entryNbt = modulesNbt.getCompound(j);
+                final Face face = Face.VALUES[entryNbt.getByte(TraceRecorder.TAG_FACE)];
+                final BiFunction<Casing, Face, Module> factory = TraceRecorder.getReplayableModule(entryNbt.getString(TraceRecorder.TAG_TYPE));
+                if (factory == null) {
+                    throw new IllegalArgumentException("Unsupported module type " + entryNbt.getString(TraceRecorder.TAG_TYPE) + ".");
+                }
+                host.setModule(face, factory).load(entryNbt.getCompound(TraceRecorder.TAG_MODULE));
+            }
+
+            final byte[] locked = hostNbt.getByteArray(TraceRecorder.TAG_LOCKED);
+            if (locked.length > 0) {
+                for (final Face face : Face.VALUES) {
+                    for (final Port port : Port.VALUES) {
+                        host.setReceivingPipeLocked(face, port, locked[pack(face, port)] != 0);
+                    }
+                }
+            }
+
+            final ListNBT pipesNbt = hostNbt.getList(TraceRecorder.TAG_PIPES, Constants.NBT.TAG_COMPOUND);
+            final PipeImpl[] pipes = host.getPipes();
+            for (int j = 0; j < Math.min(pipes.length, pipesNbt.size()); j++) {
+                pipes[j].readFromNBT(pipesNbt.getCompound(j));
+            }
+        }
+
+        return multiblock;
+    }
+
+    /**
+     * Compare the records starting at the specified offset in two traces.
+     *
+     * @param expected the records of the trace.
+     * @param actual   the records of the replay.
+     * @param offset   the offset of the record to compare.
+     * @return <code>true</code> if the records are equal.
+     */
+    private static boolean recordEquals(final int[] expected, final int[] actual, final int offset) {
+        for (int i = offset; i < offset + TraceRecorder.RECORD_SIZE; i++) {
+            if (expected[i] != actual[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private TraceReplay() {
+    }
+}
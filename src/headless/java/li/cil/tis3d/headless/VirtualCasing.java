@@ -0,0 +1,382 @@
+package li.cil.tis3d.headless;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.machine.DetachedCasing;
+import li.cil.tis3d.common.machine.LockedPipe;
+import li.cil.tis3d.common.machine.PipeHost;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.PipeStates;
+import li.cil.tis3d.common.machine.SuspendableModule;
+import li.cil.tis3d.common.machine.TraceRecorder;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.function.BiFunction;
+
+import static li.cil.tis3d.common.machine.PipeTopology.*;
+
+/**
+ * A casing in a {@link VirtualMultiblock}, hosting modules and pipes like a
+ * casing tile entity does, but without a world.
+ * <p>
+ * Data modules send to clients is dropped, and there is no world to return from
+ * {@link #getCasingLevel()}, so only modules that do not interact with the world
+ * directly, such as the {@link ExecutionModule}, can be simulated.
+ */
+public final class VirtualCasing implements DetachedCasing, PipeHost {
+    private final VirtualMultiblock multiblock;
+    private final BlockPos position;
+
+    /**
+     * Whether this is the controller of the multi-block, which has no modules.
+     */
+    private final boolean isController;
+
+    /**
+     * The {@link Module}s currently installed in this casing.
+     */
+    private final Module[] modules = new Module[Face.VALUES.length];
+
+    /**
+     * The flat list of all {@link Pipe}s on this casing, see {@link li.cil.tis3d.common.machine.PipeTopology}.
+     */
+    private final PipeImpl[] pipes = new PipeImpl[PIPE_COUNT];
+    private final PipeStates pipeStates = new PipeStates(PIPE_COUNT);
+
+    private final VirtualCasing[] neighbors = new VirtualCasing[Face.VALUES.length];
+    private final PipeImpl[] pipeOverride = new PipeImpl[PIPE_COUNT];
+
+    /**
+     * Which receiving pipes of this casing are currently locked.
+     */
+    private final boolean[] locked = new boolean[PIPE_COUNT];
+
+    // --------------------------------------------------------------------- //
+
+    VirtualCasing(final VirtualMultiblock multiblock, final BlockPos position, final boolean isController) {
+        this.multiblock = multiblock;
+        this.position = position;
+        this.isController = isController;
+
+        for (final Face face : Face.VALUES) {
+            for (final Port port : Port.VALUES) {
+                final int pipeIndex = pack(face, port);
+                pipeOverride[pipeIndex] = pipes[pipeIndex] = new PipeImpl(pipeStates, pipeIndex, this, face, mapFace(face, port), mapPort(face, port));
+            }
+        }
+    }
+
+    /**
+     * Install a module on the specified face of the casing, replacing the
+     * module currently installed on that face, if any.
+     *
+     * @param face    the face to install the module on.
+     * @param factory the factory creating the module, typically its constructor.
+     * @param <T>     the type of the module.
+     * @return the installed module.
+     * @throws IllegalArgumentException if the face is connected to another casing.
+     * @throws IllegalStateException    if this is the controller of the multi-block.
+     */
+    public <T extends Module> T setModule(final Face face, final BiFunction<Casing, Face, T> factory) {
+        if (isController) {
+            throw new IllegalStateException("Controllers cannot hold modules.");
+        }
+        if (neighbors[face.ordinal()] != null) {
+            throw new IllegalArgumentException("Face is connected to another casing.");
+        }
+
+        removeModule(face);
+
+        final T module = factory.apply(this, face);
+        modules[face.ordinal()] = module;
+        multiblock.onModulesChanged();
+        if (isEnabled()) {
+            module.onEnabled();
+        }
+        return module;
+    }
+
+    /**
+     * Install an execution module running the specified code on the specified
+     * face of the casing.
+     *
+     * @param face the face to install the module on.
+     * @param code the code to run on the module, lines separated by newlines.
+     * @return the installed module.
+     * @throws IllegalArgumentException if the face is connected to another casing.
+     * @throws IllegalStateException    if this is the controller of the multi-block.
+     */
+    public ExecutionModule setProgram(final Face face, final String code) {
+        final ExecutionModule module = setModule(face, ExecutionModule::new);
+        module.getState().setProgram(Compiler.compile(code));
+        return module;
+    }
+
+    /**
+     * Remove the module installed on the specified face of the casing, if any.
+     *
+     * @param face the face to remove the module from.
+     */
+    public void removeModule(final Face face) {
+        final Module module = modules[face.ordinal()];
+        if (module == null) {
+            return;
+        }
+
+        if (isEnabled()) {
+            module.onDisabled();
+        }
+        module.onDisposed();
+        modules[face.ordinal()] = null;
+        multiblock.onModulesChanged();
+
+        for (final Port port : Port.VALUES) {
+            getReceivingPipe(face, port).cancelRead();
+            getSendingPipe(face, port).cancelWrite();
+        }
+    }
+
+    /**
+     * Lock or unlock the specified receiving pipe of this casing. Locked pipes
+     * can neither be read from nor written to.
+     *
+     * @param face  the face to set the locked state for.
+     * @param port  the port of the receiving pipe to set the locked state for.
+     * @param value <code>true</code> to lock the pipe; <code>false</code> to unlock it.
+     */
+    public void setReceivingPipeLocked(final Face face, final Port port, final boolean value) {
+        if (locked[pack(face, port)] != value) {
+            getReceivingPipe(face, port).cancelRead();
+            locked[pack(face, port)] = value;
+            resumeModules();
+            multiblock.onModulesChanged();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    void onEnabled() {
+        for (final Module module : modules) {
+            if (module != null) {
+                module.onEnabled();
+            }
+        }
+    }
+
+    void onDisabled() {
+        for (final Module module : modules) {
+            if (module != null) {
+                module.onDisabled();
+            }
+        }
+        for (final Pipe pipe : pipes) {
+            pipe.cancelRead();
+            pipe.cancelWrite();
+        }
+    }
+
+    /**
+     * Advance the logic of all modules of this casing by one step, skipping
+     * suspended modules. Usually called via {@link VirtualMultiblock#step()}.
+     */
+    public void stepModules() {
+        for (final Module module : modules) {
+            if (module != null && !isSuspended(module)) {
+                module.step();
+            }
+        }
+    }
+
+    /**
+     * Advance the logic of all pipes of this casing by one step. Usually
+     * called via {@link VirtualMultiblock#step()}.
+     */
+    public void stepPipes() {
+        pipeStates.step();
+    }
+
+    PipeStates getPipeStates() {
+        return pipeStates;
+    }
+
+    boolean hasModules() {
+        for (final Module module : modules) {
+            if (module != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasOpenFace() {
+        for (final VirtualCasing neighbor : neighbors) {
+            if (neighbor == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void setNeighbor(final Face face, @Nullable final VirtualCasing neighbor) {
+        neighbors[face.ordinal()] = neighbor;
+    }
+
+    void rebuildOverrides() {
+        // Reset to initial state before checking for inter-block connections.
+        System.arraycopy(pipes, 0, pipeOverride, 0, pipes.length);
+
+        for (final Face face : Face.VALUES) {
+            if (neighbors[face.ordinal()] != null) {
+                continue;
+            }
+
+            for (final Port port : Port.VALUES) {
+                final Face otherFace = mapFace(face, port);
+                final Port otherPort = mapPort(face, port);
+
+                final VirtualCasing neighbor = neighbors[otherFace.ordinal()];
+                if (neighbor != null) {
+                    final Face neighborFace = otherFace.getOpposite();
+                    final Port neighborPort = flipSide(otherFace, otherPort);
+                    neighbor.computePipeOverrides(neighborFace, neighborPort, this, face, port);
+                }
+            }
+        }
+
+        // Modules may be waiting on pipes that are no longer connected to them.
+        resumeModules();
+    }
+
+    // --------------------------------------------------------------------- //
+    // Casing
+
+    /**
+     * Virtual casings do not exist in a world.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public World getCasingLevel() {
+        throw new UnsupportedOperationException("Virtual casings do not exist in a world.");
+    }
+
+    @Override
+    public BlockPos getPosition() {
+        return position;
+    }
+
+    @Override
+    public void setChanged() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return multiblock.isEnabled();
+    }
+
+    @Override
+    public boolean isLocked() {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Module getModule(final Face face) {
+        return modules[face.ordinal()];
+    }
+
+    @Override
+    public Pipe getReceivingPipe(final Face face, final Port port) {
+        return locked[pack(face, port)] ? LockedPipe.INSTANCE : pipeOverride[pack(face, port)];
+    }
+
+    @Override
+    public Pipe getSendingPipe(final Face face, final Port port) {
+        return pipeOverride[packMapped(face, port)];
+    }
+
+    @Override
+    public void sendData(final Face face, final CompoundNBT data, final byte type) {
+    }
+
+    @Override
+    public void sendData(final Face face, final CompoundNBT data) {
+    }
+
+    @Override
+    public void sendData(final Face face, final ByteBuf data, final byte type) {
+    }
+
+    @Override
+    public void sendData(final Face face, final ByteBuf data) {
+    }
+
+    // --------------------------------------------------------------------- //
+    // PipeHost
+
+    @Override
+    public BlockPos getPipeHostPosition() {
+        return position;
+    }
+
+    @Override
+    public PipeImpl[] getPipes() {
+        return pipes;
+    }
+
+    @Override
+    public void onTransfer(final Face receivingFace, final Face sendingFace, final Port sendingPort, final short value) {
+        final TraceRecorder recorder = multiblock.getTraceRecorder();
+        if (recorder != null) {
+            recorder.recordTransfer(this, sendingFace, sendingPort, value);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void resumeModules() {
+        for (final Module module : modules) {
+            if (module instanceof SuspendableModule) {
+                ((SuspendableModule) module).resume();
+            }
+        }
+    }
+
+    private static boolean isSuspended(final Module module) {
+        return module instanceof SuspendableModule && ((SuspendableModule) module).isSuspended();
+    }
+
+    /**
+     * Same as the tile entity variant, connects pipes of open faces across
+     * the edges of the multi-block.
+     */
+    private void computePipeOverrides(final Face face, final Port port, final VirtualCasing start, final Face startFace, final Port startPort) {
+        // Avoid cycles for inner faces of 2x2 structures.
+        if (start == this) {
+            return;
+        }
+
+        final Face otherFace = mapFace(face, port);
+        final Port otherPort = mapPort(face, port);
+
+        final VirtualCasing neighbor = neighbors[otherFace.ordinal()];
+        if (neighbor != null) {
+            final Face neighborFace = otherFace.getOpposite();
+            final Port neighborPort = flipSide(otherFace, otherPort);
+            neighbor.computePipeOverrides(neighborFace, neighborPort, start, startFace, startPort);
+        } else {
+            final int receivingIndex = pack(startFace, startPort);
+            final int mySendingIndex = packMapped(otherFace, otherPort);
+            start.pipeOverride[receivingIndex] = pipes[mySendingIndex];
+        }
+    }
+}
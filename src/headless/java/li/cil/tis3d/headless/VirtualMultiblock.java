@@ -0,0 +1,370 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.common.machine.ActivePipes;
+import li.cil.tis3d.common.machine.ParallelModulePhase;
+import li.cil.tis3d.common.machine.PipeStates;
+import li.cil.tis3d.common.machine.TraceRecorder;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A multi-block of {@link VirtualCasing}s, stepped like a controller steps
+ * the casings connected to it, but outside of Minecraft.
+ * <p>
+ * Casings are stepped in order of their position, same as in the world, so
+ * simulations are deterministic and yield the same results as the same
+ * layout in the world. Example:
+ * <pre>
+ * final VirtualMultiblock multiblock = new VirtualMultiblock();
+ * final VirtualCasing casing = multiblock.addCasing(0, 0, 0);
+ * casing.setProgram(Face.Y_POS, "MOV 1, ACC\nMOV ACC, RIGHT");
+ * multiblock.step(1000);
+ * </pre>
+ * Unlike in the world, the number of casings is not limited, and a controller
+ * is optional. Adding one only matters for pipes across its faces.
+ */
+public final class VirtualMultiblock {
+    private final Map<BlockPos, VirtualCasing> casingsByPosition = new HashMap<>();
+
+    /**
+     * The casings of the multi-block, sorted by position.
+     */
+    private final List<VirtualCasing> casings = new ArrayList<>();
+
+    /**
+     * The casings with modules, and the pipes of casings with open faces that
+     * are not idle, the only ones that need stepping, same as in a controller.
+     * Rebuilt when dirty.
+     */
+    private final List<VirtualCasing> moduleCasings = new ArrayList<>();
+    private final ActivePipes activePipes = new ActivePipes();
+    private boolean isActiveCasingsDirty = true;
+
+    /**
+     * The controller of the multi-block, if any. Not part of {@link #casings}.
+     */
+    @Nullable
+    private VirtualCasing controller;
+
+    @Nullable
+    private TraceRecorder traceRecorder;
+
+    /**
+     * The pool to step modules on in parallel, if enabled, see {@link #setParallel(ForkJoinPool, int)}.
+     */
+    @Nullable
+    private ForkJoinPool pool;
+    private int partitions;
+
+    /**
+     * The partitions of the modules stepped in parallel, rebuilt when dirty.
+     */
+    @Nullable
+    private ParallelModulePhase modulePhase;
+    private boolean isModulePhaseDirty = true;
+
+    private boolean isEnabled;
+    private long stepCount;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Add a casing at the specified position and connect it to adjacent casings.
+     *
+     * @param x the x coordinate of the casing.
+     * @param y the y coordinate of the casing.
+     * @param z the z coordinate of the casing.
+     * @return the added casing.
+     * @throws IllegalArgumentException if there already is a casing at the position.
+     */
+    public VirtualCasing addCasing(final int x, final int y, final int z) {
+        final VirtualCasing casing = add(new BlockPos(x, y, z), false);
+        casings.add(casing);
+        casings.sort(Comparator.comparing(VirtualCasing::getPosition));
+
+        rebuildOverrides();
+
+        return casing;
+    }
+
+    /**
+     * Add the controller at the specified position and connect it to adjacent
+     * casings. The controller cannot hold modules, but like in the world, pipes
+     * pass across its faces.
+     *
+     * @param x the x coordinate of the controller.
+     * @param y the y coordinate of the controller.
+     * @param z the z coordinate of the controller.
+     * @return the added controller.
+     * @throws IllegalArgumentException if there already is a casing at the position.
+     * @throws IllegalStateException    if there already is a controller.
+     */
+    public VirtualCasing addController(final int x, final int y, final int z) {
+        if (controller != null) {
+            throw new IllegalStateException("There already is a controller.");
+        }
+
+        controller = add(new BlockPos(x, y, z), true);
+
+        rebuildOverrides();
+
+        return controller;
+    }
+
+    /**
+     * Get the casing at the specified position.
+     *
+     * @param x the x coordinate of the casing.
+     * @param y the y coordinate of the casing.
+     * @param z the z coordinate of the casing.
+     * @return the casing at the position, or <code>null</code> if there is none.
+     */
+    @Nullable
+    public VirtualCasing getCasing(final int x, final int y, final int z) {
+        final VirtualCasing casing = casingsByPosition.get(new BlockPos(x, y, z));
+        return casing != controller ? casing : null;
+    }
+
+    /**
+     * Get all casings of the multi-block, in the order they are stepped in.
+     *
+     * @return the casings of the multi-block.
+     */
+    public List<VirtualCasing> getCasings() {
+        return Collections.unmodifiableList(casings);
+    }
+
+    /**
+     * Get the controller of the multi-block.
+     *
+     * @return the controller, or <code>null</code> if none was added.
+     */
+    @Nullable
+    public VirtualCasing getController() {
+        return controller;
+    }
+
+    /**
+     * Whether the multi-block is running, i.e. whether its modules are enabled.
+     *
+     * @return <code>true</code> if the multi-block is running; <code>false</code> otherwise.
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Enable all modules, like powering a controller does. This happens
+     * automatically on the first step.
+     */
+    public void enable() {
+        if (isEnabled) {
+            return;
+        }
+        isEnabled = true;
+        casings.forEach(VirtualCasing::onEnabled);
+    }
+
+    /**
+     * Disable all modules and reset all pipes, like powering down a controller
+     * does. Stops tracing, if armed.
+     */
+    public void disable() {
+        if (!isEnabled) {
+            return;
+        }
+        isEnabled = false;
+        casings.forEach(VirtualCasing::onDisabled);
+        if (controller != null) {
+            controller.onDisabled();
+        }
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+        }
+    }
+
+    /**
+     * Start tracing the execution of the multi-block, same as arming a trace
+     * on a controller in the world. Replaces the current trace, if any.
+     *
+     * @param capacity the maximum number of records to keep.
+     * @return the new trace recorder.
+     * @throws IllegalStateException    if there is no controller.
+     * @throws IllegalArgumentException if the multi-block cannot be replayed, see {@link TraceRecorder#isReplayable(List)}.
+     */
+    public TraceRecorder armTrace(final int capacity) {
+        if (controller == null) {
+            throw new IllegalStateException("Tracing requires a controller.");
+        }
+        traceRecorder = new TraceRecorder(casings, controller, capacity);
+        return traceRecorder;
+    }
+
+    /**
+     * Stop tracing and discard the current trace, if any.
+     */
+    public void disarmTrace() {
+        traceRecorder = null;
+    }
+
+    /**
+     * Get the recorder tracing the execution of the multi-block.
+     *
+     * @return the trace recorder, or <code>null</code> if tracing is not armed.
+     */
+    @Nullable
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Step modules in parallel on the specified pool, same as controllers do when
+     * splitting multi-blocks into partitions is enabled. Ignored while tracing.
+     *
+     * @param pool       the pool to step modules on, or <code>null</code> to step serially.
+     * @param partitions the maximum number of partitions to split modules into.
+     */
+    public void setParallel(@Nullable final ForkJoinPool pool, final int partitions) {
+        this.pool = pool;
+        this.partitions = partitions;
+        isModulePhaseDirty = true;
+    }
+
+    /**
+     * The number of partitions modules are currently stepped in.
+     *
+     * @return the number of partitions, one when stepping serially.
+     */
+    public int getPartitionCount() {
+        final ParallelModulePhase phase = getModulePhase();
+        return phase != null ? phase.getPartitionCount() : 1;
+    }
+
+    /**
+     * The number of steps performed since the multi-block was created.
+     *
+     * @return the number of steps performed.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Advance all casings by one step.
+     *
+     * @throws HaltAndCatchFireException if a module halted and caught fire. In
+     *                                   the world this resets the controller, here
+     *                                   it is up to the caller to {@link #disable()}.
+     */
+    public void step() {
+        enable();
+        updateActiveCasings();
+
+        final ParallelModulePhase phase = getModulePhase();
+        if (phase != null && pool != null) {
+            phase.step(pool);
+        } else {
+            moduleCasings.forEach(VirtualCasing::stepModules);
+        }
+        activePipes.step();
+        stepCount++;
+
+        if (traceRecorder != null) {
+            traceRecorder.finishStep();
+        }
+    }
+
+    /**
+     * Advance all casings by the specified number of steps.
+     *
+     * @param steps the number of steps to perform.
+     * @throws HaltAndCatchFireException if a module halted and caught fire.
+     */
+    public void step(final int steps) {
+        for (int step = 0; step < steps; step++) {
+            step();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Rebuild the casings to step and the partitions of modules stepped in
+     * parallel before the next step, because modules or connections between
+     * them changed.
+     */
+    void onModulesChanged() {
+        isActiveCasingsDirty = true;
+        isModulePhaseDirty = true;
+    }
+
+    private void updateActiveCasings() {
+        if (!isActiveCasingsDirty) {
+            return;
+        }
+        isActiveCasingsDirty = false;
+
+        moduleCasings.clear();
+        final List<PipeStates> pipeStates = new ArrayList<>();
+        for (final VirtualCasing casing : casings) {
+            if (casing.hasModules()) {
+                moduleCasings.add(casing);
+            }
+            if (casing.hasOpenFace()) {
+                pipeStates.add(casing.getPipeStates());
+            }
+        }
+        if (controller != null) {
+            pipeStates.add(controller.getPipeStates());
+        }
+        activePipes.setMembers(pipeStates);
+    }
+
+    @Nullable
+    private ParallelModulePhase getModulePhase() {
+        if (pool == null || traceRecorder != null) {
+            return null;
+        }
+        if (isModulePhaseDirty) {
+            isModulePhaseDirty = false;
+            updateActiveCasings();
+            modulePhase = ParallelModulePhase.create(moduleCasings, partitions);
+        }
+        return modulePhase;
+    }
+
+    private VirtualCasing add(final BlockPos position, final boolean isController) {
+        if (casingsByPosition.containsKey(position)) {
+            throw new IllegalArgumentException("There already is a casing at " + position + ".");
+        }
+
+        final VirtualCasing casing = new VirtualCasing(this, position, isController);
+        casingsByPosition.put(position, casing);
+
+        for (final Face face : Face.VALUES) {
+            final VirtualCasing neighbor = casingsByPosition.get(position.relative(Face.toDirection(face)));
+            if (neighbor != null) {
+                if (neighbor.getModule(face.getOpposite()) != null) {
+                    throw new IllegalArgumentException("Neighboring casing has a module facing " + position + ".");
+                }
+                casing.setNeighbor(face, neighbor);
+                neighbor.setNeighbor(face.getOpposite(), casing);
+            }
+        }
+
+        return casing;
+    }
+
+    private void rebuildOverrides() {
+        casings.forEach(VirtualCasing::rebuildOverrides);
+        if (controller != null) {
+            controller.rebuildOverrides();
+        }
+        onModulesChanged();
+    }
+}
@@ -0,0 +1,100 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compilation of short and maximum length programs.
+ * <p>
+ * Programs are interned by their code, so to measure actual compilation the
+ * leading comment line of each program is made unique per invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+    private static final List<String> SHORT_PROGRAM = Arrays.asList(
+        "# SHORT",
+        "MOV UP, ACC",
+        "ADD 1",
+        "MOV ACC, DOWN");
+
+    // Exactly CommonConfig.maxLinesPerProgram lines, using all instructions.
+    private static final List<String> MAX_LENGTH_PROGRAM = Arrays.asList(
+        "# SIGNAL PROCESSING KERNEL",
+        "#DEFINE IN LEFT",
+        "#DEFINE OUT RIGHT",
+        "START: MOV IN, ACC",
+        "JEZ ZERO",
+        "JLZ NEGATIVE",
+        "SAV",
+        "SHL 1",
+        "ADD 3",
+        "MUL 5",
+        "DIV 2",
+        "SWP",
+        "SUB 1",
+        "SWP",
+        "MOV ACC, OUT",
+        "JMP START",
+        "ZERO: MOV 0, OUT",
+        "MOV UP, ACC",
+        "AND 255",
+        "OR 16",
+        "XOR 3",
+        "MOV ACC, DOWN",
+        "JMP START",
+        "NEGATIVE: NEG",
+        "SAV",
+        "MOV ACC, OUT",
+        "SWP",
+        "NOT",
+        "SHR 2",
+        "MOV ACC, ANY",
+        "MOV LAST, ACC",
+        "RRLAST",
+        "JRO ACC",
+        "ADD NIL",
+        "MOV ANY, NIL",
+        "RLLAST",
+        "JNZ START",
+        "NOP",
+        "HCF",
+        "JMP START");
+
+    private List<String> shortProgram;
+    private List<String> maxLengthProgram;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        shortProgram = new ArrayList<>(SHORT_PROGRAM);
+        maxLengthProgram = new ArrayList<>(MAX_LENGTH_PROGRAM);
+    }
+
+    @Benchmark
+    public CompiledProgram compileShort() {
+        shortProgram.set(0, "# " + counter++);
+        return Compiler.compile(shortProgram);
+    }
+
+    @Benchmark
+    public CompiledProgram compileMaxLength() {
+        maxLengthProgram.set(0, "# " + counter++);
+        return Compiler.compile(maxLengthProgram);
+    }
+
+    @Benchmark
+    public CompiledProgram compileInterned() {
+        return Compiler.compile(MAX_LENGTH_PROGRAM);
+    }
+}
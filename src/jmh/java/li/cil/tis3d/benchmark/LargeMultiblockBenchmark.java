@@ -0,0 +1,60 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.headless.VirtualMultiblock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full step of solid cubes of casings of increasing size, with the same
+ * number of execution modules in each, to compare how the cost of a step
+ * grows with the size of a multi-block against how it grows with activity.
+ * <p>
+ * Casings inside the cube have no open faces and are never stepped, so the
+ * cost should only grow with the surface of the cube, not its volume.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeMultiblockBenchmark {
+    private static final String PROGRAM_WORKER = "MOV ANY, ACC\nADD 1\nMOV ACC, ANY";
+    private static final String PROGRAM_SOURCE = "ADD 1\nMOV ACC, ANY";
+
+    /**
+     * The number of casings along each edge of the cube, i.e. 64, 512 and 4096 casings.
+     */
+    @Param({"4", "8", "16"})
+    public int size;
+
+    private VirtualMultiblock multiblock;
+
+    @Setup
+    public void setup() {
+        multiblock = new VirtualMultiblock();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    multiblock.addCasing(x, y, z);
+                }
+            }
+        }
+
+        // The same 4x4 patch of modules on top of the cube, regardless of size.
+        final int top = size - 1;
+        for (int x = 0; x < 4; x++) {
+            for (int z = 0; z < 4; z++) {
+                multiblock.getCasing(x, top, z).setProgram(Face.Y_POS, x == 0 && z == 0 ? PROGRAM_SOURCE : PROGRAM_WORKER);
+            }
+        }
+        multiblock.enable();
+    }
+
+    @Benchmark
+    public void step() {
+        multiblock.step();
+    }
+}
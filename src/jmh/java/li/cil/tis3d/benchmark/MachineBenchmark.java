@@ -0,0 +1,64 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.headless.VirtualCasing;
+import li.cil.tis3d.headless.VirtualMultiblock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of single machine steps, for programs only working on registers,
+ * programs passing values through pipes and programs reading from <tt>ANY</tt>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MachineBenchmark {
+    private ExecutionModule arithmetic;
+    private VirtualMultiblock ports;
+    private VirtualMultiblock any;
+
+    @Setup
+    public void setup() {
+        final VirtualMultiblock registers = new VirtualMultiblock();
+        arithmetic = registers.addCasing(0, 0, 0).setProgram(Face.Y_POS,
+            "L: ADD 3\nSAV\nSUB 1\nSWP\nJGZ L\nNEG\nJMP L");
+        registers.enable();
+
+        // Two modules passing a value back and forth.
+        ports = new VirtualMultiblock();
+        final VirtualCasing pingPong = ports.addCasing(0, 0, 0);
+        pingPong.setProgram(Face.Z_NEG, "MOV ACC, LEFT\nMOV LEFT, ACC\nADD 1");
+        pingPong.setProgram(Face.X_POS, "MOV RIGHT, ACC\nADD 1\nMOV ACC, RIGHT");
+        ports.enable();
+
+        // Four writers competing for a single reader.
+        any = new VirtualMultiblock();
+        final VirtualCasing fanIn = any.addCasing(0, 0, 0);
+        fanIn.setProgram(Face.Y_POS, "MOV ANY, ACC\nMOV LAST, NIL");
+        for (final Face face : new Face[]{Face.X_NEG, Face.X_POS, Face.Z_NEG, Face.Z_POS}) {
+            fanIn.setProgram(face, "ADD 1\nMOV ACC, ANY");
+        }
+        any.enable();
+    }
+
+    @Benchmark
+    public void arithmeticLoop() {
+        arithmetic.step();
+    }
+
+    @Benchmark
+    public void portLoop() {
+        ports.step();
+    }
+
+    @Benchmark
+    public void anyReads() {
+        any.step();
+    }
+}
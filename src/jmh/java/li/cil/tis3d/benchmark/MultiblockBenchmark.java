@@ -0,0 +1,58 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.headless.VirtualCasing;
+import li.cil.tis3d.headless.VirtualMultiblock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full step of a multi-block of 16 casings, the default maximum per
+ * controller, with execution modules on all open faces, the way
+ * {@link li.cil.tis3d.common.tileentity.ControllerTileEntity} steps it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiblockBenchmark {
+    private static final String PROGRAM_WORKER = "MOV ANY, ACC\nADD 1\nMOV ACC, ANY";
+    private static final String PROGRAM_SOURCE = "ADD 1\nMOV ACC, ANY";
+
+    private VirtualMultiblock multiblock;
+
+    @Setup
+    public void setup() {
+        // A flat 4x4 layer; modules on all open faces. Values are produced on
+        // top of the layer and travel through the other modules via ANY.
+        multiblock = new VirtualMultiblock();
+        for (int x = 0; x < 4; x++) {
+            for (int z = 0; z < 4; z++) {
+                multiblock.addCasing(x, 0, z);
+            }
+        }
+        for (final VirtualCasing casing : multiblock.getCasings()) {
+            for (final Face face : Face.VALUES) {
+                if (casing.getModule(face) == null && isOpen(casing, face)) {
+                    casing.setProgram(face, face == Face.Y_POS ? PROGRAM_SOURCE : PROGRAM_WORKER);
+                }
+            }
+        }
+        multiblock.enable();
+    }
+
+    @Benchmark
+    public void step() {
+        multiblock.step();
+    }
+
+    private boolean isOpen(final VirtualCasing casing, final Face face) {
+        final int x = casing.getPosition().getX() + Face.toDirection(face).getStepX();
+        final int y = casing.getPosition().getY() + Face.toDirection(face).getStepY();
+        final int z = casing.getPosition().getZ() + Face.toDirection(face).getStepZ();
+        return multiblock.getCasing(x, y, z) == null;
+    }
+}
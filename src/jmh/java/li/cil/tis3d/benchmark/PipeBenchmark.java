@@ -0,0 +1,66 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.headless.VirtualCasing;
+import li.cil.tis3d.headless.VirtualMultiblock;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipe handshakes and stepping all pipes of a casing, as done by
+ * {@link li.cil.tis3d.common.tileentity.ComputerTileEntity}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipeBenchmark {
+    private PipeImpl pipe;
+    private VirtualCasing idleCasing;
+    private VirtualCasing busyCasing;
+    private short value;
+
+    @Setup
+    public void setup() {
+        pipe = new PipeImpl(() -> BlockPos.ZERO, Face.Y_POS, Face.X_POS, Port.UP);
+
+        idleCasing = new VirtualMultiblock().addCasing(0, 0, 0);
+
+        // Keep some pipes of the casing in transfer all the time.
+        final VirtualMultiblock multiblock = new VirtualMultiblock();
+        busyCasing = multiblock.addCasing(0, 0, 0);
+        busyCasing.setProgram(Face.Z_NEG, "MOV ACC, LEFT\nMOV LEFT, ACC\nADD 1");
+        busyCasing.setProgram(Face.X_POS, "MOV RIGHT, ACC\nADD 1\nMOV ACC, RIGHT");
+        multiblock.step(10);
+    }
+
+    /**
+     * A full handshake, from starting the write to completing the transfer.
+     */
+    @Benchmark
+    public short handshake() {
+        pipe.beginWrite(value++);
+        pipe.beginRead();
+        pipe.step();
+        final short result = pipe.read();
+        pipe.step();
+        return result;
+    }
+
+    @Benchmark
+    public void stepPipesIdle() {
+        idleCasing.stepPipes();
+    }
+
+    @Benchmark
+    public void stepPipesBusy() {
+        busyCasing.stepModules();
+        busyCasing.stepPipes();
+    }
+}
@@ -5,9 +5,12 @@ import li.cil.tis3d.client.renderer.Textures;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.item.CodeBookItem;
 import li.cil.tis3d.common.item.Items;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.compiler.Analyzer;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.ProgramAnalysis;
+import li.cil.tis3d.common.module.execution.compiler.Strings;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.CodeBookDataMessage;
 import li.cil.tis3d.util.Color;
@@ -59,6 +62,10 @@ public final class CodeBookScreen extends Screen {
     private static final int COLOR_CODE = 0xFF333333;
     private static final int COLOR_CODE_SELECTED = 0xFFEEEEEE;
     private static final int COLOR_SELECTION = 0xCC333399;
+    private static final int LOOP_MARKER_X = 14;
+    private static final int LOOP_MARKER_WIDTH = 2;
+    private static final int LOOP_MARKER_SPACING = 3;
+    private static final int LOOP_MARKER_MAX_DEPTH = 3;
 
     private ButtonChangePage buttonNextPage;
     private ButtonChangePage buttonPreviousPage;
@@ -74,6 +81,8 @@ public final class CodeBookScreen extends Screen {
     private int selectionStart = 0;
     private int selectionEnd = 0;
     private Optional<ParseException> compileError = Optional.empty();
+    private Optional<ProgramAnalysis> analysis = Optional.empty();
+    private int analysisLineOffset = 0;
 
     // --------------------------------------------------------------------- //
 
@@ -500,8 +509,6 @@ public final class CodeBookScreen extends Screen {
     }
 
     private void recompile() {
-        compileError = Optional.empty();
-
         final List<String> program = lines.stream().map(StringBuilder::toString).collect(Collectors.toList());
 
         final List<String> leadingCode = new ArrayList<>();
@@ -510,13 +517,16 @@ public final class CodeBookScreen extends Screen {
         program.addAll(0, leadingCode);
         program.addAll(trailingCode);
 
-        try {
-            Compiler.compile(program, new MachineState());
-        } catch (final ParseException e) {
+        final CompiledProgram compiledProgram = Compiler.compile(program);
+        compileError = compiledProgram.getError().map(e -> {
             // Adjust line number for current page.
             final int lineNumber = e.getLineNumber() - leadingCode.size();
-            compileError = Optional.of(new ParseException(e.getDisplayMessage(), lineNumber, e.getStart(), e.getEnd()));
-        }
+            return new ParseException(e.getDisplayMessage(), lineNumber, e.getStart(), e.getEnd());
+        });
+
+        // Static timing of loops, shown next to the code, only for valid programs.
+        analysis = compileError.isPresent() ? Optional.empty() : Optional.of(Analyzer.analyze(compiledProgram));
+        analysisLineOffset = -leadingCode.size();
     }
 
     private boolean deleteSelection() {
@@ -677,6 +687,46 @@ public final class CodeBookScreen extends Screen {
         } else {
             // Draw selection position in text.
             drawTextCursor(matrixStack);
+
+            // Loop timing, only available for valid programs.
+            drawLoopMarkers(matrixStack, mouseX, mouseY);
+        }
+    }
+
+    /**
+     * Draw markers next to loops in the current page, showing their timing
+     * as a tooltip when hovered.
+     */
+    private void drawLoopMarkers(final MatrixStack matrixStack, final int mouseX, final int mouseY) {
+        if (!analysis.isPresent()) {
+            return;
+        }
+
+        final ProgramAnalysis programAnalysis = analysis.get();
+        ProgramAnalysis.Loop hoveredLoop = null;
+        for (final ProgramAnalysis.Loop loop : programAnalysis.loops) {
+            final int firstLine = Math.max(0, loop.firstLine + analysisLineOffset);
+            final int lastLine = Math.min(lines.size() - 1, loop.lastLine + analysisLineOffset);
+            if (firstLine > lastLine || loop.depth >= LOOP_MARKER_MAX_DEPTH) {
+                continue; // Not on this page.
+            }
+
+            final int startX = guiX + LOOP_MARKER_X - loop.depth * LOOP_MARKER_SPACING;
+            final int startY = guiY + CODE_POS_Y + firstLine * getFontRenderer().lineHeight - 1;
+            final int endY = guiY + CODE_POS_Y + (lastLine + 1) * getFontRenderer().lineHeight - 2;
+            fill(matrixStack, startX, startY, startX + LOOP_MARKER_WIDTH, endY, Color.LIGHT_BLUE);
+
+            if (mouseX >= startX - 1 && mouseX <= startX + LOOP_MARKER_WIDTH && mouseY >= startY && mouseY <= endY) {
+                hoveredLoop = loop;
+            }
+        }
+
+        if (hoveredLoop != null) {
+            final List<ITextComponent> tooltip = new ArrayList<>(Strings.getLoopDescription(hoveredLoop, analysisLineOffset));
+            if (programAnalysis.hasComputedJumps) {
+                tooltip.add(Strings.MESSAGE_COMPUTED_JUMPS);
+            }
+            renderWrappedToolTip(matrixStack, tooltip, mouseX, mouseY, getFontRenderer());
         }
     }
 
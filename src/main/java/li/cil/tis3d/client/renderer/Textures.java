@@ -23,6 +23,7 @@ public final class Textures {
     public static final ResourceLocation LOCATION_OVERLAY_CASING_PORT_CLOSED_SMALL = new ResourceLocation(API.MOD_ID, "block/overlay/casing_port_closed_small");
 
     public static final ResourceLocation LOCATION_OVERLAY_MODULE_AUDIO = new ResourceLocation(API.MOD_ID, "block/overlay/audio_module");
+    public static final ResourceLocation LOCATION_OVERLAY_MODULE_BRIDGE = new ResourceLocation(API.MOD_ID, "block/overlay/bridge_module");
     public static final ResourceLocation LOCATION_OVERLAY_MODULE_EXECUTION_ERROR = new ResourceLocation(API.MOD_ID, "block/overlay/execution_module_error");
     public static final ResourceLocation LOCATION_OVERLAY_MODULE_EXECUTION_IDLE = new ResourceLocation(API.MOD_ID, "block/overlay/execution_module_idle");
     public static final ResourceLocation LOCATION_OVERLAY_MODULE_EXECUTION_RUNNING = new ResourceLocation(API.MOD_ID, "block/overlay/execution_module_running");
@@ -47,6 +48,7 @@ public final class Textures {
         event.addSprite(LOCATION_OVERLAY_CASING_PORT_HIGHLIGHT);
         event.addSprite(LOCATION_OVERLAY_CASING_PORT_CLOSED_SMALL);
         event.addSprite(LOCATION_OVERLAY_MODULE_AUDIO);
+        event.addSprite(LOCATION_OVERLAY_MODULE_BRIDGE);
         event.addSprite(LOCATION_OVERLAY_MODULE_EXECUTION_ERROR);
         event.addSprite(LOCATION_OVERLAY_MODULE_EXECUTION_IDLE);
         event.addSprite(LOCATION_OVERLAY_MODULE_EXECUTION_RUNNING);
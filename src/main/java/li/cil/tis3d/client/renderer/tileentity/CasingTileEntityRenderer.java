@@ -1,6 +1,8 @@
 package li.cil.tis3d.client.renderer.tileentity;
 
 import com.mojang.blaze3d.matrix.MatrixStack;
+import li.cil.manual.api.render.FontRenderer;
+import li.cil.tis3d.api.API;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Module;
@@ -9,7 +11,9 @@ import li.cil.tis3d.api.util.TransformUtil;
 import li.cil.tis3d.client.renderer.RenderContextImpl;
 import li.cil.tis3d.client.renderer.Textures;
 import li.cil.tis3d.common.item.Items;
+import li.cil.tis3d.common.machine.PipeTopology;
 import li.cil.tis3d.common.tileentity.CasingTileEntity;
+import li.cil.tis3d.util.Color;
 import net.minecraft.client.renderer.IRenderTypeBuffer;
 import net.minecraft.client.renderer.WorldRenderer;
 import net.minecraft.client.renderer.tileentity.TileEntityRenderer;
@@ -184,11 +188,49 @@ public final class CasingTileEntityRenderer extends TileEntityRenderer<CasingTil
             }
 
             context.drawAtlasQuadUnlit(sprite);
+
+            final int[] pipeStats = casing.getPipeStatsClient();
+            if (pipeStats != null) {
+                drawPipeStats(context, casing, face, pipeStats);
+            }
         }
 
         return true;
     }
 
+    private void drawPipeStats(final RenderContext context, final CasingTileEntity casing, final Face face, final int[] pipeStats) {
+        final MatrixStack matrixStack = context.getMatrixStack();
+        matrixStack.pushPose();
+
+        // Offset to start drawing at top left of inner area, slightly inset.
+        matrixStack.translate(3.5f / 16f, 3.5f / 16f, 0);
+        matrixStack.scale(1 / 128f, 1 / 128f, 1);
+        matrixStack.translate(1, 1, 0);
+
+        final FontRenderer fontRenderer = API.smallFontRenderer;
+        final int windowSteps = casing.getPipeStatsWindowClient();
+
+        context.drawString(fontRenderer, "STEPS:" + windowSteps, Color.WHITE);
+        matrixStack.translate(0, fontRenderer.lineHeight() + 4, 0);
+
+        // One line per port of this face, with the counters of the pipe it receives from.
+        for (final Port port : Port.CLOCKWISE) {
+            final int offset = PipeTopology.pack(face, port) * CasingTileEntity.PIPE_STATS_COUNT;
+            final int transfers = pipeStats[offset + CasingTileEntity.PIPE_STATS_TRANSFERS];
+            final int writeStalls = pipeStats[offset + CasingTileEntity.PIPE_STATS_WRITE_STALLS];
+            final int readStalls = pipeStats[offset + CasingTileEntity.PIPE_STATS_READ_STALLS];
+            final String line = String.format("%s T%-3d W%-3d R%-3d", port.name().charAt(0),
+                Math.min(transfers, 999), Math.min(writeStalls, 999), Math.min(readStalls, 999));
+
+            // Highlight links where the writer waited for a reader most of the time.
+            final int color = writeStalls * 2 > windowSteps ? Color.RED : Color.WHITE;
+            context.drawString(fontRenderer, line, color);
+            matrixStack.translate(0, fontRenderer.lineHeight() + 4, 0);
+        }
+
+        matrixStack.popPose();
+    }
+
     private void drawModuleOverlay(final RenderContext context, final CasingTileEntity casing, final Face face) {
         final MatrixStack matrixStack = context.getMatrixStack();
         matrixStack.pushPose();
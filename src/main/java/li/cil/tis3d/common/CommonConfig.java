@@ -18,24 +18,69 @@ public final class CommonConfig {
     public static int maxPacketsPerTick = 10;
 
     /**
-     * The maximum number of particle effects to allow sending per tick
-     * before throttling kicks in, killing duplicate effects.
+     * The maximum number of data transfer effect messages to allow sending
+     * per tick before throttling kicks in, merging effects of multiple ticks.
+     * Effects are sent in one message per 16x16x16 area with active pipes.
      */
     @Path("network") @Min(1) @Max(500)
     @Comment({
-        "The maximum number of particle effects data transfer may trigger per tick.",
-        "When this is exceeded, throttling kicks in."})
+        "The maximum number of data transfer particle effect messages to send per tick.",
+        "Effects are sent in one message per 16x16x16 area. When this is exceeded, throttling kicks in."})
     @Translation("maxParticlesPerTick")
     public static int maxParticlesPerTick = 5;
 
     /**
      * The maximum number of casings that may be connected to a controller.
      */
-    @Path("controller") @Min(1) @Max(64)
+    @Path("controller") @Min(1) @Max(4096)
     @Comment("The maximum number of casings a single controller supports.")
     @Translation("maxCasings")
     public static int maxCasingsPerController = 16;
 
+    /**
+     * The time budget per tick for controllers in turbo mode.
+     */
+    @Path("controller") @Min(0) @Max(50_000_000)
+    @Comment({
+        "The time in nanoseconds a fully powered controller may spend stepping per tick.",
+        "When larger than zero, fully powered controllers run as many steps as fit into",
+        "this budget instead of five steps per tick. Zero disables turbo mode."})
+    @Translation("turboNanosPerTick")
+    public static int turboNanosPerTick = 0;
+
+    /**
+     * The maximum number of steps per tick for controllers in turbo mode.
+     */
+    @Path("controller") @Min(5) @Max(100_000)
+    @Comment("The maximum number of steps a controller in turbo mode may run per tick.")
+    @Translation("maxTurboStepsPerTick")
+    public static int maxTurboStepsPerTick = 1000;
+
+    /**
+     * The number of threads stepping controllers in parallel.
+     */
+    @Path("controller") @Min(0) @Max(64)
+    @Comment({
+        "The number of threads stepping independent controllers in parallel.",
+        "Effects on the world are applied on the server thread after all controllers",
+        "have been stepped, at the end of each world tick. Zero steps all controllers",
+        "on the server thread, immediately when they tick."})
+    @Translation("controllerThreads")
+    public static int controllerThreads = 0;
+
+    /**
+     * The maximum number of partitions the modules of a multi-block are split into.
+     */
+    @Path("controller") @Min(0) @Max(64)
+    @Comment({
+        "The maximum number of partitions the modules of a single multi-block are split",
+        "into, to step them in parallel on the controller threads. Only groups of modules",
+        "not connected to each other can be stepped in parallel, results are the same as",
+        "when stepping serially. Requires controllerThreads to be larger than zero.",
+        "Values below two disable this."})
+    @Translation("modulePartitions")
+    public static int modulePartitions = 0;
+
     /**
      * The maximum number of lines a program may have.
      */
@@ -44,6 +89,24 @@ public final class CommonConfig {
     @Translation("maxLinesPerProgram")
     public static int maxLinesPerProgram = 40;
 
+    /**
+     * The number of threads compiling programs in the background.
+     */
+    @Path("module.execution") @Min(1) @Max(8)
+    @Comment("The number of background threads compiling programs installed on execution modules.")
+    @Translation("compilerThreads")
+    public static int compilerThreads = 1;
+
+    /**
+     * The maximum number of programs waiting to be compiled in the background.
+     */
+    @Path("module.execution") @Min(1) @Max(4096)
+    @Comment({
+        "The maximum number of programs waiting to be compiled in the background.",
+        "When this is exceeded, programs are compiled on the server thread instead."})
+    @Translation("maxPendingCompilations")
+    public static int maxPendingCompilations = 256;
+
     /**
      * Maximum number of items stored in our receiver queue.
      * <p>
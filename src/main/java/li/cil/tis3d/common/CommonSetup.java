@@ -3,10 +3,15 @@ package li.cil.tis3d.common;
 import li.cil.tis3d.api.API;
 import li.cil.tis3d.common.api.InfraredAPIImpl;
 import li.cil.tis3d.common.capabilities.Capabilities;
+import li.cil.tis3d.common.command.PipeStatsCommand;
+import li.cil.tis3d.common.command.ProfileCommand;
+import li.cil.tis3d.common.command.SpeedCommand;
+import li.cil.tis3d.common.command.TraceCommand;
 import li.cil.tis3d.common.event.InfraredPacketTickHandler;
 import li.cil.tis3d.common.event.WorldUnloadHandler;
 import li.cil.tis3d.common.item.ItemGroups;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.tileentity.ControllerScheduler;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 
@@ -21,5 +26,10 @@ public final class CommonSetup {
         Network.initialize();
         InfraredPacketTickHandler.initialize();
         WorldUnloadHandler.initialize();
+        TraceCommand.initialize();
+        ProfileCommand.initialize();
+        PipeStatsCommand.initialize();
+        SpeedCommand.initialize();
+        ControllerScheduler.initialize();
     }
 }
@@ -0,0 +1,174 @@
+package li.cil.tis3d.common.command;
+
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import li.cil.tis3d.api.API;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.PipeStats;
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.common.tileentity.ComputerTileEntity;
+import li.cil.tis3d.common.tileentity.ControllerTileEntity;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.command.arguments.BlockPosArgument;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Operator command for counting transfers and stalls of the pipes of multi-blocks:
+ * <pre>
+ * /tis3d pipes &lt;controller position&gt; start
+ * /tis3d pipes &lt;controller position&gt; stop
+ * /tis3d pipes &lt;controller position&gt; report
+ * </pre>
+ * Reports list the pipes whose writers waited longest for a reader, i.e. the
+ * links where data backs up, with their transfers over the counted window.
+ * While counting, the counters are also shown in the port overlay of casings.
+ *
+ * @see PipeStats
+ */
+public final class PipeStatsCommand {
+    private static final String ARG_POSITION = "position";
+
+    /**
+     * Number of pipes listed in reports.
+     */
+    private static final int REPORT_PIPES = 10;
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.addListener(PipeStatsCommand::onRegisterCommands);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void onRegisterCommands(final RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(API.MOD_ID)
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("pipes")
+                .then(Commands.argument(ARG_POSITION, BlockPosArgument.blockPos())
+                    .then(Commands.literal("start")
+                        .executes(PipeStatsCommand::start))
+                    .then(Commands.literal("stop")
+                        .executes(PipeStatsCommand::stop))
+                    .then(Commands.literal("report")
+                        .executes(PipeStatsCommand::report)))));
+    }
+
+    private static int start(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        if (!controller.startPipeStats()) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.not_operational"));
+            return 0;
+        }
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.started",
+            PipeStats.WINDOW_BUCKETS * PipeStats.BUCKET_STEPS), true);
+        return 1;
+    }
+
+    private static int stop(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        controller.stopPipeStats();
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.stopped"), true);
+        return 1;
+    }
+
+    private static int report(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        if (!controller.isCountingPipes()) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.not_counting"));
+            return 0;
+        }
+
+        final List<PipeReport> pipes = new ArrayList<>();
+        int windowSteps = 0;
+        final List<ComputerTileEntity> parts = new ArrayList<>(controller.getCasings());
+        parts.add(controller);
+        for (final ComputerTileEntity part : parts) {
+            final PipeStats stats = part.getPipeStats();
+            if (stats == null) {
+                continue;
+            }
+
+            windowSteps = Math.max(windowSteps, stats.getWindowSteps());
+            for (int pipe = 0; pipe < PipeTopology.PIPE_COUNT; pipe++) {
+                final PipeReport report = new PipeReport(part.getBlockPos(), pipe,
+                    stats.getTransfers(pipe), stats.getWriteStalls(pipe), stats.getReadStalls(pipe));
+                if (report.transfers > 0 || report.writeStalls > 0 || report.readStalls > 0) {
+                    pipes.add(report);
+                }
+            }
+        }
+
+        if (pipes.isEmpty()) {
+            context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.idle", windowSteps), false);
+            return 0;
+        }
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.report", pipes.size(), windowSteps), false);
+        pipes.sort(Comparator.comparingInt((PipeReport report) -> report.writeStalls)
+            .thenComparingInt(report -> report.transfers).reversed());
+        pipes.stream().limit(REPORT_PIPES).forEach(report -> {
+            final Face receivingFace = Face.VALUES[report.pipe / Port.VALUES.length];
+            final Face sendingFace = PipeTopology.mapFace(receivingFace, Port.VALUES[report.pipe % Port.VALUES.length]);
+            context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.pipe",
+                report.position.toShortString(), sendingFace.name(), receivingFace.name(),
+                report.transfers, report.writeStalls, report.readStalls), false);
+        });
+        return pipes.size();
+    }
+
+    @Nullable
+    private static ControllerTileEntity getController(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final BlockPos position = BlockPosArgument.getLoadedBlockPos(context, ARG_POSITION);
+        final TileEntity tileEntity = context.getSource().getLevel().getBlockEntity(position);
+        if (!(tileEntity instanceof ControllerTileEntity)) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.pipes.no_controller", position.toShortString()));
+            return null;
+        }
+        return (ControllerTileEntity) tileEntity;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static final class PipeReport {
+        private final BlockPos position;
+        private final int pipe;
+        private final int transfers, writeStalls, readStalls;
+
+        private PipeReport(final BlockPos position, final int pipe, final int transfers, final int writeStalls, final int readStalls) {
+            this.position = position;
+            this.pipe = pipe;
+            this.transfers = transfers;
+            this.writeStalls = writeStalls;
+            this.readStalls = readStalls;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private PipeStatsCommand() {
+    }
+}
@@ -0,0 +1,190 @@
+package li.cil.tis3d.common.command;
+
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import li.cil.tis3d.api.API;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.MachineProfile;
+import li.cil.tis3d.common.module.execution.compiler.Analyzer;
+import li.cil.tis3d.common.module.execution.compiler.ProgramAnalysis;
+import li.cil.tis3d.common.module.execution.compiler.Strings;
+import li.cil.tis3d.common.module.execution.target.Target;
+import li.cil.tis3d.common.tileentity.CasingTileEntity;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.command.arguments.BlockPosArgument;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Operator command for profiling the execution modules in a casing:
+ * <pre>
+ * /tis3d profile &lt;casing position&gt; start
+ * /tis3d profile &lt;casing position&gt; stop
+ * /tis3d profile &lt;casing position&gt; report
+ * /tis3d profile &lt;casing position&gt; analyze
+ * </pre>
+ * Reports list the hottest lines of each module's program, and the cycles
+ * spent stalled on each port. Analysis lists the loops in each module's
+ * program with their minimum cycles per iteration, without running them.
+ *
+ * @see MachineProfile
+ * @see Analyzer
+ */
+public final class ProfileCommand {
+    private static final String ARG_POSITION = "position";
+
+    /**
+     * Number of lines listed per module in reports.
+     */
+    private static final int REPORT_LINES = 5;
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.addListener(ProfileCommand::onRegisterCommands);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void onRegisterCommands(final RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(API.MOD_ID)
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("profile")
+                .then(Commands.argument(ARG_POSITION, BlockPosArgument.blockPos())
+                    .then(Commands.literal("start")
+                        .executes(context -> setProfiling(context, true)))
+                    .then(Commands.literal("stop")
+                        .executes(context -> setProfiling(context, false)))
+                    .then(Commands.literal("report")
+                        .executes(ProfileCommand::report))
+                    .then(Commands.literal("analyze")
+                        .executes(ProfileCommand::analyze)))));
+    }
+
+    private static int setProfiling(final CommandContext<CommandSource> context, final boolean value) throws CommandSyntaxException {
+        final List<ExecutionModule> modules = getModules(context);
+        if (modules == null) {
+            return 0;
+        }
+
+        modules.forEach(module -> module.setProfiling(value));
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + (value ? ".commands.profile.started" : ".commands.profile.stopped"), modules.size()), true);
+        return modules.size();
+    }
+
+    private static int report(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final List<ExecutionModule> modules = getModules(context);
+        if (modules == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (final ExecutionModule module : modules) {
+            final MachineProfile profile = module.getProfile();
+            if (profile == null) {
+                continue;
+            }
+            count++;
+
+            final CompiledProgram program = profile.getProgram();
+            final long stalls = IntStream.range(0, program.bytecode.length).mapToLong(profile::getStalls).sum();
+            context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.profile.module",
+                module.getFace().name(), profile.getCycles(), stalls), false);
+
+            IntStream.range(0, program.bytecode.length).boxed()
+                .sorted(Comparator.comparingLong((Integer address) -> profile.getExecutions(address) + profile.getStalls(address)).reversed())
+                .filter(address -> profile.getExecutions(address) + profile.getStalls(address) > 0)
+                .limit(REPORT_LINES)
+                .forEach(address -> {
+                    final int line = program.lineNumbers[address];
+                    context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.profile.line",
+                        line + 1, profile.getExecutions(address), profile.getStalls(address), program.code[line].trim()), false);
+                });
+
+            final List<String> targetStalls = new ArrayList<>();
+            for (final Target target : Target.values()) {
+                if (profile.getReadStalls(target) > 0) {
+                    targetStalls.add(target.name() + " (read): " + profile.getReadStalls(target));
+                }
+                if (profile.getWriteStalls(target) > 0) {
+                    targetStalls.add(target.name() + " (write): " + profile.getWriteStalls(target));
+                }
+            }
+            if (!targetStalls.isEmpty()) {
+                context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.profile.stalls",
+                    String.join(", ", targetStalls)), false);
+            }
+        }
+
+        if (count == 0) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.profile.not_profiling"));
+        }
+        return count;
+    }
+
+    private static int analyze(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final List<ExecutionModule> modules = getModules(context);
+        if (modules == null) {
+            return 0;
+        }
+
+        for (final ExecutionModule module : modules) {
+            final ProgramAnalysis analysis = Analyzer.analyze(module.getState().getProgram());
+            context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.profile.analysis",
+                module.getFace().name(), analysis.blocks.length, analysis.loops.size()), false);
+            for (final ProgramAnalysis.Loop loop : analysis.loops) {
+                Strings.getLoopDescription(loop, 0).forEach(line -> context.getSource().sendSuccess(line, false));
+            }
+            if (analysis.hasComputedJumps) {
+                context.getSource().sendSuccess(Strings.MESSAGE_COMPUTED_JUMPS, false);
+            }
+        }
+        return modules.size();
+    }
+
+    /**
+     * Get the execution modules in the casing at the position specified in the
+     * command, reporting a failure if there are none.
+     */
+    @Nullable
+    private static List<ExecutionModule> getModules(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final BlockPos position = BlockPosArgument.getLoadedBlockPos(context, ARG_POSITION);
+        final TileEntity tileEntity = context.getSource().getLevel().getBlockEntity(position);
+        if (!(tileEntity instanceof CasingTileEntity)) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.profile.no_casing", position.toShortString()));
+            return null;
+        }
+
+        final CasingTileEntity casing = (CasingTileEntity) tileEntity;
+        final List<ExecutionModule> modules = new ArrayList<>();
+        for (final Face face : Face.VALUES) {
+            final Module module = casing.getModule(face);
+            if (module instanceof ExecutionModule) {
+                modules.add((ExecutionModule) module);
+            }
+        }
+
+        if (modules.isEmpty()) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.profile.no_modules"));
+            return null;
+        }
+        return modules;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ProfileCommand() {
+    }
+}
@@ -0,0 +1,61 @@
+package li.cil.tis3d.common.command;
+
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import li.cil.tis3d.api.API;
+import li.cil.tis3d.common.tileentity.ControllerTileEntity;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.command.arguments.BlockPosArgument;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
+
+/**
+ * Operator command for querying the speed multi-blocks achieve, e.g. to tune
+ * the time budget of turbo mode:
+ * <pre>
+ * /tis3d speed &lt;controller position&gt;
+ * </pre>
+ *
+ * @see ControllerTileEntity#getStepsPerSecond()
+ */
+public final class SpeedCommand {
+    private static final String ARG_POSITION = "position";
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.addListener(SpeedCommand::onRegisterCommands);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void onRegisterCommands(final RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(API.MOD_ID)
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("speed")
+                .then(Commands.argument(ARG_POSITION, BlockPosArgument.blockPos())
+                    .executes(SpeedCommand::speed))));
+    }
+
+    private static int speed(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final BlockPos position = BlockPosArgument.getLoadedBlockPos(context, ARG_POSITION);
+        final TileEntity tileEntity = context.getSource().getLevel().getBlockEntity(position);
+        if (!(tileEntity instanceof ControllerTileEntity)) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.speed.no_controller", position.toShortString()));
+            return 0;
+        }
+
+        final ControllerTileEntity controller = (ControllerTileEntity) tileEntity;
+        final int stepsPerSecond = controller.getStepsPerSecond();
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.speed.report",
+            position.toShortString(), controller.getState().name(), stepsPerSecond), false);
+        return stepsPerSecond;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private SpeedCommand() {
+    }
+}
@@ -0,0 +1,136 @@
+package li.cil.tis3d.common.command;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import li.cil.tis3d.api.API;
+import li.cil.tis3d.common.machine.TraceRecorder;
+import li.cil.tis3d.common.tileentity.ControllerTileEntity;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.command.arguments.BlockPosArgument;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraft.world.storage.FolderName;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Operator command for tracing execution of multi-blocks:
+ * <pre>
+ * /tis3d trace &lt;controller position&gt; arm [capacity]
+ * /tis3d trace &lt;controller position&gt; disarm
+ * /tis3d trace &lt;controller position&gt; export
+ * </pre>
+ * Traces are exported into the <tt>tis3d/traces</tt> folder of the world.
+ *
+ * @see TraceRecorder
+ */
+public final class TraceCommand {
+    private static final String ARG_POSITION = "position";
+    private static final String ARG_CAPACITY = "capacity";
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.addListener(TraceCommand::onRegisterCommands);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void onRegisterCommands(final RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(API.MOD_ID)
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("trace")
+                .then(Commands.argument(ARG_POSITION, BlockPosArgument.blockPos())
+                    .then(Commands.literal("arm")
+                        .executes(context -> arm(context, TraceRecorder.DEFAULT_CAPACITY))
+                        .then(Commands.argument(ARG_CAPACITY, IntegerArgumentType.integer(1, TraceRecorder.MAX_CAPACITY))
+                            .executes(context -> arm(context, IntegerArgumentType.getInteger(context, ARG_CAPACITY)))))
+                    .then(Commands.literal("disarm")
+                        .executes(TraceCommand::disarm))
+                    .then(Commands.literal("export")
+                        .executes(TraceCommand::export)))));
+    }
+
+    private static int arm(final CommandContext<CommandSource> context, final int capacity) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        if (!controller.armTrace(capacity)) {
+            final String reason = controller.isTraceReplayable() ? "not_operational" : "not_replayable";
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.trace." + reason));
+            return 0;
+        }
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.trace.armed", capacity), true);
+        return 1;
+    }
+
+    private static int disarm(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        controller.disarmTrace();
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.trace.disarmed"), true);
+        return 1;
+    }
+
+    private static int export(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final ControllerTileEntity controller = getController(context);
+        if (controller == null) {
+            return 0;
+        }
+
+        final TraceRecorder recorder = controller.getTraceRecorder();
+        if (recorder == null) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.trace.not_armed"));
+            return 0;
+        }
+
+        final BlockPos position = controller.getBlockPos();
+        final Path path = context.getSource().getServer().getWorldPath(FolderName.ROOT)
+            .resolve(API.MOD_ID).resolve("traces")
+            .resolve(String.format("trace-%d_%d_%d-%d.dat", position.getX(), position.getY(), position.getZ(),
+                context.getSource().getLevel().getGameTime()))
+            .normalize();
+        try {
+            Files.createDirectories(path.getParent());
+            try (final OutputStream stream = Files.newOutputStream(path)) {
+                recorder.export(stream);
+            }
+        } catch (final IOException e) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.trace.export_failed", e.getMessage()));
+            return 0;
+        }
+
+        context.getSource().sendSuccess(new TranslationTextComponent(API.MOD_ID + ".commands.trace.exported", recorder.getStepCount(), path.toString()), true);
+        return 1;
+    }
+
+    @Nullable
+    private static ControllerTileEntity getController(final CommandContext<CommandSource> context) throws CommandSyntaxException {
+        final BlockPos position = BlockPosArgument.getLoadedBlockPos(context, ARG_POSITION);
+        final TileEntity tileEntity = context.getSource().getLevel().getBlockEntity(position);
+        if (!(tileEntity instanceof ControllerTileEntity)) {
+            context.getSource().sendFailure(new TranslationTextComponent(API.MOD_ID + ".commands.trace.no_controller", position.toShortString()));
+            return null;
+        }
+        return (ControllerTileEntity) tileEntity;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private TraceCommand() {
+    }
+}
@@ -0,0 +1,56 @@
+package li.cil.tis3d.common.item;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+public final class BridgeModuleItem extends ModuleItem {
+    private static final String TAG_LINK = "link";
+    private static final String TAG_SIDE = "side";
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Load the link a bridge module was paired with from the specified item stack.
+     *
+     * @param stack the item stack to load the link from.
+     * @return the link, or <code>null</code> if the module was never paired.
+     */
+    @Nullable
+    public static UUID loadLinkFromStack(final ItemStack stack) {
+        final CompoundNBT nbt = stack.getTag();
+        if (nbt != null && nbt.hasUUID(TAG_LINK)) {
+            return nbt.getUUID(TAG_LINK);
+        }
+        return null;
+    }
+
+    /**
+     * Load the side of the link a bridge module occupies from the specified item stack.
+     *
+     * @param stack the item stack to load the side from.
+     * @return the side of the link.
+     */
+    public static int loadSideFromStack(final ItemStack stack) {
+        final CompoundNBT nbt = stack.getTag();
+        if (nbt != null) {
+            return nbt.getByte(TAG_SIDE) & 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Save the specified link and side to the specified item stack.
+     *
+     * @param stack the item stack to save the link to.
+     * @param link  the link the module is paired with.
+     * @param side  the side of the link the module occupies.
+     */
+    public static void saveToStack(final ItemStack stack, final UUID link, final int side) {
+        final CompoundNBT nbt = stack.getOrCreateTag();
+        nbt.putUUID(TAG_LINK, link);
+        nbt.putByte(TAG_SIDE, (byte) side);
+    }
+}
@@ -31,6 +31,7 @@ public final class Items {
     public static final RegistryObject<Item> PRISM = register("prism");
 
     public static final RegistryObject<ModuleItem> AUDIO_MODULE = register("audio_module", ModuleItem::new);
+    public static final RegistryObject<BridgeModuleItem> BRIDGE_MODULE = register("bridge_module", BridgeModuleItem::new);
     public static final RegistryObject<ModuleItem> DISPLAY_MODULE = register("display_module", ModuleItem::new);
     public static final RegistryObject<ModuleItem> EXECUTION_MODULE = register("execution_module", ModuleItem::new);
     public static final RegistryObject<ModuleItem> FACADE_MODULE = register("facade_module", ModuleItem::new);
@@ -0,0 +1,93 @@
+package li.cil.tis3d.common.machine;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The worklist of pipes of a multi-block that are not idle, so that stepping
+ * the pipes of a multi-block costs time proportional to the number of pipes
+ * in use, instead of the number of pipes in the multi-block.
+ * <p>
+ * Members are the {@link PipeStates} of the parts of the multi-block, in the
+ * order their pipes are stepped in. A member is queued when one of its pipes
+ * leaves the idle state, see {@link PipeImpl#beginRead()} and {@link PipeImpl#beginWrite(short)},
+ * and leaves the queue when it is stepped and all of its pipes are idle again,
+ * i.e. after their transfers finished or were canceled.
+ * <p>
+ * Queued members are stepped in member order, and members queued while
+ * stepping, e.g. by modules starting a new write when a write completed, are
+ * still stepped in the same pass if they come later in that order. So the
+ * result is identical to stepping the pipes of all members in order.
+ * <p>
+ * Members may be queued from multiple threads, e.g. while stepping modules
+ * via {@link ParallelModulePhase}, but {@link #step()} must not run while
+ * modules are stepped.
+ */
+public final class ActivePipes {
+    /**
+     * The members of the worklist, indexed by their slot.
+     */
+    private PipeStates[] members = new PipeStates[0];
+
+    /**
+     * The slots of the members that are currently queued.
+     */
+    private final BitSet queued = new BitSet();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Replace the members of the worklist, e.g. after the multi-block changed.
+     * Members with pipes that are not idle are queued right away.
+     *
+     * @param members the new members, in the order they are stepped in.
+     */
+    public synchronized void setMembers(final List<PipeStates> members) {
+        for (final PipeStates states : this.members) {
+            if (states.activePipes == this) {
+                states.activePipes = null;
+                states.isQueued = false;
+            }
+        }
+        queued.clear();
+
+        this.members = members.toArray(new PipeStates[0]);
+        for (int slot = 0; slot < this.members.length; slot++) {
+            final PipeStates states = this.members[slot];
+            states.activePipes = this;
+            states.slot = slot;
+            states.isQueued = false;
+            if (!states.isIdle()) {
+                add(states);
+            }
+        }
+    }
+
+    /**
+     * Advances the logic of all queued members by calling {@link PipeStates#step()}
+     * on them, in order, and removes members whose pipes are all idle afterwards.
+     */
+    public void step() {
+        for (int slot = queued.nextSetBit(0); slot >= 0; slot = queued.nextSetBit(slot + 1)) {
+            final PipeStates states = members[slot];
+            states.step();
+            if (states.isIdle()) {
+                remove(states);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    synchronized void add(final PipeStates states) {
+        if (states.activePipes == this && !states.isQueued) {
+            states.isQueued = true;
+            queued.set(states.slot);
+        }
+    }
+
+    private synchronized void remove(final PipeStates states) {
+        states.isQueued = false;
+        queued.clear(states.slot);
+    }
+}
@@ -0,0 +1,167 @@
+package li.cil.tis3d.common.machine;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Links between pairs of bridge modules, which may be installed in different
+ * multi-blocks, stepped by different controllers, on different threads.
+ * <p>
+ * Each link has two sides, and one {@link ValueRingBuffer} per direction. The
+ * module on a side is the only producer of the buffer towards the other side,
+ * and the only consumer of the buffer from the other side, so the buffers need
+ * no locking. To guarantee that, a side can only be claimed by one module at a
+ * time, see {@link #claim(UUID, int)}.
+ * <p>
+ * Claiming may happen while stepping, i.e. on any thread. Releasing must happen
+ * on the server thread, outside of steps, e.g. when a module is disabled or
+ * disposed, so that it never races with the other side's producer.
+ */
+public final class BridgeChannels {
+    /**
+     * The number of values that may be in transit in each direction of a link.
+     */
+    public static final int CAPACITY = 16;
+
+    /**
+     * The number of sides of a link.
+     */
+    public static final int SIDES = 2;
+
+    /**
+     * Links that currently have at least one side claimed.
+     */
+    private static final Map<UUID, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * The number of sides released so far, see {@link #getReleaseCount()}.
+     */
+    private static final AtomicLong releaseCount = new AtomicLong();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Claim the specified side of the specified link.
+     *
+     * @param link the link to claim a side of.
+     * @param side the side to claim, <code>0</code> or <code>1</code>.
+     * @return the endpoint for the side, or <code>null</code> if the side is already claimed.
+     */
+    @Nullable
+    public static Endpoint claim(final UUID link, final int side) {
+        // Fail without locking the link if the side is taken.
+        final Channel existing = channels.get(link);
+        if (existing != null && existing.endpoints.get(side) != null) {
+            return null;
+        }
+
+        final Endpoint[] result = new Endpoint[1];
+        channels.compute(link, (key, channel) -> {
+            if (channel == null) {
+                channel = new Channel(key);
+            }
+            if (channel.endpoints.get(side) != null) {
+                return channel;
+            }
+            final Endpoint endpoint = new Endpoint(channel, side);
+            if (channel.endpoints.compareAndSet(side, null, endpoint)) {
+                result[0] = endpoint;
+            }
+            return channel;
+        });
+        return result[0];
+    }
+
+    /**
+     * The number of sides released so far. Claiming a side that is taken can
+     * only succeed after this changed, so modules waiting for a side only need
+     * to retry then.
+     *
+     * @return the number of sides released so far.
+     */
+    public static long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+    /**
+     * Release a previously claimed side of a link, dropping values sent to it
+     * that have not been received yet.
+     *
+     * @param endpoint the endpoint of the side to release.
+     */
+    public static void release(final Endpoint endpoint) {
+        final Channel channel = endpoint.channel;
+        channels.computeIfPresent(channel.link, (key, current) -> {
+            if (current != channel || !channel.endpoints.compareAndSet(endpoint.side, endpoint, null)) {
+                return current;
+            }
+            endpoint.receive.clear();
+            releaseCount.incrementAndGet();
+            for (int side = 0; side < SIDES; side++) {
+                if (channel.endpoints.get(side) != null) {
+                    return channel;
+                }
+            }
+            return null;
+        });
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * One side of a link, as seen by the module that claimed it.
+     */
+    public static final class Endpoint {
+        private final Channel channel;
+        private final int side;
+
+        /**
+         * Values sent to the other side, only written to by this side.
+         */
+        public final ValueRingBuffer send;
+
+        /**
+         * Values sent by the other side, only read from by this side.
+         */
+        public final ValueRingBuffer receive;
+
+        private Endpoint(final Channel channel, final int side) {
+            this.channel = channel;
+            this.side = side;
+            this.send = channel.buffers[side];
+            this.receive = channel.buffers[1 - side];
+        }
+
+        /**
+         * Whether the other side of the link is currently claimed.
+         *
+         * @return <code>true</code> if the other side is claimed; <code>false</code> otherwise.
+         */
+        public boolean isConnected() {
+            return channel.endpoints.get(1 - side) != null;
+        }
+    }
+
+    private static final class Channel {
+        private final UUID link;
+
+        /**
+         * Buffers indexed by the side sending into them.
+         */
+        private final ValueRingBuffer[] buffers = new ValueRingBuffer[]{new ValueRingBuffer(CAPACITY), new ValueRingBuffer(CAPACITY)};
+        private final AtomicReferenceArray<Endpoint> endpoints = new AtomicReferenceArray<>(SIDES);
+
+        private Channel(final UUID link) {
+            this.link = link;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private BridgeChannels() {
+    }
+}
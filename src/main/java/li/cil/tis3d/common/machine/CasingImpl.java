@@ -111,15 +111,58 @@ public final class CasingImpl implements Casing {
 
     /**
      * Advance the logic of all modules by calling {@link Module#step()} on them.
+     * <p>
+     * Modules that are {@link SuspendableModule#isSuspended() suspended} are skipped.
      */
     public void stepModules() {
         for (final Module module : modules) {
-            if (module != null) {
+            if (module != null && !isSuspended(module)) {
                 module.step();
             }
         }
     }
 
+    /**
+     * Whether any modules are installed in the casing.
+     *
+     * @return <code>true</code> if the casing has modules; <code>false</code> otherwise.
+     */
+    public boolean hasModules() {
+        for (final Module module : modules) {
+            if (module != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether all modules in the casing may be stepped concurrently with other
+     * multi-blocks, i.e. whether they are all {@link ConcurrentModule}s.
+     *
+     * @return <code>true</code> if the casing may be stepped concurrently; <code>false</code> otherwise.
+     */
+    public boolean isConcurrent() {
+        for (final Module module : modules) {
+            if (module != null && !(module instanceof ConcurrentModule)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resume all suspended modules, e.g. because the pipes they may have been
+     * waiting on changed.
+     */
+    public void resumeModules() {
+        for (final Module module : modules) {
+            if (module instanceof SuspendableModule) {
+                ((SuspendableModule) module).resume();
+            }
+        }
+    }
+
     /**
      * Set the module for the specified face of the casing.
      * <p>
@@ -314,7 +357,7 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void setChanged() {
-        tileEntity.setChanged();
+        WorldEffects.run(tileEntity::markChanged);
     }
 
     @Override
@@ -345,7 +388,7 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void sendData(final Face face, final CompoundNBT data, final byte type) {
-        Network.sendModuleData(this, face, data, type);
+        WorldEffects.run(() -> Network.sendModuleData(this, face, data, type));
     }
 
     @Override
@@ -355,7 +398,7 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void sendData(final Face face, final ByteBuf data, final byte type) {
-        Network.sendModuleData(this, face, data, type);
+        WorldEffects.run(() -> Network.sendModuleData(this, face, data, type));
     }
 
     @Override
@@ -365,6 +408,16 @@ public final class CasingImpl implements Casing {
 
     // --------------------------------------------------------------------- //
 
+    /**
+     * Whether the specified module is suspended and should not be stepped.
+     *
+     * @param module the module to check.
+     * @return <code>true</code> if the module is suspended; <code>false</code> otherwise.
+     */
+    private static boolean isSuspended(final Module module) {
+        return module instanceof SuspendableModule && ((SuspendableModule) module).isSuspended();
+    }
+
     /**
      * Read a stored key from the specified stack.
      *
@@ -0,0 +1,33 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by modules that may be stepped on a thread other than the server
+ * thread, concurrently with modules in other multi-blocks.
+ * <p>
+ * When stepped, and when notified of completed writes, such modules must only
+ * modify their own state and the pipes of their casing, and must not read from
+ * the world beyond plain values such as the game time: the server thread waits
+ * for the steps to finish, so looking up a block that needs a chunk loaded, for
+ * example, would never complete. Other state needed from the world must be read
+ * and kept on the server thread when it may change, such as in {@link #onEnabled()}
+ * or when notified of neighbor block changes. Effects on the world, such as block
+ * updates, sounds or spawning entities, must go through {@link WorldEffects#run(Runnable)},
+ * which runs them on the server thread, where they may also read from the world.
+ * The casing already does so for marking it changed and sending module data.
+ * <p>
+ * Multi-blocks containing any other module are always stepped on the server thread.
+ */
+public interface ConcurrentModule extends Module {
+    /**
+     * Whether the module may be stepped in parallel with other modules of its
+     * own multi-block, see {@link ParallelModulePhase}. This is only the case
+     * if it interacts with other modules through the pipes of its casing alone.
+     *
+     * @return <code>true</code> if the module may be stepped in a partition; <code>false</code> otherwise.
+     */
+    default boolean canStepInPartition() {
+        return true;
+    }
+}
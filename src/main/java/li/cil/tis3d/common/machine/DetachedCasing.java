@@ -0,0 +1,14 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+
+/**
+ * Implemented by casings that do not exist in a world, such as the casings of
+ * multi-blocks simulated without a running game.
+ * <p>
+ * Such casings have no world to return from {@link #getCasingLevel()}, so
+ * modules supporting them must not query the world while installed in one,
+ * e.g. to check whether their face is visible.
+ */
+public interface DetachedCasing extends Casing {
+}
@@ -0,0 +1,55 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Pipe;
+
+/**
+ * A pipe that cannot be written to nor read from, effectively locking up
+ * blocking reads/writes. Used for locked ports. Since it is immutable, we
+ * can use one for all ports on all faces in all casings.
+ */
+public final class LockedPipe implements Pipe {
+    public static final Pipe INSTANCE = new LockedPipe();
+
+    @Override
+    public void beginWrite(final short value) throws IllegalStateException {
+        throw new IllegalStateException("Trying to write to a busy pipe. Check isWriting().");
+    }
+
+    @Override
+    public void cancelWrite() {
+    }
+
+    @Override
+    public boolean isWriting() {
+        return true;
+    }
+
+    @Override
+    public void beginRead() throws IllegalStateException {
+        throw new IllegalStateException("Trying to write to a busy pipe. Check isReading().");
+    }
+
+    @Override
+    public void cancelRead() {
+    }
+
+    @Override
+    public boolean isReading() {
+        return true;
+    }
+
+    @Override
+    public boolean canTransfer() {
+        return false;
+    }
+
+    @Override
+    public short read() throws IllegalStateException {
+        throw new IllegalStateException("No data to read. Check canTransfer().");
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private LockedPipe() {
+    }
+}
@@ -0,0 +1,280 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Steps the modules of a multi-block on multiple threads, producing the same
+ * results as stepping them one after the other, in order.
+ * <p>
+ * Modules only interact through the pipes on their faces, but stepping them
+ * is not independent of their order in general: reading a value calls back
+ * into the writing module, which may cancel its writes to other pipes, e.g.
+ * when writing to <tt>ANY</tt>. So modules are grouped into components of
+ * modules connected via pipes, and only whole components are distributed to
+ * threads. Components share no state, and modules in a component are stepped
+ * in the same relative order as when stepping serially, so the result is
+ * identical. Effects on the world are collected per module via
+ * {@link WorldEffects} and passed on in serial order after all modules were
+ * stepped. If a module halts and catches fire, effects of modules that would
+ * not have been stepped serially, i.e. those after it, are dropped.
+ * <p>
+ * Dense layouts, where every module is connected to its neighbors, form a
+ * single component and gain nothing from this. Layouts of separate groups of
+ * modules do. The phase must be rebuilt whenever modules, pipe overrides or
+ * locked ports change, since these change the components.
+ * <p>
+ * Only valid for multi-blocks of {@link ConcurrentModule}s. Multi-blocks with
+ * modules that interact in other ways, see {@link ConcurrentModule#canStepInPartition()},
+ * are never partitioned: their effects could not be ordered or dropped like
+ * effects on the world.
+ */
+public final class ParallelModulePhase {
+    /**
+     * The modules of each partition, in the order they are stepped in serially.
+     */
+    private final Partition[] partitions;
+
+    /**
+     * For each module, in serial order, the partition it is in and its index
+     * in that partition, packed as <code>partition &lt;&lt; 16 | index</code>.
+     */
+    private final int[] serialOrder;
+
+    // --------------------------------------------------------------------- //
+
+    private ParallelModulePhase(final Partition[] partitions, final int[] serialOrder) {
+        this.partitions = partitions;
+        this.serialOrder = serialOrder;
+    }
+
+    /**
+     * Partition the modules of the specified casings into up to the specified
+     * number of partitions that can be stepped in parallel.
+     *
+     * @param casings       the casings of the multi-block, in the order they are stepped in.
+     * @param maxPartitions the maximum number of partitions, typically the number of threads.
+     * @return the phase, or <code>null</code> if the modules cannot be split into at least two partitions,
+     * or may not be stepped in partitions at all.
+     */
+    @Nullable
+    public static ParallelModulePhase create(final List<? extends Casing> casings, final int maxPartitions) {
+        if (maxPartitions < 2) {
+            return null;
+        }
+
+        // Collect modules in serial order and union those sharing a pipe.
+        final List<Module> modules = new ArrayList<>();
+        final Map<Pipe, Integer> pipeOwners = new IdentityHashMap<>();
+        final List<Integer> parents = new ArrayList<>();
+        for (final Casing casing : casings) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module == null) {
+                    continue;
+                }
+                if (module instanceof ConcurrentModule && !((ConcurrentModule) module).canStepInPartition()) {
+                    return null;
+                }
+
+                final int index = modules.size();
+                modules.add(module);
+                parents.add(index);
+
+                for (final Port port : Port.VALUES) {
+                    union(parents, pipeOwners, casing.getReceivingPipe(face, port), index);
+                    union(parents, pipeOwners, casing.getSendingPipe(face, port), index);
+                }
+            }
+        }
+
+        // Gather components, largest first, each in serial order.
+        final Map<Integer, List<Integer>> componentsByRoot = new LinkedHashMap<>();
+        for (int index = 0; index < modules.size(); index++) {
+            componentsByRoot.computeIfAbsent(find(parents, index), root -> new ArrayList<>()).add(index);
+        }
+        if (componentsByRoot.size() < 2) {
+            return null;
+        }
+        final List<List<Integer>> components = new ArrayList<>(componentsByRoot.values());
+        components.sort(Comparator.comparingInt((List<Integer> component) -> component.size()).reversed());
+
+        // Greedily assign components to the partition with the fewest modules.
+        final int partitionCount = Math.min(maxPartitions, components.size());
+        final List<List<Integer>> assigned = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (final List<Integer> component : components) {
+            assigned.stream().min(Comparator.comparingInt(List::size)).ifPresent(partition -> partition.addAll(component));
+        }
+
+        final Partition[] partitions = new Partition[partitionCount];
+        final int[] serialOrder = new int[modules.size()];
+        for (int i = 0; i < partitionCount; i++) {
+            final List<Integer> indices = assigned.get(i);
+            Collections.sort(indices);
+            final Module[] partitionModules = new Module[indices.size()];
+            final int[] partitionOrder = new int[indices.size()];
+            for (int j = 0; j < partitionModules.length; j++) {
+                partitionModules[j] = modules.get(indices.get(j));
+                partitionOrder[j] = indices.get(j);
+                serialOrder[indices.get(j)] = i << 16 | j;
+            }
+            partitions[i] = new Partition(partitionModules, partitionOrder);
+        }
+        return new ParallelModulePhase(partitions, serialOrder);
+    }
+
+    /**
+     * The number of partitions stepped in parallel.
+     *
+     * @return the number of partitions.
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Step all modules once, distributing the partitions across the specified pool,
+     * and wait for all of them to finish.
+     *
+     * @param pool the pool to step the partitions on.
+     * @throws HaltAndCatchFireException if a module halted and caught fire.
+     */
+    public void step(final ForkJoinPool pool) {
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions.length);
+        for (final Partition partition : partitions) {
+            tasks.add(ForkJoinTask.adapt(partition::step));
+        }
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+
+        // Serially, modules after one that halted and caught fire are never
+        // stepped, so only pass on effects up to and including the earliest one.
+        HaltAndCatchFireException exception = null;
+        int last = serialOrder.length - 1;
+        boolean hasEffects = false;
+        for (final Partition partition : partitions) {
+            if (partition.exception != null && (exception == null || partition.failedAt < last)) {
+                exception = partition.exception;
+                last = partition.failedAt;
+            }
+            hasEffects |= !partition.effects.isEmpty();
+        }
+
+        // Pass on effects in serial order, to the outer collector, if any.
+        if (hasEffects) {
+            for (int i = 0; i <= last; i++) {
+                final Partition partition = partitions[serialOrder[i] >>> 16];
+                final int index = serialOrder[i] & 0xFFFF;
+                final int begin = index > 0 ? partition.effectEnds[index - 1] : 0;
+                for (int effect = begin; effect < partition.effectEnds[index]; effect++) {
+                    WorldEffects.run(partition.effects.get(effect));
+                }
+            }
+        }
+
+        for (final Partition partition : partitions) {
+            partition.effects.clear();
+            partition.exception = null;
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void union(final List<Integer> parents, final Map<Pipe, Integer> pipeOwners, final Pipe pipe, final int index) {
+        // Locked pipes are immutable, they connect nothing.
+        if (!(pipe instanceof PipeImpl)) {
+            return;
+        }
+
+        final Integer owner = pipeOwners.putIfAbsent(pipe, index);
+        if (owner != null) {
+            parents.set(find(parents, index), find(parents, owner));
+        }
+    }
+
+    private static int find(final List<Integer> parents, int index) {
+        while (parents.get(index) != index) {
+            parents.set(index, parents.get(parents.get(index)));
+            index = parents.get(index);
+        }
+        return index;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static final class Partition {
+        private final Module[] modules;
+
+        /**
+         * The serial index of each module in the partition.
+         */
+        private final int[] order;
+
+        /**
+         * Effects on the world issued while stepping the partition.
+         */
+        private final List<Runnable> effects = new ArrayList<>();
+
+        /**
+         * For each module, the end of the range of {@link #effects} it issued.
+         */
+        private final int[] effectEnds;
+
+        /**
+         * Set if a module in the partition halted and caught fire.
+         */
+        @Nullable
+        private HaltAndCatchFireException exception;
+
+        /**
+         * The serial index of the module that halted and caught fire, if any.
+         */
+        private int failedAt;
+
+        private Partition(final Module[] modules, final int[] order) {
+            this.modules = modules;
+            this.order = order;
+            this.effectEnds = new int[modules.length];
+        }
+
+        private void step() {
+            final List<Runnable> outer = WorldEffects.deferTo(effects);
+            int index = 0;
+            try {
+                for (; index < modules.length; index++) {
+                    final Module module = modules[index];
+                    if (!(module instanceof SuspendableModule) || !((SuspendableModule) module).isSuspended()) {
+                        module.step();
+                    }
+                    effectEnds[index] = effects.size();
+                }
+            } catch (final HaltAndCatchFireException e) {
+                // Keep effects the module issued before halting, like serially.
+                exception = e;
+                failedAt = order[index];
+                Arrays.fill(effectEnds, index, modules.length, effects.size());
+            } finally {
+                WorldEffects.deferTo(outer);
+            }
+        }
+    }
+}
@@ -3,16 +3,34 @@ package li.cil.tis3d.common.machine;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
 
 /**
  * Abstraction layer for pipe containers, provides positional awareness.
  */
 public interface PipeHost {
-    World getPipeHostWorld();
-
     BlockPos getPipeHostPosition();
 
+    /**
+     * Get the list of all pipes managed by this host.
+     * <p>
+     * Indexed by face and port using {@link PipeTopology#pack(Face, Port)}.
+     *
+     * @return the list of pipes.
+     */
+    PipeImpl[] getPipes();
+
+    /**
+     * Called when a value is transferred through a pipe of this host, e.g. to
+     * show an effect in the world.
+     *
+     * @param receivingFace the face of the pipe's receiving end.
+     * @param sendingFace   the face of the pipe's sending end.
+     * @param sendingPort   the port of the pipe's sending end.
+     * @param value         the value being transferred.
+     */
+    default void onTransfer(final Face receivingFace, final Face sendingFace, final Port sendingPort, final short value) {
+    }
+
     default void onBeforeWriteComplete(final Face sendingFace, final Port sendingPort) {
     }
 
@@ -5,28 +5,20 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Module;
-import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Implementation of {@link Pipe}s for passing data between {@link Module}s.
+ * <p>
+ * The state of the pipe is stored in a {@link PipeStates} shared with the
+ * other pipes of its host, this is a view onto one entry in it.
  */
 public final class PipeImpl implements Pipe {
-    // --------------------------------------------------------------------- //
-    // Persisted data
-
-    /**
-     * The current state of the pipe.
-     */
-    private State readState = State.IDLE, writeState = State.IDLE;
-
-    /**
-     * The value currently being written over this pipe.
-     */
-    private short value = 0;
-
     // --------------------------------------------------------------------- //
     // Computed data
 
@@ -60,7 +52,59 @@ public final class PipeImpl implements Pipe {
         /**
          * Data was read from the pipe this update.
          */
-        COMPLETE
+        COMPLETE;
+
+        // --------------------------------------------------------------------- //
+
+        /**
+         * All possible enum values for quick indexing.
+         */
+        public static final State[] VALUES = State.values();
+    }
+
+    // Packed states, the read state in the lower three bits, the write state
+    // in the next three bits, see PipeStates#states.
+    private static final int READ_MASK = 0b000111;
+    private static final int WRITE_SHIFT = 3;
+    private static final int IDLE = State.IDLE.ordinal();
+    private static final int BUSY = State.BUSY.ordinal();
+    private static final int READY = State.READY.ordinal();
+    private static final int FLUSHING = State.FLUSHING.ordinal();
+    private static final int COMPLETE = State.COMPLETE.ordinal();
+
+    /**
+     * The packed state of a completed transfer, i.e. the state the transfer
+     * is finished in when the pipe is stepped next.
+     */
+    private static final byte TRANSFER_COMPLETE = pack(COMPLETE, COMPLETE);
+
+    /**
+     * The packed state a pipe advances to when stepped, for each packed state,
+     * see {@link #step()}.
+     */
+    private static final byte[] STEP = new byte[1 << (2 * WRITE_SHIFT)];
+
+    static {
+        for (int read = 0; read < State.VALUES.length; read++) {
+            for (int write = 0; write < State.VALUES.length; write++) {
+                int nextRead = read, nextWrite = write;
+                if (nextWrite == BUSY) {
+                    nextWrite = READY;
+                }
+                if (nextRead == BUSY) {
+                    nextRead = READY;
+                }
+                if (nextWrite == READY && nextRead == READY) {
+                    nextWrite = FLUSHING;
+                    nextRead = FLUSHING;
+                }
+                if (nextWrite == COMPLETE && nextRead == COMPLETE) {
+                    nextWrite = IDLE;
+                    nextRead = IDLE;
+                }
+                STEP[pack(read, write)] = pack(nextRead, nextWrite);
+            }
+        }
     }
 
     // NBT tag names.
@@ -68,6 +112,19 @@ public final class PipeImpl implements Pipe {
     private static final String TAG_WRITE_STATE = "writeState";
     private static final String TAG_VALUE = "value";
 
+    /**
+     * Listeners to notify on the next state change, see {@link #addListener(PipeListener)}.
+     * Created when the first listener is added.
+     */
+    @Nullable
+    private List<PipeListener> listeners;
+
+    /**
+     * The storage holding the state of this pipe, and the index of the pipe in it.
+     */
+    private final PipeStates states;
+    private final int index;
+
     /**
      * The container this pipe belongs to.
      */
@@ -85,11 +142,25 @@ public final class PipeImpl implements Pipe {
 
     // --------------------------------------------------------------------- //
 
+    /**
+     * Create a pipe with its own storage, e.g. a pipe not belonging to a casing.
+     */
     public PipeImpl(final PipeHost host, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+        this(new PipeStates(1), 0, host, receivingFace, sendingFace, sendingPort);
+    }
+
+    /**
+     * Create a pipe storing its state in the specified entry of the specified storage.
+     */
+    public PipeImpl(final PipeStates states, final int index, final PipeHost host, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+        this.states = states;
+        this.index = index;
         this.host = host;
         this.receivingFace = receivingFace;
         this.sendingFace = sendingFace;
         this.sendingPort = sendingPort;
+
+        states.pipes[index] = this;
     }
 
     /**
@@ -98,105 +169,221 @@ public final class PipeImpl implements Pipe {
      * state in a synchronized manner.
      */
     public void step() {
-        if (writeState == State.BUSY) {
-            writeState = State.READY;
-        }
-        if (readState == State.BUSY) {
-            readState = State.READY;
+        final byte state = states.states[index];
+        final PipeStats stats = states.stats;
+        if (stats != null) {
+            count(stats, state);
         }
-        if (writeState == State.READY && readState == State.READY) {
-            writeState = State.FLUSHING;
-            readState = State.FLUSHING;
+
+        final byte nextState = STEP[state];
+        if (nextState == state) {
+            return;
         }
-        if (writeState == State.COMPLETE && readState == State.COMPLETE) {
+
+        states.states[index] = nextState;
+        if (state == TRANSFER_COMPLETE) {
             finishTransfer();
+        } else {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * The number of transfers this pipe completed, while counting, see {@link PipeStats}.
+     *
+     * @return the number of completed transfers, zero if not counting.
+     */
+    public int getTransfers() {
+        final PipeStats stats = states.stats;
+        return stats != null ? stats.getTransfers(index) : 0;
+    }
+
+    /**
+     * The number of steps the writer of this pipe waited for a reader, while counting.
+     *
+     * @return the number of steps spent waiting for a reader, zero if not counting.
+     */
+    public int getWriteStalls() {
+        final PipeStats stats = states.stats;
+        return stats != null ? stats.getWriteStalls(index) : 0;
+    }
+
+    /**
+     * The number of steps the reader of this pipe waited for a writer, while counting.
+     *
+     * @return the number of steps spent waiting for a writer, zero if not counting.
+     */
+    public int getReadStalls() {
+        final PipeStats stats = states.stats;
+        return stats != null ? stats.getReadStalls(index) : 0;
+    }
+
+    /**
+     * Add a listener to be notified the next time the state of this pipe changes.
+     * <p>
+     * Used by modules blocked on this pipe to suspend themselves until the pipe
+     * changes. Listeners are removed after they were notified. Adding a listener
+     * that is already registered has no effect.
+     *
+     * @param listener the listener to add.
+     */
+    public void addListener(final PipeListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>(2);
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
         }
     }
 
     public void readFromNBT(final CompoundNBT nbt) {
-        readState = EnumUtils.readFromNBT(State.class, TAG_READ_STATE, nbt);
-        writeState = EnumUtils.readFromNBT(State.class, TAG_WRITE_STATE, nbt);
-        value = nbt.getShort(TAG_VALUE);
+        final State readState = EnumUtils.readFromNBT(State.class, TAG_READ_STATE, nbt);
+        final State writeState = EnumUtils.readFromNBT(State.class, TAG_WRITE_STATE, nbt);
+        setState(readState.ordinal(), writeState.ordinal());
+        states.values[index] = nbt.getShort(TAG_VALUE);
+        if (states.states[index] != 0) {
+            states.activate();
+        }
+
+        notifyListeners();
     }
 
     public void writeToNBT(final CompoundNBT nbt) {
-        EnumUtils.writeToNBT(readState, TAG_READ_STATE, nbt);
-        EnumUtils.writeToNBT(writeState, TAG_WRITE_STATE, nbt);
-        nbt.putShort(TAG_VALUE, value);
+        EnumUtils.writeToNBT(State.VALUES[getReadState()], TAG_READ_STATE, nbt);
+        EnumUtils.writeToNBT(State.VALUES[getWriteState()], TAG_WRITE_STATE, nbt);
+        nbt.putShort(TAG_VALUE, states.values[index]);
+    }
+
+    private static byte pack(final int readState, final int writeState) {
+        return (byte) (readState | (writeState << WRITE_SHIFT));
+    }
+
+    private int getReadState() {
+        return states.states[index] & READ_MASK;
+    }
+
+    private int getWriteState() {
+        return states.states[index] >> WRITE_SHIFT;
+    }
+
+    private void setState(final int readState, final int writeState) {
+        states.states[index] = pack(readState, writeState);
+    }
+
+    private void count(final PipeStats stats, final byte state) {
+        if (state == TRANSFER_COMPLETE) {
+            stats.countTransfer(index);
+            return;
+        }
+
+        final int readState = state & READ_MASK;
+        final int writeState = state >> WRITE_SHIFT;
+        if (writeState != IDLE && readState == IDLE) {
+            stats.countWriteStall(index);
+        } else if (readState != IDLE && writeState == IDLE) {
+            stats.countReadStall(index);
+        }
     }
 
     private void finishTransfer() {
-        readState = State.IDLE;
-        writeState = State.IDLE;
-        value = 0;
+        states.values[index] = 0;
+
+        notifyListeners();
 
         host.onWriteComplete(sendingFace, sendingPort);
     }
 
+    private void notifyListeners() {
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onPipeStateChanged();
+        }
+        listeners.clear();
+    }
+
     // --------------------------------------------------------------------- //
     // Pipe
 
     @Override
     public void beginWrite(final short value) {
-        if (writeState == State.COMPLETE) { // TODO Remove in MC 1.13
+        final int writeState = getWriteState();
+        if (writeState == COMPLETE) { // TODO Remove in MC 1.13
             return; // Silently ignore, backwards compatibility.
         }
-        if (writeState != State.IDLE) {
+        if (writeState != IDLE) {
             throw new IllegalStateException("Trying to write to a busy pipe. Check isWriting().");
         }
-        writeState = State.BUSY;
-        this.value = value;
+        setState(getReadState(), BUSY);
+        states.values[index] = value;
+        states.activate();
+
+        notifyListeners();
     }
 
     @Override
     public void cancelWrite() {
-        if (writeState == State.COMPLETE && readState == State.COMPLETE) {
+        if (states.states[index] == TRANSFER_COMPLETE) {
             return; // Ignore, wait for next step() to avoid execution order dependent cycle count.
         }
 
-        writeState = State.IDLE;
-        value = 0;
-        if (readState == State.FLUSHING) {
-            readState = State.READY;
+        if (getWriteState() == IDLE) {
+            return;
         }
+
+        final int readState = getReadState();
+        setState(readState == FLUSHING ? READY : readState, IDLE);
+        states.values[index] = 0;
+
+        notifyListeners();
     }
 
     @Override
     public boolean isWriting() {
-        return writeState != State.IDLE;
+        return getWriteState() != IDLE;
     }
 
     @Override
     public void beginRead() {
-        if (readState == State.COMPLETE) { // TODO Remove in MC 1.13
+        final int readState = getReadState();
+        if (readState == COMPLETE) { // TODO Remove in MC 1.13
             return; // Silently ignore, backwards compatibility.
         }
-        if (readState != State.IDLE) {
+        if (readState != IDLE) {
             throw new IllegalStateException("Trying to read from a busy pipe. Check isReading().");
         }
-        readState = State.BUSY;
+        setState(BUSY, getWriteState());
+        states.activate();
+
+        notifyListeners();
     }
 
     @Override
     public void cancelRead() {
-        if (writeState == State.COMPLETE && readState == State.COMPLETE) {
+        if (states.states[index] == TRANSFER_COMPLETE) {
             return; // Ignore, wait for next step() to avoid execution order dependent cycle count.
         }
 
-        readState = State.IDLE;
-        if (writeState == State.FLUSHING) {
-            writeState = State.READY;
+        if (getReadState() == IDLE) {
+            return;
         }
+
+        final int writeState = getWriteState();
+        setState(IDLE, writeState == FLUSHING ? READY : writeState);
+
+        notifyListeners();
     }
 
     @Override
     public boolean isReading() {
-        return readState != State.IDLE;
+        return getReadState() != IDLE;
     }
 
     @Override
     public boolean canTransfer() {
-        return writeState == State.FLUSHING && readState == State.FLUSHING;
+        return states.states[index] == pack(FLUSHING, FLUSHING);
     }
 
     @Override
@@ -205,27 +392,17 @@ public final class PipeImpl implements Pipe {
             throw new IllegalStateException("No data to read. Check canTransfer().");
         }
 
-        writeState = State.COMPLETE;
-        readState = State.COMPLETE;
+        states.states[index] = TRANSFER_COMPLETE;
 
-        sendEffect();
+        notifyListeners();
 
-        host.onBeforeWriteComplete(sendingFace, sendingPort);
+        final short value = states.values[index];
 
-        return value;
-    }
+        host.onTransfer(receivingFace, sendingFace, sendingPort, value);
 
-    private void sendEffect() {
-        final BlockPos position = host.getPipeHostPosition();
-        final double ox = Face.toDirection(receivingFace).getStepX() + Face.toDirection(sendingFace).getStepX();
-        final double oy = Face.toDirection(receivingFace).getStepY() + Face.toDirection(sendingFace).getStepY();
-        final double oz = Face.toDirection(receivingFace).getStepZ() + Face.toDirection(sendingFace).getStepZ();
-        final double x = ox * 0.55 + position.getX() + 0.5;
-        final double y = oy * 0.55 + position.getY() + 0.5;
-        final double z = oz * 0.55 + position.getZ() + 0.5;
-        final double extraOffsetY = oy < 0 ? -0.2 : (oy > 0) ? 0.1 : 0;
+        host.onBeforeWriteComplete(sendingFace, sendingPort);
 
-        Network.sendPipeEffect(host.getPipeHostWorld(), x, y + extraOffsetY, z);
+        return value;
     }
 
     // --------------------------------------------------------------------- //
@@ -233,6 +410,6 @@ public final class PipeImpl implements Pipe {
 
     @Override
     public String toString() {
-        return host.getPipeHostPosition() + ": " + sendingFace + " [" + writeState + "] -> " + receivingFace + " [" + readState + "]";
+        return host.getPipeHostPosition() + ": " + sendingFace + " [" + State.VALUES[getWriteState()] + "] -> " + receivingFace + " [" + State.VALUES[getReadState()] + "]";
     }
 }
@@ -0,0 +1,16 @@
+package li.cil.tis3d.common.machine;
+
+/**
+ * Listener for state changes of a {@link PipeImpl}, see {@link PipeImpl#addListener(PipeListener)}.
+ */
+@FunctionalInterface
+public interface PipeListener {
+    /**
+     * Called when the state of a pipe the listener was added to changed.
+     * <p>
+     * Listeners are removed from the pipe after this is called, so they have
+     * to add themselves again to receive further notifications. This must not
+     * happen from within this callback.
+     */
+    void onPipeStateChanged();
+}
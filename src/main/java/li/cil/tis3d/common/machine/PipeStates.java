@@ -0,0 +1,117 @@
+package li.cil.tis3d.common.machine;
+
+import javax.annotation.Nullable;
+
+/**
+ * The state of a group of {@link PipeImpl}s, typically all pipes of a
+ * {@link PipeHost}, packed into primitive arrays.
+ * <p>
+ * Pipes are views onto an entry in these arrays. Keeping the state of all
+ * pipes of a host in one place means stepping them only has to look at a
+ * small array to skip idle pipes, which most pipes are most of the time,
+ * instead of visiting each pipe object.
+ */
+public final class PipeStates {
+    /**
+     * The packed read and write state of each pipe, see {@link PipeImpl}.
+     * Zero for pipes that are idle, i.e. neither read from nor written to.
+     */
+    final byte[] states;
+
+    /**
+     * The value currently being written over each pipe.
+     */
+    final short[] values;
+
+    /**
+     * The pipes viewing the entries, set when the pipes are created.
+     */
+    final PipeImpl[] pipes;
+
+    /**
+     * The worklist this storage is a member of, if any, its slot in it, and
+     * whether it is currently queued, see {@link ActivePipes}.
+     */
+    @Nullable
+    ActivePipes activePipes;
+    int slot;
+    boolean isQueued;
+
+    /**
+     * The counters updated while stepping the pipes, if enabled.
+     */
+    @Nullable
+    PipeStats stats;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Create storage for the specified number of pipes.
+     *
+     * @param count the number of pipes.
+     */
+    public PipeStates(final int count) {
+        states = new byte[count];
+        values = new short[count];
+        pipes = new PipeImpl[count];
+    }
+
+    /**
+     * Enable or disable counting transfers and stalls of the pipes.
+     *
+     * @param stats the counters to update, or <code>null</code> to stop counting.
+     */
+    public void setStats(@Nullable final PipeStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * The counters updated while stepping the pipes.
+     *
+     * @return the counters, or <code>null</code> if not counting.
+     */
+    @Nullable
+    public PipeStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Whether all pipes are idle, i.e. neither read from nor written to.
+     *
+     * @return <code>true</code> if all pipes are idle; <code>false</code> otherwise.
+     */
+    public boolean isIdle() {
+        for (final byte state : states) {
+            if (state != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advances the logic of all pipes by calling {@link PipeImpl#step()} on
+     * those that are not idle, in order. Idle pipes do not change when
+     * stepped, so skipping them has no effect on the result.
+     */
+    public void step() {
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != 0) {
+                pipes[i].step();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Called when a pipe leaves the idle state, to queue this storage in the
+     * worklist it is a member of, if any.
+     */
+    void activate() {
+        final ActivePipes activePipes = this.activePipes;
+        if (activePipes != null && !isQueued) {
+            activePipes.add(this);
+        }
+    }
+}
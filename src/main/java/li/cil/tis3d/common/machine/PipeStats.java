@@ -0,0 +1,158 @@
+package li.cil.tis3d.common.machine;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of the pipes of a {@link PipeHost} over a sliding window of steps,
+ * to find saturated links in a multi-block.
+ * <p>
+ * For each pipe this counts completed transfers, steps the writer spent waiting
+ * for a reader, and steps the reader spent waiting for a writer. Counts are
+ * collected in buckets of {@link #BUCKET_STEPS} steps, the oldest bucket being
+ * dropped when a new one starts, so queries cover between the last
+ * <code>(WINDOW_BUCKETS - 1) * BUCKET_STEPS</code> and <code>WINDOW_BUCKETS * BUCKET_STEPS</code>
+ * steps, see {@link #getWindowSteps()}.
+ * <p>
+ * Counters are updated while pipes are stepped, see {@link PipeStates#setStats(PipeStats)}.
+ */
+public final class PipeStats {
+    /**
+     * Number of steps counted in each bucket.
+     */
+    public static final int BUCKET_STEPS = 20;
+
+    /**
+     * Number of buckets in the window.
+     */
+    public static final int WINDOW_BUCKETS = 10;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Counters per bucket and pipe, indexed by <code>bucket * pipeCount + pipe</code>.
+     */
+    private final int[] transfers, writeStalls, readStalls;
+    private final int pipeCount;
+
+    /**
+     * Provides the number of steps the multi-block performed so far.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The step counting started in, and the bucket currently counted in,
+     * as an absolute bucket number, i.e. step / {@link #BUCKET_STEPS}.
+     */
+    private final long startStep;
+    private long bucket;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Create counters for the specified number of pipes.
+     *
+     * @param pipeCount the number of pipes.
+     * @param clock     provides the number of steps performed so far.
+     */
+    public PipeStats(final int pipeCount, final LongSupplier clock) {
+        this.pipeCount = pipeCount;
+        this.clock = clock;
+        transfers = new int[WINDOW_BUCKETS * pipeCount];
+        writeStalls = new int[WINDOW_BUCKETS * pipeCount];
+        readStalls = new int[WINDOW_BUCKETS * pipeCount];
+        startStep = clock.getAsLong();
+        bucket = startStep / BUCKET_STEPS;
+    }
+
+    /**
+     * The number of steps the counters currently cover.
+     *
+     * @return the number of steps in the window.
+     */
+    public int getWindowSteps() {
+        final long step = clock.getAsLong();
+        final long windowStart = Math.max(startStep, (step / BUCKET_STEPS - (WINDOW_BUCKETS - 1)) * BUCKET_STEPS);
+        return (int) (step - windowStart);
+    }
+
+    /**
+     * The number of transfers the specified pipe completed in the window.
+     *
+     * @param pipe the index of the pipe.
+     * @return the number of completed transfers.
+     */
+    public int getTransfers(final int pipe) {
+        return sum(transfers, pipe);
+    }
+
+    /**
+     * The number of steps the writer of the specified pipe spent waiting for a reader in the window.
+     *
+     * @param pipe the index of the pipe.
+     * @return the number of steps spent waiting for a reader.
+     */
+    public int getWriteStalls(final int pipe) {
+        return sum(writeStalls, pipe);
+    }
+
+    /**
+     * The number of steps the reader of the specified pipe spent waiting for a writer in the window.
+     *
+     * @param pipe the index of the pipe.
+     * @return the number of steps spent waiting for a writer.
+     */
+    public int getReadStalls(final int pipe) {
+        return sum(readStalls, pipe);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    void countTransfer(final int pipe) {
+        transfers[slot(pipe)]++;
+    }
+
+    void countWriteStall(final int pipe) {
+        writeStalls[slot(pipe)]++;
+    }
+
+    void countReadStall(final int pipe) {
+        readStalls[slot(pipe)]++;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private int slot(final int pipe) {
+        advance();
+        return (int) (bucket % WINDOW_BUCKETS) * pipeCount + pipe;
+    }
+
+    private int sum(final int[] counters, final int pipe) {
+        advance();
+        int sum = 0;
+        for (int i = pipe; i < counters.length; i += pipeCount) {
+            sum += counters[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Move to the bucket of the current step, clearing buckets skipped on the way.
+     */
+    private void advance() {
+        final long current = clock.getAsLong() / BUCKET_STEPS;
+        if (current == bucket) {
+            return;
+        }
+
+        final long cleared = Math.min(current - bucket, WINDOW_BUCKETS);
+        for (long i = 1; i <= cleared; i++) {
+            final int offset = (int) ((bucket + i) % WINDOW_BUCKETS) * pipeCount;
+            for (int pipe = 0; pipe < pipeCount; pipe++) {
+                transfers[offset + pipe] = 0;
+                writeStalls[offset + pipe] = 0;
+                readStalls[offset + pipe] = 0;
+            }
+        }
+        bucket = current;
+    }
+}
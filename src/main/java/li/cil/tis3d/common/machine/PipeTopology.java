@@ -0,0 +1,135 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+
+/**
+ * Mapping of faces and ports around the edges of a computer block, used to
+ * determine which pipes connect which faces of a single block and of adjacent
+ * blocks in a multi-block.
+ * <p>
+ * Pipes of a block are stored in a flat array, indexed by face and port using
+ * {@link #pack(Face, Port)}.
+ */
+public final class PipeTopology {
+    /**
+     * The number of pipes in a single computer block.
+     */
+    public static final int PIPE_COUNT = Face.VALUES.length * Port.VALUES.length;
+
+    // Mapping for faces and ports around edges, i.e. to get the other side
+    // of an edge specified by a face and port.
+    private static final Face[][] FACE_MAPPING;
+    private static final Port[][] PORT_MAPPING;
+
+    static {
+        FACE_MAPPING = new Face[][]{
+            {Face.X_POS, Face.X_NEG, Face.Z_NEG, Face.Z_POS}, // Y_NEG
+            {Face.X_POS, Face.X_NEG, Face.Z_POS, Face.Z_NEG}, // Y_POS
+            {Face.X_POS, Face.X_NEG, Face.Y_POS, Face.Y_NEG}, // Z_NEG
+            {Face.X_NEG, Face.X_POS, Face.Y_POS, Face.Y_NEG}, // Z_POS
+            {Face.Z_NEG, Face.Z_POS, Face.Y_POS, Face.Y_NEG}, // X_NEG
+            {Face.Z_POS, Face.Z_NEG, Face.Y_POS, Face.Y_NEG}  // X_POS
+            //    LEFT        RIGHT       UP          DOWN
+        };
+        PORT_MAPPING = new Port[][]{
+            {Port.DOWN, Port.DOWN, Port.DOWN, Port.DOWN},     // Y_NEG
+            {Port.UP, Port.UP, Port.UP, Port.UP},             // Y_POS
+            {Port.RIGHT, Port.LEFT, Port.DOWN, Port.UP},      // Z_NEG
+            {Port.RIGHT, Port.LEFT, Port.UP, Port.DOWN},      // Z_POS
+            {Port.RIGHT, Port.LEFT, Port.RIGHT, Port.RIGHT},  // X_NEG
+            {Port.RIGHT, Port.LEFT, Port.LEFT, Port.LEFT}     // X_POS
+            //    LEFT        RIGHT       UP          DOWN
+        };
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the the face on the other side of an edge.
+     *
+     * @param face the face defining the edge.
+     * @param port the port defining the edge.
+     * @return the face on the other side of the edge.
+     */
+    public static Face mapFace(final Face face, final Port port) {
+        return FACE_MAPPING[face.ordinal()][port.ordinal()];
+    }
+
+    /**
+     * Get the the port on the other side of an edge, relative to the face on
+     * the other side of the edge.
+     *
+     * @param face the face defining the edge.
+     * @param port the port defining the edge.
+     * @return the port on the other side of the edge.
+     */
+    public static Port mapPort(final Face face, final Port port) {
+        return PORT_MAPPING[face.ordinal()][port.ordinal()];
+    }
+
+    /**
+     * Convert a face-port tuple to a unique number.
+     *
+     * @param face the face to pack into the number.
+     * @param port the port to pack into the number.
+     * @return the compressed representation of the face-port tuple.
+     */
+    public static int pack(final Face face, final Port port) {
+        return face.ordinal() * Port.VALUES.length + port.ordinal();
+    }
+
+    /**
+     * Convert the faces on both sides of an edge to the unique number of the
+     * face-port tuple defining that edge from the side of the first face,
+     * i.e. the number {@link #pack(Face, Port)} returns for the port for which
+     * {@link #mapFace(Face, Port)} returns the other face.
+     *
+     * @param face      the face defining the edge, the one to pack.
+     * @param otherFace the face on the other side of the edge.
+     * @return the compressed representation of the face-port tuple.
+     * @throws IllegalArgumentException if the faces do not share an edge.
+     */
+    public static int pack(final Face face, final Face otherFace) {
+        for (final Port port : Port.VALUES) {
+            if (mapFace(face, port) == otherFace) {
+                return pack(face, port);
+            }
+        }
+        throw new IllegalArgumentException("Faces do not share an edge.");
+    }
+
+    /**
+     * Map a face-port tuple to the face-tuple representing its opposite (i.e.
+     * the face-port tuple defining the same edge but from the other side),
+     * then convert it to a unique number.
+     *
+     * @param face the face defining the edge to the face to pack.
+     * @param port the port defining the edge to the port to pack.
+     * @return the compressed representation of the mapped face-port tuple.
+     */
+    public static int packMapped(final Face face, final Port port) {
+        return mapFace(face, port).ordinal() * Port.VALUES.length + mapPort(face, port).ordinal();
+    }
+
+    /**
+     * Get the port opposite to the specified port in a casing opposite to the
+     * the specified facing. Used when connecting across multiple casings.
+     *
+     * @param face the face opposite to which to get the port for.
+     * @param port the port opposite to which to get the port for.
+     * @return the port opposite to the specified port on the specified face.
+     */
+    public static Port flipSide(final Face face, final Port port) {
+        if (face == Face.Y_NEG || face == Face.Y_POS) {
+            return (port == Port.UP || port == Port.DOWN) ? port.getOpposite() : port;
+        } else {
+            return (port == Port.LEFT || port == Port.RIGHT) ? port.getOpposite() : port;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private PipeTopology() {
+    }
+}
@@ -0,0 +1,28 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by modules that can tell when stepping them would have no effect,
+ * e.g. because they are blocked waiting for a pipe.
+ * <p>
+ * Suspended modules are skipped by their {@link CasingImpl} until they are
+ * resumed. Modules are responsible for resuming themselves when something
+ * they wait for changes, typically by registering as a {@link PipeListener}.
+ */
+public interface SuspendableModule extends Module {
+    /**
+     * Whether the module is currently suspended, i.e. should not be stepped.
+     *
+     * @return <code>true</code> if the module is suspended; <code>false</code> otherwise.
+     */
+    boolean isSuspended();
+
+    /**
+     * Resume the module, so that it will be stepped again.
+     * <p>
+     * Called by the casing when something outside the module's control
+     * changed, such as the pipe layout or locked ports.
+     */
+    void resume();
+}
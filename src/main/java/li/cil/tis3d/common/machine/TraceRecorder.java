@@ -0,0 +1,424 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.QueueModule;
+import li.cil.tis3d.common.module.RandomAccessMemoryModule;
+import li.cil.tis3d.common.module.ReadOnlyMemoryModule;
+import li.cil.tis3d.common.module.StackModule;
+import li.cil.tis3d.common.module.execution.MachineState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.ListNBT;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static li.cil.tis3d.common.machine.PipeTopology.*;
+
+/**
+ * Records the execution of a multi-block for debugging.
+ * <p>
+ * Keeps the most recent changes to the state of all execution modules and
+ * all values transferred through pipes in a ring buffer. When the recorder
+ * is created, it takes a keyframe of the state of the multi-block, so that
+ * the recorded execution can be reproduced by stepping the keyframe, e.g.
+ * in the headless simulator. Keyframes contain all modules, so only
+ * multi-blocks consisting of modules that can be stepped without a world
+ * can be recorded, see {@link #isReplayable(List)}.
+ * <p>
+ * Recording does not allocate. Recorders only exist while tracing is armed,
+ * so multi-blocks that are not traced only pay for a <code>null</code> check.
+ * <p>
+ * Each record consists of {@link #RECORD_SIZE} ints: the record kind in the
+ * lowest byte combined with the id of the machine or pipe, the step the record
+ * was made in, and two kind specific values:
+ * <ul>
+ * <li>{@link #KIND_MACHINE}: the id is <code>host * 6 + face</code>, the values
+ * are <code>pc | (last + 1) &lt;&lt; 16</code> and <code>acc | bak &lt;&lt; 16</code>,
+ * with <code>last</code> being the port ordinal or <code>-1</code>.</li>
+ * <li>{@link #KIND_TRANSFER}: the id is <code>host * 24 + pack(face, port)</code>
+ * of the sending end, the first value is the transferred value.</li>
+ * </ul>
+ * Hosts are identified by their index in the keyframe, which lists all
+ * casings in the order they are stepped in, followed by the controller.
+ */
+public final class TraceRecorder {
+    /**
+     * The default number of records kept.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The maximum number of records that may be kept.
+     */
+    public static final int MAX_CAPACITY = 1 << 22;
+
+    /**
+     * The number of ints per record.
+     */
+    public static final int RECORD_SIZE = 4;
+
+    // Record kinds.
+    public static final int KIND_MACHINE = 1;
+    public static final int KIND_TRANSFER = 2;
+
+    // NBT tag names.
+    public static final String TAG_VERSION = "version";
+    public static final String TAG_CAPACITY = "capacity";
+    public static final String TAG_STEPS = "steps";
+    public static final String TAG_RECORDS = "records";
+    public static final String TAG_KEYFRAME = "keyframe";
+    public static final String TAG_POSITION = "position";
+    public static final String TAG_PIPES = "pipes";
+    public static final String TAG_CASING = "casing";
+    public static final String TAG_LOCKED = "locked";
+    public static final String TAG_MODULES = "modules";
+    public static final String TAG_FACE = "face";
+    public static final String TAG_TYPE = "type";
+    public static final String TAG_MODULE = "module";
+
+    /**
+     * The version of the trace format, stored in exported traces.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Modules that can be stepped without a world, and thus be replayed, by
+     * the id of their type in keyframes, which is the name of their item.
+     */
+    private static final Map<String, BiFunction<Casing, Face, Module>> REPLAYABLE_MODULES = new HashMap<>();
+    private static final Map<Class<?>, String> REPLAYABLE_MODULE_TYPES = new HashMap<>();
+
+    static {
+        addReplayableModule("execution_module", ExecutionModule.class, ExecutionModule::new);
+        addReplayableModule("queue_module", QueueModule.class, QueueModule::new);
+        addReplayableModule("random_access_memory_module", RandomAccessMemoryModule.class, RandomAccessMemoryModule::new);
+        addReplayableModule("read_only_memory_module", ReadOnlyMemoryModule.class, ReadOnlyMemoryModule::new);
+        addReplayableModule("stack_module", StackModule.class, StackModule::new);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The state of the multi-block when recording started.
+     */
+    private final ListNBT keyframe = new ListNBT();
+
+    /**
+     * Ids of all hosts of the multi-block, i.e. their index in the keyframe.
+     */
+    private final Map<PipeHost, Integer> hostIds = new IdentityHashMap<>();
+
+    /**
+     * The states of all execution modules of the multi-block, and their ids.
+     */
+    private final MachineState[] machines;
+    private final int[] machineIds;
+
+    /**
+     * Last recorded pc, acc, bak and last of each execution module.
+     */
+    private final int[] snapshots;
+
+    /**
+     * The ring buffer holding the records.
+     */
+    private final int[] records;
+    private final int capacity;
+    private int next, count;
+
+    /**
+     * The number of steps recorded so far.
+     */
+    private int step;
+
+    /**
+     * Whether recording was stopped, because the multi-block changed in a
+     * way that cannot be reproduced from the keyframe.
+     */
+    private boolean isStopped;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Start recording the specified multi-block, taking a keyframe of its state.
+     *
+     * @param casings    the casings of the multi-block, in the order they are stepped in.
+     * @param controller the controller of the multi-block, its pipes are stepped last.
+     * @param capacity   the maximum number of records to keep.
+     * @param <T>        the type of the casings.
+     * @throws IllegalArgumentException if the multi-block cannot be replayed, see {@link #isReplayable(List)}.
+     */
+    public <T extends PipeHost & Casing> TraceRecorder(final List<T> casings, final PipeHost controller, final int capacity) {
+        if (!isReplayable(casings)) {
+            throw new IllegalArgumentException("Multi-block contains modules that cannot be replayed.");
+        }
+
+        this.capacity = Math.max(1, Math.min(MAX_CAPACITY, capacity));
+        this.records = new int[this.capacity * RECORD_SIZE];
+
+        final List<MachineState> machines = new ArrayList<>();
+        final List<Integer> machineIds = new ArrayList<>();
+        for (final T casing : casings) {
+            final int hostId = keyframe.size();
+            final CompoundNBT hostNbt = addHost(casing);
+            hostNbt.putBoolean(TAG_CASING, true);
+
+            final byte[] locked = new byte[PIPE_COUNT];
+            final ListNBT modulesNbt = new ListNBT();
+            for (final Face face : Face.VALUES) {
+                for (final Port port : Port.VALUES) {
+                    if (casing.getReceivingPipe(face, port) == LockedPipe.INSTANCE) {
+                        locked[pack(face, port)] = 1;
+                    }
+                }
+
+                final Module module = casing.getModule(face);
+                if (module == null) {
+                    continue;
+                }
+
+                final CompoundNBT moduleNbt = new CompoundNBT();
+                module.save(moduleNbt);
+                final CompoundNBT entryNbt = new CompoundNBT();
+                entryNbt.putByte(TAG_FACE, (byte) face.ordinal());
+                entryNbt.putString(TAG_TYPE, REPLAYABLE_MODULE_TYPES.get(module.getClass()));
+                entryNbt.put(TAG_MODULE, moduleNbt);
+                modulesNbt.add(entryNbt);
+
+                if (module instanceof ExecutionModule) {
+                    machines.add(((ExecutionModule) module).getState());
+                    machineIds.add(hostId * Face.VALUES.length + face.ordinal());
+                }
+            }
+            hostNbt.putByteArray(TAG_LOCKED, locked);
+            hostNbt.put(TAG_MODULES, modulesNbt);
+        }
+        addHost(controller);
+
+        this.machines = machines.toArray(new MachineState[0]);
+        this.machineIds = machineIds.stream().mapToInt(Integer::intValue).toArray();
+        this.snapshots = new int[this.machines.length * 4];
+        for (int i = 0; i < this.machines.length; i++) {
+            snapshot(i);
+        }
+    }
+
+    /**
+     * Whether the specified casings only contain modules that can be stepped
+     * without a world, so that their execution can be replayed from a keyframe.
+     *
+     * @param casings the casings to check.
+     * @return <code>true</code> if the casings can be recorded; <code>false</code> otherwise.
+     */
+    public static boolean isReplayable(final List<? extends Casing> casings) {
+        for (final Casing casing : casings) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module != null && !REPLAYABLE_MODULE_TYPES.containsKey(module.getClass())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the factory for modules of the specified type, as stored in keyframes.
+     *
+     * @param type the type of the module.
+     * @return the factory for the module, or <code>null</code> if the type is unknown.
+     */
+    @Nullable
+    public static BiFunction<Casing, Face, Module> getReplayableModule(final String type) {
+        return REPLAYABLE_MODULES.get(type);
+    }
+
+    /**
+     * Stop recording, e.g. because the multi-block was disabled or changed
+     * in a way that cannot be reproduced from the keyframe. Records made so
+     * far are kept.
+     */
+    public void stop() {
+        isStopped = true;
+    }
+
+    /**
+     * Whether recording was stopped.
+     *
+     * @return <code>true</code> if recording was stopped; <code>false</code> otherwise.
+     */
+    public boolean isStopped() {
+        return isStopped;
+    }
+
+    /**
+     * The number of steps recorded since the keyframe.
+     *
+     * @return the number of recorded steps.
+     */
+    public int getStepCount() {
+        return step;
+    }
+
+    /**
+     * Record a value being transferred through a pipe.
+     *
+     * @param host        the host of the pipe.
+     * @param sendingFace the face of the sending end of the pipe.
+     * @param sendingPort the port of the sending end of the pipe.
+     * @param value       the transferred value.
+     */
+    public void recordTransfer(final PipeHost host, final Face sendingFace, final Port sendingPort, final short value) {
+        if (isStopped) {
+            return;
+        }
+
+        final Integer hostId = hostIds.get(host);
+        if (hostId == null) {
+            return; // Not part of the recorded multi-block.
+        }
+
+        write(KIND_TRANSFER, hostId * PIPE_COUNT + pack(sendingFace, sendingPort), value, 0);
+    }
+
+    /**
+     * Finish recording a step, recording the state of all execution modules
+     * that changed during the step.
+     */
+    public void finishStep() {
+        if (isStopped) {
+            return;
+        }
+
+        for (int i = 0; i < machines.length; i++) {
+            if (snapshot(i)) {
+                final int offset = i * 4;
+                write(KIND_MACHINE, machineIds[i],
+                    (snapshots[offset] & 0xFFFF) | ((snapshots[offset + 3] + 1) << 16),
+                    (snapshots[offset + 1] & 0xFFFF) | (snapshots[offset + 2] << 16));
+            }
+        }
+
+        step++;
+    }
+
+    /**
+     * Get the records currently kept, oldest first.
+     *
+     * @return the records, {@link #RECORD_SIZE} ints per record.
+     */
+    public int[] getRecords() {
+        final int[] result = new int[count * RECORD_SIZE];
+        final int first = count < capacity ? 0 : next;
+        for (int i = 0; i < count; i++) {
+            final int index = (first + i) % capacity;
+            System.arraycopy(records, index * RECORD_SIZE, result, i * RECORD_SIZE, RECORD_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Store the keyframe and all records kept in the specified tag.
+     *
+     * @param nbt the tag to store the trace in.
+     */
+    public void save(final CompoundNBT nbt) {
+        nbt.putInt(TAG_VERSION, VERSION);
+        nbt.putInt(TAG_CAPACITY, capacity);
+        nbt.putInt(TAG_STEPS, step);
+        nbt.put(TAG_KEYFRAME, keyframe.copy());
+        nbt.putIntArray(TAG_RECORDS, getRecords());
+    }
+
+    /**
+     * Write the trace to the specified stream, in compressed NBT format.
+     *
+     * @param stream the stream to write to.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void export(final OutputStream stream) throws IOException {
+        final CompoundNBT nbt = new CompoundNBT();
+        save(nbt);
+        CompressedStreamTools.writeCompressed(nbt, stream);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void addReplayableModule(final String type, final Class<? extends Module> moduleClass, final BiFunction<Casing, Face, Module> factory) {
+        REPLAYABLE_MODULES.put(type, factory);
+        REPLAYABLE_MODULE_TYPES.put(moduleClass, type);
+    }
+
+    /**
+     * Assign the next id to the specified host and add its pipes to the keyframe.
+     *
+     * @param host the host to add.
+     * @return the tag representing the host in the keyframe.
+     */
+    private CompoundNBT addHost(final PipeHost host) {
+        hostIds.put(host, keyframe.size());
+
+        final CompoundNBT hostNbt = new CompoundNBT();
+        hostNbt.putLong(TAG_POSITION, host.getPipeHostPosition().asLong());
+
+        final ListNBT pipesNbt = new ListNBT();
+        for (final PipeImpl pipe : host.getPipes()) {
+            final CompoundNBT pipeNbt = new CompoundNBT();
+            pipe.writeToNBT(pipeNbt);
+            pipesNbt.add(pipeNbt);
+        }
+        hostNbt.put(TAG_PIPES, pipesNbt);
+
+        keyframe.add(hostNbt);
+        return hostNbt;
+    }
+
+    private void write(final int kind, final int id, final int value0, final int value1) {
+        final int offset = next * RECORD_SIZE;
+        records[offset] = kind | (id << 8);
+        records[offset + 1] = step;
+        records[offset + 2] = value0;
+        records[offset + 3] = value1;
+
+        next = (next + 1) % capacity;
+        if (count < capacity) {
+            count++;
+        }
+    }
+
+    /**
+     * Update the snapshot of the specified machine.
+     *
+     * @param index the index of the machine to update the snapshot of.
+     * @return <code>true</code> if the snapshot changed; <code>false</code> otherwise.
+     */
+    private boolean snapshot(final int index) {
+        final MachineState state = machines[index];
+        final int last = state.last.isPresent() ? state.last.get().ordinal() : -1;
+        final int offset = index * 4;
+        if (snapshots[offset] == state.pc &&
+            snapshots[offset + 1] == state.acc &&
+            snapshots[offset + 2] == state.bak &&
+            snapshots[offset + 3] == last) {
+            return false;
+        }
+
+        snapshots[offset] = state.pc;
+        snapshots[offset + 1] = state.acc;
+        snapshots[offset + 2] = state.bak;
+        snapshots[offset + 3] = last;
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package li.cil.tis3d.common.machine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of values for exactly one producer and one
+ * consumer, which may run on different threads.
+ * <p>
+ * The producer owns the tail and the consumer owns the head, each only ever
+ * advancing its own index, and publishing it with release semantics so the
+ * other side sees the values written or freed before the index moved. Each
+ * side keeps a cached copy of the other side's index and only re-reads the
+ * shared one when the cached value suggests the queue is full respectively
+ * empty, so uncontended operations touch no shared state but their own index.
+ * <p>
+ * {@link #offer(short)} and {@link #isFull()} may only be called by the
+ * producer; {@link #isEmpty()}, {@link #peek()}, {@link #remove()} and
+ * {@link #clear()} only by the consumer. {@link #toArray()} may only be called
+ * while neither side is active, e.g. when saving on the server thread.
+ */
+public final class ValueRingBuffer {
+    private final short[] values;
+    private final int mask;
+
+    /**
+     * Index of the next value to read, only advanced by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Index of the next value to write, only advanced by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The producer's last known value of {@link #head}.
+     */
+    private long cachedHead;
+
+    /**
+     * The consumer's last known value of {@link #tail}.
+     */
+    private long cachedTail;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Create a new queue with the specified capacity.
+     *
+     * @param capacity the number of values the queue can hold, a power of two.
+     */
+    public ValueRingBuffer(final int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        values = new short[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * The number of values the queue can hold.
+     *
+     * @return the capacity of the queue.
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+
+    // --------------------------------------------------------------------- //
+    // Producer
+
+    /**
+     * Whether the queue is full, i.e. {@link #offer(short)} would fail.
+     *
+     * @return <code>true</code> if the queue is full; <code>false</code> otherwise.
+     */
+    public boolean isFull() {
+        final long currentTail = tail.get();
+        if (currentTail - cachedHead < values.length) {
+            return false;
+        }
+        cachedHead = head.get();
+        return currentTail - cachedHead >= values.length;
+    }
+
+    /**
+     * Append a value to the queue, if it is not full.
+     *
+     * @param value the value to append.
+     * @return <code>true</code> if the value was appended; <code>false</code> if the queue is full.
+     */
+    public boolean offer(final short value) {
+        if (isFull()) {
+            return false;
+        }
+        final long currentTail = tail.get();
+        values[(int) currentTail & mask] = value;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    // --------------------------------------------------------------------- //
+    // Consumer
+
+    /**
+     * Whether the queue is empty, i.e. there is no value to {@link #peek()}.
+     *
+     * @return <code>true</code> if the queue is empty; <code>false</code> otherwise.
+     */
+    public boolean isEmpty() {
+        final long currentHead = head.get();
+        if (currentHead < cachedTail) {
+            return false;
+        }
+        cachedTail = tail.get();
+        return currentHead >= cachedTail;
+    }
+
+    /**
+     * The oldest value in the queue. Only valid if the queue is not {@link #isEmpty()}.
+     *
+     * @return the oldest value in the queue.
+     */
+    public short peek() {
+        return values[(int) head.get() & mask];
+    }
+
+    /**
+     * Remove the oldest value from the queue. Only valid if the queue is not {@link #isEmpty()}.
+     */
+    public void remove() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Remove all values from the queue.
+     */
+    public void clear() {
+        cachedTail = tail.get();
+        head.lazySet(cachedTail);
+    }
+
+    // --------------------------------------------------------------------- //
+    // Quiescent
+
+    /**
+     * The values currently in the queue, oldest first.
+     *
+     * @return a copy of the values in the queue.
+     */
+    public short[] toArray() {
+        final long currentHead = head.get();
+        final short[] result = new short[(int) (tail.get() - currentHead)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values[(int) (currentHead + i) & mask];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package li.cil.tis3d.common.machine;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Routes effects of stepping a multi-block on the world outside of it, such as
+ * block updates, sounds, entity spawning and network messages.
+ * <p>
+ * Usually effects are applied immediately. While multi-blocks are stepped in
+ * parallel, the world must not be modified, so effects are collected per
+ * multi-block and applied on the server thread afterwards, in the order they
+ * were issued.
+ */
+public final class WorldEffects {
+    /**
+     * The list effects are collected in on the current thread, if any.
+     */
+    private static final ThreadLocal<List<Runnable>> DEFERRED = new ThreadLocal<>();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Apply the specified effect, or defer it if effects are currently
+     * being collected on this thread.
+     *
+     * @param effect the effect to apply.
+     */
+    public static void run(final Runnable effect) {
+        final List<Runnable> deferred = DEFERRED.get();
+        if (deferred != null) {
+            deferred.add(effect);
+        } else {
+            effect.run();
+        }
+    }
+
+    /**
+     * Collect effects issued on the current thread in the specified list,
+     * instead of applying them, or apply them again if <code>null</code>.
+     * <p>
+     * Collecting may be nested; callers must restore the previous list when
+     * done, typically in a <code>finally</code> block.
+     *
+     * @param effects the list to collect effects in, or <code>null</code> to apply them.
+     * @return the list effects were collected in before, to be restored when done.
+     */
+    @Nullable
+    public static List<Runnable> deferTo(@Nullable final List<Runnable> effects) {
+        final List<Runnable> previous = DEFERRED.get();
+        if (effects != null) {
+            DEFERRED.set(effects);
+        } else {
+            DEFERRED.remove();
+        }
+        return previous;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private WorldEffects() {
+    }
+}
@@ -7,6 +7,8 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModule;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.common.machine.WorldEffects;
 import net.minecraft.particles.ParticleTypes;
 import net.minecraft.state.properties.NoteBlockInstrument;
 import net.minecraft.util.Direction;
@@ -22,7 +24,7 @@ import net.minecraftforge.event.world.NoteBlockEvent;
 /**
  * The audio module, emitting sounds like none other.
  */
-public final class AudioModule extends AbstractModule {
+public final class AudioModule extends AbstractModule implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Computed data
 
@@ -77,7 +79,8 @@ public final class AudioModule extends AbstractModule {
                 // Don't actually read more values if we already sent a packet this tick.
                 final World world = getCasing().getCasingLevel();
                 if (world.getGameTime() > lastStep) {
-                    playNote(receivingPipe.read());
+                    final short value = receivingPipe.read();
+                    WorldEffects.run(() -> playNote(value));
                 }
             }
         }
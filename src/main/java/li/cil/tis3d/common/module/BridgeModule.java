@@ -0,0 +1,348 @@
+package li.cil.tis3d.common.module;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.prefab.module.AbstractModule;
+import li.cil.tis3d.api.util.RenderContext;
+import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.item.BridgeModuleItem;
+import li.cil.tis3d.common.item.Items;
+import li.cil.tis3d.common.machine.BridgeChannels;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.util.Color;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.IntArrayNBT;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nullable;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.UUID;
+
+/**
+ * The bridge module forwards values to the other module of its link, which
+ * may be installed in a different multi-block, and writes values received from
+ * it, like a queue module spanning two multi-blocks.
+ * <p>
+ * Values are exchanged via the lock-free buffers of {@link BridgeChannels}, so
+ * the two multi-blocks keep being stepped independently, potentially on
+ * different threads. The module only reads from its ports while the other side
+ * is running and the buffer towards it has room, so a full buffer stalls the
+ * writers in this multi-block until the other side catches up. Multi-blocks
+ * with bridge modules are never stepped in partitions, see {@link #canStepInPartition()}.
+ * <p>
+ * A module installed from a fresh item starts a new link. Using a bridge module
+ * item on an installed module pairs the item with the other side of its link.
+ */
+public final class BridgeModule extends AbstractModule implements ConcurrentModule {
+    // --------------------------------------------------------------------- //
+    // Persisted data
+
+    @Nullable
+    private UUID link;
+    private int side;
+
+    /**
+     * Values received before the module was last loaded, written before values
+     * still in the buffer of the link.
+     */
+    private final Deque<Short> receiveQueue = new LinkedList<>();
+
+    /**
+     * Whether the other side of the link is running. Only used to notify the
+     * client of changes on the server.
+     */
+    private boolean isConnected;
+
+    // --------------------------------------------------------------------- //
+    // Computed data
+
+    // NBT tag names.
+    private static final String TAG_LINK = "link";
+    private static final String TAG_SIDE = "side";
+    private static final String TAG_RECEIVE_QUEUE = "receiveQueue";
+    private static final String TAG_CONNECTED = "connected";
+
+    // Data packet types.
+    private static final byte DATA_TYPE_CONNECTED = 0;
+
+    /**
+     * The side of the link claimed by this module, if any.
+     */
+    @Nullable
+    private BridgeChannels.Endpoint endpoint;
+
+    /**
+     * The release count of {@link BridgeChannels} when claiming our side last
+     * failed, to only retry once a side was released, or <code>-1</code> to
+     * retry right away, e.g. after the link changed.
+     */
+    private long failedClaimReleaseCount = -1;
+
+    // --------------------------------------------------------------------- //
+
+    public BridgeModule(final Casing casing, final Face face) {
+        super(casing, face);
+    }
+
+    // --------------------------------------------------------------------- //
+    // Module
+
+    @Override
+    public void step() {
+        // Keep trying to claim our side, it may still be held by a copy of this
+        // module that was not disposed yet, or by a duplicate of our item. This
+        // can only succeed after a side was released since our last attempt.
+        if (endpoint == null && link != null) {
+            final long releaseCount = BridgeChannels.getReleaseCount();
+            if (releaseCount != failedClaimReleaseCount) {
+                endpoint = BridgeChannels.claim(link, side);
+                failedClaimReleaseCount = endpoint == null ? releaseCount : -1;
+            }
+        }
+
+        final boolean connected = endpoint != null && endpoint.isConnected();
+        if (connected != isConnected) {
+            isConnected = connected;
+            sendConnected();
+        }
+
+        stepOutput();
+        if (connected) {
+            stepInput();
+        }
+    }
+
+    @Override
+    public boolean canStepInPartition() {
+        // Values sent to the other side can neither be ordered with nor taken
+        // back like effects on the world, and both sides may be installed in
+        // the same multi-block.
+        return false;
+    }
+
+    @Override
+    public void onInstalled(final ItemStack stack) {
+        super.onInstalled(stack);
+
+        link = BridgeModuleItem.loadLinkFromStack(stack);
+        side = BridgeModuleItem.loadSideFromStack(stack);
+        if (link == null) {
+            // Fresh module, start a new link for other modules to pair with.
+            link = UUID.randomUUID();
+            side = 0;
+        }
+        failedClaimReleaseCount = -1;
+    }
+
+    @Override
+    public void onUninstalled(final ItemStack stack) {
+        super.onUninstalled(stack);
+
+        release();
+        if (link != null) {
+            BridgeModuleItem.saveToStack(stack, link, side);
+        }
+    }
+
+    @Override
+    public void onDisabled() {
+        // Drop values in transit on shutdown, and let the other side know.
+        receiveQueue.clear();
+        release();
+
+        if (isConnected) {
+            isConnected = false;
+            sendConnected();
+        }
+    }
+
+    @Override
+    public void onDisposed() {
+        release();
+    }
+
+    @Override
+    public void onBeforeWriteComplete(final Port port) {
+        // Pop the head value (the one that was being written).
+        removeReceived();
+
+        // If one completes, cancel all other writes to ensure a value is only
+        // written once.
+        cancelWrite();
+    }
+
+    @Override
+    public void onWriteComplete(final Port port) {
+        // Re-cancel in case step() was called after onBeforeWriteComplete() to
+        // ensure all our writes are in sync.
+        cancelWrite();
+
+        // Start writing again right away to write as fast as possible.
+        stepOutput();
+    }
+
+    @Override
+    public boolean use(final PlayerEntity player, final Hand hand, final Vector3d hit) {
+        final ItemStack heldItem = player.getItemInHand(hand);
+        if (!Items.is(heldItem, Items.BRIDGE_MODULE)) {
+            return false;
+        }
+
+        if (!getCasing().getCasingLevel().isClientSide() && link != null) {
+            // Pair a single item with the other side of our link.
+            if (heldItem.getCount() == 1) {
+                BridgeModuleItem.saveToStack(heldItem, link, 1 - side);
+            } else {
+                final ItemStack pairedItem = heldItem.split(1);
+                BridgeModuleItem.saveToStack(pairedItem, link, 1 - side);
+                if (!player.inventory.add(pairedItem)) {
+                    player.drop(pairedItem, false);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void onData(final ByteBuf data) {
+        isConnected = data.readBoolean();
+    }
+
+    @OnlyIn(Dist.CLIENT)
+    @Override
+    public void render(final RenderContext context) {
+        if (!getCasing().isEnabled()) {
+            return;
+        }
+
+        context.drawAtlasQuadUnlit(Textures.LOCATION_OVERLAY_MODULE_BRIDGE, Color.withAlpha(Color.WHITE, isConnected ? 1f : 0.5f));
+    }
+
+    @Override
+    public void load(final CompoundNBT tag) {
+        super.load(tag);
+
+        link = tag.hasUUID(TAG_LINK) ? tag.getUUID(TAG_LINK) : null;
+        side = tag.getByte(TAG_SIDE) & 1;
+        failedClaimReleaseCount = -1;
+        isConnected = tag.getBoolean(TAG_CONNECTED);
+
+        receiveQueue.clear();
+        final int[] receiveQueueNbt = tag.getIntArray(TAG_RECEIVE_QUEUE);
+        for (final int value : receiveQueueNbt) {
+            receiveQueue.addLast((short) value);
+        }
+    }
+
+    @Override
+    public void save(final CompoundNBT tag) {
+        super.save(tag);
+
+        if (link != null) {
+            tag.putUUID(TAG_LINK, link);
+        }
+        tag.putByte(TAG_SIDE, (byte) side);
+        tag.putBoolean(TAG_CONNECTED, isConnected);
+
+        // Values still in the buffer of the link are dropped when the module is
+        // disposed, so persist them with the ones we already took over.
+        final short[] buffered = endpoint != null ? endpoint.receive.toArray() : new short[0];
+        final int[] receiveQueueArray = new int[receiveQueue.size() + buffered.length];
+        int i = 0;
+        for (final int value : receiveQueue) {
+            receiveQueueArray[i++] = value;
+        }
+        for (final short value : buffered) {
+            receiveQueueArray[i++] = value;
+        }
+        tag.put(TAG_RECEIVE_QUEUE, new IntArrayNBT(receiveQueueArray));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Update the outputs of the module, pushing the oldest received value.
+     */
+    private void stepOutput() {
+        // Don't try to write if there's nothing to write.
+        if (!hasReceived()) {
+            return;
+        }
+
+        final short value = peekReceived();
+        for (final Port port : Port.VALUES) {
+            final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
+            if (!sendingPipe.isWriting()) {
+                sendingPipe.beginWrite(value);
+            }
+        }
+    }
+
+    /**
+     * Update the inputs of the module, forwarding read values to the other
+     * side while there is room in the buffer towards it.
+     */
+    private void stepInput() {
+        assert endpoint != null;
+        for (final Port port : Port.VALUES) {
+            final Pipe receivingPipe = getCasing().getReceivingPipe(getFace(), port);
+            if (!receivingPipe.isReading()) {
+                receivingPipe.beginRead();
+            }
+            // Leave the value in the pipe while the buffer is full, so the
+            // writer waits until the other side took some values.
+            if (receivingPipe.canTransfer() && !endpoint.send.isFull()) {
+                endpoint.send.offer(receivingPipe.read());
+            }
+        }
+    }
+
+    private boolean hasReceived() {
+        return !receiveQueue.isEmpty() || (endpoint != null && !endpoint.receive.isEmpty());
+    }
+
+    private short peekReceived() {
+        if (!receiveQueue.isEmpty()) {
+            //noinspection ConstantConditions We're never pushing null values.
+            return receiveQueue.peekFirst();
+        }
+        assert endpoint != null;
+        return endpoint.receive.peek();
+    }
+
+    private void removeReceived() {
+        if (!receiveQueue.isEmpty()) {
+            receiveQueue.removeFirst();
+        } else if (endpoint != null && !endpoint.receive.isEmpty()) {
+            endpoint.receive.remove();
+        }
+    }
+
+    /**
+     * Give up our side of the link, so that it may be claimed again. Values
+     * sent to us that we have not taken yet are dropped.
+     */
+    private void release() {
+        if (endpoint != null) {
+            BridgeChannels.release(endpoint);
+            endpoint = null;
+        }
+    }
+
+    private void sendConnected() {
+        final ByteBuf data = Unpooled.buffer();
+        data.writeBoolean(isConnected);
+        getCasing().sendData(getFace(), data, DATA_TYPE_CONNECTED);
+    }
+}
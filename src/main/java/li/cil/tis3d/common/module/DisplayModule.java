@@ -12,6 +12,7 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.ModRenderType;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.client.Minecraft;
@@ -29,7 +30,7 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.LinkedList;
 
-public final class DisplayModule extends AbstractModuleWithRotation {
+public final class DisplayModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -7,6 +7,7 @@ import li.cil.manual.api.render.FontRenderer;
 import li.cil.tis3d.api.API;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.traits.ModuleWithBlockChangeListener;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
@@ -15,7 +16,15 @@ import li.cil.tis3d.client.renderer.Textures;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.item.CodeBookItem;
 import li.cil.tis3d.common.item.Items;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.common.machine.DetachedCasing;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.PipeListener;
+import li.cil.tis3d.common.machine.SuspendableModule;
+import li.cil.tis3d.common.machine.WorldEffects;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.MachineImpl;
+import li.cil.tis3d.common.module.execution.MachineProfile;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
@@ -26,6 +35,7 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.nbt.ListNBT;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.Hand;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
@@ -39,26 +49,67 @@ import net.minecraftforge.common.util.Constants.NBT;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * The programmable execution module.
  */
-public final class ExecutionModule extends AbstractModuleWithRotation implements ModuleWithBlockChangeListener {
+public final class ExecutionModule extends AbstractModuleWithRotation implements ModuleWithBlockChangeListener, ConcurrentModule, SuspendableModule, PipeListener {
     // --------------------------------------------------------------------- //
     // Persisted data
 
     private final MachineImpl machine;
-    private ParseException compileError;
     private State state = State.IDLE;
 
     // --------------------------------------------------------------------- //
     // Computed data
 
+    /**
+     * Whether the module is suspended because its last step did nothing, see
+     * {@link #suspend()}.
+     */
+    private boolean suspended;
+
+    /**
+     * Whether the face of the module is visible, read on the server thread
+     * when the module is enabled or its neighbor changes, so it may be
+     * checked while stepping.
+     */
+    private boolean isFaceVisible;
+
+    /**
+     * The game time at which profiling data is sent to clients next, while profiling.
+     */
+    private long nextProfileSync;
+
+    /**
+     * Client side heat-map of the profiled program, per line of code. The relative
+     * number of cycles spent on each line and the share of it spent stalled, both
+     * in [0, 255], or <code>null</code> if not profiling.
+     */
+    @Nullable
+    private byte[] profileHeat, profileStalls;
+
+    /**
+     * The program being compiled in the background, if any, see {@link #compile(Iterable, PlayerEntity)}.
+     */
+    @Nullable
+    private CompletableFuture<CompiledProgram> pendingProgram;
+
+    /**
+     * The player that installed the program being compiled, notified of compile errors.
+     */
+    @Nullable
+    private UUID programmer;
+
     private enum State {
         IDLE,
         ERR,
         RUN,
-        WAIT
+        WAIT,
+        COMPILING
     }
 
     @OnlyIn(Dist.CLIENT)
@@ -67,17 +118,26 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
             Textures.LOCATION_OVERLAY_MODULE_EXECUTION_IDLE,
             Textures.LOCATION_OVERLAY_MODULE_EXECUTION_ERROR,
             Textures.LOCATION_OVERLAY_MODULE_EXECUTION_RUNNING,
-            Textures.LOCATION_OVERLAY_MODULE_EXECUTION_WAITING
+            Textures.LOCATION_OVERLAY_MODULE_EXECUTION_WAITING,
+            Textures.LOCATION_OVERLAY_MODULE_EXECUTION_IDLE
         };
     }
 
     // NBT tag names.
     private static final String TAG_STATE = "state";
     private static final String TAG_MACHINE = "machine";
+    private static final String TAG_PROFILE_HEAT = "profileHeat";
+    private static final String TAG_PROFILE_STALLS = "profileStalls";
 
     // Data packet types.
     private static final byte DATA_TYPE_FULL = 0;
     private static final byte DATA_TYPE_INCREMENTAL = 1;
+    private static final byte DATA_TYPE_PROFILE = 2;
+
+    /**
+     * Interval in ticks at which profiling data is sent to clients.
+     */
+    private static final int PROFILE_SYNC_INTERVAL = 20;
 
     // --------------------------------------------------------------------- //
 
@@ -90,6 +150,34 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         return machine.getState();
     }
 
+    /**
+     * Enable or disable profiling of the module's machine. While profiling,
+     * a heat-map of the program is shown to players close to the module.
+     * <p>
+     * Profiled modules are never suspended, so that stalled cycles are counted.
+     *
+     * @param value <code>true</code> to enable profiling; <code>false</code> to disable it.
+     * @see MachineImpl#setProfiling(boolean)
+     */
+    public void setProfiling(final boolean value) {
+        resume();
+        machine.setProfiling(value);
+        nextProfileSync = 0;
+        if (!value) {
+            sendProfile(null);
+        }
+    }
+
+    /**
+     * The counters collected while profiling.
+     *
+     * @return the profile, or <code>null</code> if not profiling.
+     */
+    @Nullable
+    public MachineProfile getProfile() {
+        return machine.getProfile();
+    }
+
     // --------------------------------------------------------------------- //
     // Module
 
@@ -97,17 +185,44 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
     public void step() {
         final State prevState = state;
 
-        if (compileError != null) {
+        if (!applyPendingProgram()) {
+            // Keep stepping until the program has been compiled.
+            if (prevState != State.COMPILING) {
+                state = State.COMPILING;
+                sendPartialState();
+            }
+            return;
+        }
+
+        final CompiledProgram program = getState().getProgram();
+        if (program.getError().isPresent()) {
             state = State.ERR;
-        } else if (getState().instructions.isEmpty()) {
+            suspend();
+        } else if (program.isEmpty()) {
             state = State.IDLE;
-        } else if (machine.step()) {
-            state = State.RUN;
-            getCasing().setChanged();
-            sendPartialState();
-            return; // Don't send data twice.
+            suspend();
         } else {
+            final MachineProfile profile = machine.getProfile();
+            if (profile != null) {
+                syncProfile(profile);
+            }
+
+            final int pc = getState().pc;
+            if (machine.step()) {
+                state = State.RUN;
+                getCasing().setChanged();
+                sendPartialState();
+                return; // Don't send data twice.
+            }
+
             state = State.WAIT;
+
+            // Nothing happened, so nothing will happen in following steps either,
+            // until something changes. Avoid stepping until then. The program
+            // counter may still have been wrapped around, e.g. after loading.
+            if (getState().pc == pc) {
+                suspend();
+            }
         }
 
         if (prevState != state) {
@@ -118,11 +233,15 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void onEnabled() {
+        resume();
+        isFaceVisible = isFaceVisibleInWorld();
         sendFullState();
     }
 
     @Override
     public void onDisabled() {
+        applyPendingProgram();
+        resume();
         getState().reset();
         state = State.IDLE;
 
@@ -131,14 +250,16 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void onBeforeWriteComplete(final Port port) {
-        if (compileError == null) {
+        resume();
+        if (!getState().getProgram().getError().isPresent()) {
             machine.onBeforeWriteComplete(port);
         }
     }
 
     @Override
     public void onWriteComplete(final Port port) {
-        if (compileError == null) {
+        resume();
+        if (!getState().getProgram().getError().isPresent()) {
             machine.onWriteCompleted(port);
         }
     }
@@ -168,8 +289,9 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         // Code book? Store current program on it if sneaking.
         if (Items.is(heldItem, Items.BOOK_CODE) && player.isShiftKeyDown()) {
             final CodeBookItem.Data data = CodeBookItem.Data.loadFromStack(heldItem);
-            if (getState().code != null && getState().code.length > 0) {
-                data.addOrSelectProgram(Arrays.asList(getState().code));
+            final CompiledProgram program = getState().getProgram();
+            if (program.code.length > 0) {
+                data.addOrSelectProgram(Arrays.asList(program.code));
                 CodeBookItem.Data.saveToStack(heldItem, data);
             }
 
@@ -201,11 +323,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         // Compile the code into our machine state.
         final World world = getCasing().getCasingLevel();
         if (!world.isClientSide()) {
-            compile(code);
-            if (compileError != null) {
-                player.displayClientMessage(Strings.getCompileError(compileError), false);
-            }
-            sendFullState();
+            compile(code, player);
         }
 
         return true;
@@ -213,7 +331,18 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void onData(final CompoundNBT nbt) {
-        this.load(nbt);
+        if (nbt.contains(TAG_PROFILE_HEAT)) {
+            final byte[] heat = nbt.getByteArray(TAG_PROFILE_HEAT);
+            final byte[] stalls = nbt.getByteArray(TAG_PROFILE_STALLS);
+            if (heat.length > 0 && heat.length == stalls.length) {
+                profileHeat = heat;
+                profileStalls = stalls;
+            } else {
+                profileHeat = profileStalls = null;
+            }
+        } else {
+            this.load(nbt);
+        }
     }
 
     @Override
@@ -246,7 +375,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
         // Render detailed state when player is close.
         final MachineState machineState = getState();
-        if (machineState.code != null && context.closeEnoughForDetails(getCasing().getPosition())) {
+        if (machineState.getProgram().code.length > 0 && context.closeEnoughForDetails(getCasing().getPosition())) {
             renderState(context, machineState);
         }
 
@@ -256,13 +385,20 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
     @Override
     public void load(final CompoundNBT tag) {
         super.load(tag);
+        resume();
 
         final CompoundNBT machineNbt = tag.getCompound(TAG_MACHINE);
         getState().readFromNBT(machineNbt);
         state = EnumUtils.readFromNBT(State.class, TAG_STATE, tag);
+    }
 
-        if (getState().code != null) {
-            compile(Arrays.asList(getState().code));
+    @Override
+    public void onDisposed() {
+        super.onDisposed();
+        if (pendingProgram != null) {
+            pendingProgram.cancel(false);
+            pendingProgram = null;
+            programmer = null;
         }
     }
 
@@ -276,12 +412,43 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         EnumUtils.writeToNBT(state, TAG_STATE, tag);
     }
 
+    // --------------------------------------------------------------------- //
+    // ModuleWithRotation
+
+    @Override
+    public void setFacing(final Port facing) {
+        super.setFacing(facing);
+        resume();
+    }
+
+    // --------------------------------------------------------------------- //
+    // SuspendableModule
+
+    @Override
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    @Override
+    public void resume() {
+        suspended = false;
+    }
+
+    // --------------------------------------------------------------------- //
+    // PipeListener
+
+    @Override
+    public void onPipeStateChanged() {
+        resume();
+    }
+
     // --------------------------------------------------------------------- //
     // BlockChangeAware
 
     @Override
     public void onNeighborBlockChange(final BlockPos neighborPos, final boolean isModuleNeighbor) {
-        if (isModuleNeighbor && isVisible()) {
+        if (isModuleNeighbor) {
+            isFaceVisible = isFaceVisibleInWorld();
             sendPartialState();
         }
     }
@@ -293,16 +460,118 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
      * specified player (for notifications on errors). The code will be
      * compiled into the module's machine state. On errors, the state will
      * be left in a reset state.
+     * <p>
+     * The code is compiled in the background, and the program installed at
+     * the next step of the module, or on the server thread right away if the
+     * casing is not running. Until then, the module is in the compiling state.
+     *
+     * @param code   the code to compile.
+     * @param player the player that issued the compilation.
+     */
+    private void compile(final Iterable<String> code, final PlayerEntity player) {
+        resume();
+        if (pendingProgram != null) {
+            pendingProgram.cancel(false);
+        }
+
+        final CompletableFuture<CompiledProgram> program = Compiler.compileAsync(code);
+        pendingProgram = program;
+        programmer = player.getUUID();
+
+        // Keep the code in the persisted state until the program is installed.
+        getState().clear();
+        getState().setCode(String.join("\n", code));
+        state = State.COMPILING;
+        getCasing().setChanged();
+
+        if (program.isDone()) {
+            applyPendingProgram();
+            return;
+        }
+
+        sendPartialState();
+
+        final MinecraftServer server = getCasing().getCasingLevel().getServer();
+        if (server != null) {
+            program.whenComplete((result, throwable) -> server.execute(() -> {
+                // Running casings install the program in their next step.
+                if (!getCasing().isEnabled()) {
+                    applyPendingProgram();
+                }
+            }));
+        }
+    }
+
+    /**
+     * Install the program being compiled in the background, if it has been compiled.
      *
-     * @param code the code to compile.
+     * @return <code>true</code> if no program is being compiled anymore.
      */
-    private void compile(final Iterable<String> code) {
-        compileError = null;
+    private boolean applyPendingProgram() {
+        final CompletableFuture<CompiledProgram> program = pendingProgram;
+        if (program == null) {
+            return true;
+        }
+        if (!program.isDone()) {
+            return false;
+        }
+
+        pendingProgram = null;
+
+        CompiledProgram result;
         try {
-            getState().clear();
-            Compiler.compile(code, getState());
-        } catch (final ParseException e) {
-            compileError = e;
+            result = program.join();
+        } catch (final CancellationException | CompletionException e) {
+            result = CompiledProgram.EMPTY;
+        }
+
+        resume();
+        getState().clear();
+        getState().setProgram(result);
+        state = State.IDLE;
+        getCasing().setChanged();
+
+        final UUID playerId = programmer;
+        programmer = null;
+        if (playerId != null) {
+            // Look up the player in the effect, we may be stepping off the server thread.
+            result.getError().ifPresent(error -> WorldEffects.run(() -> {
+                final PlayerEntity player = getCasing().getCasingLevel().getPlayerByUUID(playerId);
+                if (player != null) {
+                    player.displayClientMessage(Strings.getCompileError(error), false);
+                }
+            }));
+        }
+
+        sendFullState();
+        return true;
+    }
+
+    /**
+     * Suspend the module until one of the pipes on its face changes, or it is
+     * otherwise resumed.
+     * <p>
+     * Only valid if the last step did not advance the program, because the
+     * instruction at the current program counter is blocked on a pipe or does
+     * not change the state of the machine. Stepping it again will not do
+     * anything as long as neither the machine nor its pipes change.
+     */
+    private void suspend() {
+        if (machine.getProfile() != null) {
+            return; // Keep stepping to count stalled cycles.
+        }
+
+        suspended = true;
+        for (final Port port : Port.VALUES) {
+            addPipeListener(getCasing().getReceivingPipe(getFace(), port));
+            addPipeListener(getCasing().getSendingPipe(getFace(), port));
+        }
+    }
+
+    private void addPipeListener(final Pipe pipe) {
+        // Anything else, e.g. locked pipes, never changes by itself.
+        if (pipe instanceof PipeImpl) {
+            ((PipeImpl) pipe).addListener(this);
         }
     }
 
@@ -315,11 +584,21 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         getCasing().sendData(getFace(), nbt, DATA_TYPE_FULL);
     }
 
+    /**
+     * Whether the face of the module is visible in the world, never the case
+     * in casings that do not exist in a world.
+     *
+     * @return <code>true</code> if the face of the module is visible; <code>false</code> otherwise.
+     */
+    private boolean isFaceVisibleInWorld() {
+        return !(getCasing() instanceof DetachedCasing) && isVisible();
+    }
+
     /**
      * Send the current execution state to the client.
      */
     private void sendPartialState() {
-        if (!isVisible()) {
+        if (!isFaceVisible) {
             return;
         }
 
@@ -335,6 +614,62 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         getCasing().sendData(getFace(), data, DATA_TYPE_INCREMENTAL);
     }
 
+    /**
+     * Send the heat-map of the profiled program to the client, if it is due.
+     *
+     * @param profile the profile to send the heat-map of.
+     */
+    private void syncProfile(final MachineProfile profile) {
+        if (!isFaceVisible) {
+            return;
+        }
+
+        final long gameTime = getCasing().getCasingLevel().getGameTime();
+        if (gameTime < nextProfileSync) {
+            return;
+        }
+        nextProfileSync = gameTime + PROFILE_SYNC_INTERVAL;
+
+        sendProfile(profile);
+    }
+
+    /**
+     * Send the heat-map of the specified profile to the client, or clear it.
+     *
+     * @param profile the profile to send the heat-map of, <code>null</code> to clear the heat-map.
+     */
+    private void sendProfile(@Nullable final MachineProfile profile) {
+        final CompoundNBT nbt = new CompoundNBT();
+        if (profile != null && profile.getCycles() > 0) {
+            // Aggregate per line, the overlay shows source code.
+            final CompiledProgram program = profile.getProgram();
+            final long[] cycles = new long[program.code.length];
+            final long[] stalls = new long[program.code.length];
+            for (int address = 0; address < program.lineNumbers.length; address++) {
+                final int line = program.lineNumbers[address];
+                if (line >= 0 && line < cycles.length) {
+                    stalls[line] += profile.getStalls(address);
+                    cycles[line] += profile.getExecutions(address) + profile.getStalls(address);
+                }
+            }
+
+            final long maxCycles = Math.max(1, Arrays.stream(cycles).max().orElse(0));
+            final byte[] heat = new byte[cycles.length];
+            final byte[] stallShare = new byte[cycles.length];
+            for (int line = 0; line < cycles.length; line++) {
+                heat[line] = (byte) (cycles[line] * 0xFF / maxCycles);
+                stallShare[line] = (byte) (cycles[line] > 0 ? stalls[line] * 0xFF / cycles[line] : 0);
+            }
+            nbt.putByteArray(TAG_PROFILE_HEAT, heat);
+            nbt.putByteArray(TAG_PROFILE_STALLS, stallShare);
+        } else {
+            nbt.putByteArray(TAG_PROFILE_HEAT, new byte[0]);
+            nbt.putByteArray(TAG_PROFILE_STALLS, new byte[0]);
+        }
+
+        getCasing().sendData(getFace(), nbt, DATA_TYPE_PROFILE);
+    }
+
     @OnlyIn(Dist.CLIENT)
     private void renderState(final RenderContext context, final MachineState machineState) {
         final MatrixStack matrixStack = context.getMatrixStack();
@@ -363,10 +698,12 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         // If we have more lines than fit on our "screen", offset so that the
         // current line is in the middle, but don't let last line scroll in.
         final int maxLines = 50 / (fontRenderer.lineHeight() + 1);
-        final int totalLines = machineState.code.length;
+        final CompiledProgram program = machineState.getProgram();
+        final ParseException compileError = program.getError().orElse(null);
+        final int totalLines = program.code.length;
         final int currentLine;
-        if (!machineState.lineNumbers.isEmpty()) {
-            currentLine = Optional.ofNullable(machineState.lineNumbers.get(machineState.pc)).orElse(-1);
+        if (program.lineNumbers.length > 0) {
+            currentLine = machineState.pc >= 0 && machineState.pc < program.lineNumbers.length ? program.lineNumbers[machineState.pc] : -1;
         } else if (compileError != null) {
             currentLine = compileError.getLineNumber();
         } else {
@@ -376,7 +713,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         final int offset = page * maxLines;
 
         for (int lineNumber = offset; lineNumber < Math.min(totalLines, offset + maxLines); lineNumber++) {
-            final String line = machineState.code[lineNumber];
+            final String line = program.code[lineNumber];
             final CharSequence charSequence = line.subSequence(0, Math.min(line.length(), 18));
             if (lineNumber == currentLine) {
                 // Draw current line marker behind text
@@ -390,6 +727,15 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
                 context.drawString(fontRenderer, charSequence, Color.BLACK);
             } else {
+                // Draw heat-map behind text while profiling, from executing to stalled.
+                if (profileHeat != null && profileStalls != null && lineNumber < profileHeat.length) {
+                    final int heat = profileHeat[lineNumber] & 0xFF;
+                    if (heat > 0) {
+                        final float stallShare = (profileStalls[lineNumber] & 0xFF) / 255f;
+                        drawLine(context, fontRenderer.lineHeight(), Color.withAlpha(lerp(Color.LIME, Color.RED, stallShare), 0.1f + 0.5f * heat / 255f));
+                    }
+                }
+
                 context.drawString(fontRenderer, charSequence, Color.WHITE);
             }
 
@@ -409,6 +755,22 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         context.drawQuadUnlit(-0.5f, -0.5f, 72, height + 1, color);
     }
 
+    /**
+     * Linearly interpolates the RGB components of two colors.
+     *
+     * @param from  the color to interpolate from.
+     * @param to    the color to interpolate to.
+     * @param delta the interpolation factor, in [0, 1].
+     * @return the interpolated color.
+     */
+    @OnlyIn(Dist.CLIENT)
+    private static int lerp(final int from, final int to, final float delta) {
+        final int r = (int) (Color.getRedU8(from) + (Color.getRedU8(to) - Color.getRedU8(from)) * delta);
+        final int g = (int) (Color.getGreenU8(from) + (Color.getGreenU8(to) - Color.getGreenU8(from)) * delta);
+        final int b = (int) (Color.getBlueU8(from) + (Color.getBlueU8(to) - Color.getBlueU8(from)) * delta);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
     // --------------------------------------------------------------------- //
 
     private interface SourceCodeProvider {
@@ -5,6 +5,7 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.module.traits.ModuleWithBakedModel;
 import li.cil.tis3d.api.module.traits.ModuleWithBlockChangeListener;
 import li.cil.tis3d.api.prefab.module.AbstractModule;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.BlockStateUtils;
 import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
@@ -35,7 +36,7 @@ import java.util.List;
 import java.util.OptionalInt;
 import java.util.Random;
 
-public final class FacadeModule extends AbstractModule implements ModuleWithBlockChangeListener, ModuleWithBakedModel {
+public final class FacadeModule extends AbstractModule implements ConcurrentModule, ModuleWithBlockChangeListener, ModuleWithBakedModel {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -12,6 +12,8 @@ import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
 import li.cil.tis3d.common.CommonConfig;
 import li.cil.tis3d.common.capabilities.Capabilities;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.common.machine.WorldEffects;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.nbt.IntArrayNBT;
 import net.minecraft.util.Direction;
@@ -30,7 +32,7 @@ import javax.annotation.Nullable;
 import java.util.Deque;
 import java.util.LinkedList;
 
-public final class InfraredModule extends AbstractModule implements ICapabilityProvider, InfraredReceiver {
+public final class InfraredModule extends AbstractModule implements ConcurrentModule, ICapabilityProvider, InfraredReceiver {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -193,7 +195,8 @@ public final class InfraredModule extends AbstractModule implements ICapabilityP
                 // Don't actually read more values if we already sent a packet this tick.
                 final World world = getCasing().getCasingLevel();
                 if (world.getGameTime() > lastStep) {
-                    emitInfraredPacket(receivingPipe.read());
+                    final short value = receivingPipe.read();
+                    WorldEffects.run(() -> emitInfraredPacket(value));
                 }
             }
         }
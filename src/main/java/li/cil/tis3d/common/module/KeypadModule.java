@@ -8,6 +8,7 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.CompoundNBT;
@@ -22,7 +23,7 @@ import net.minecraftforge.api.distmarker.OnlyIn;
 import java.util.Optional;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-public final class KeypadModule extends AbstractModuleWithRotation {
+public final class KeypadModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -11,6 +11,7 @@ import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.common.item.ReadOnlyMemoryModuleItem;
 import li.cil.tis3d.common.item.Items;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.entity.player.PlayerEntity;
@@ -31,7 +32,7 @@ import java.util.Arrays;
  * <li>ACCESS: await either read to retrieve value or write to set value, all ports writing, all ports reading.</li>
  * </ul>
  */
-public class RandomAccessMemoryModule extends AbstractModuleWithRotation {
+public class RandomAccessMemoryModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
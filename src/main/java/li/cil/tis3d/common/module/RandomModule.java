@@ -7,13 +7,26 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModule;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import net.minecraft.world.World;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 
 import java.util.Random;
 
-public final class RandomModule extends AbstractModule {
+public final class RandomModule extends AbstractModule implements ConcurrentModule {
+    // --------------------------------------------------------------------- //
+    // Computed data
+
+    /**
+     * The random number generator of this module, so that stepping it does not
+     * touch the world's, which may happen concurrently with other modules.
+     * Seeded from the world's when the casing is enabled.
+     */
+    private final Random random = new Random();
+
+    // --------------------------------------------------------------------- //
+
     public RandomModule(final Casing casing, final Face face) {
         super(casing, face);
     }
@@ -28,6 +41,14 @@ public final class RandomModule extends AbstractModule {
         }
     }
 
+    @Override
+    public void onEnabled() {
+        final World world = getCasing().getCasingLevel();
+        if (world != null) {
+            random.setSeed(world.random.nextLong());
+        }
+    }
+
     @Override
     public void onWriteComplete(final Port port) {
         // No need to clear other writing pipes because we're outputting random
@@ -57,8 +78,6 @@ public final class RandomModule extends AbstractModule {
     private void stepOutput(final Port port) {
         final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
         if (!sendingPipe.isWriting()) {
-            final World world = getCasing().getCasingLevel();
-            final Random random = world.random;
             final short value = (short) random.nextInt(0xFFFF + 1);
             sendingPipe.beginWrite(value);
         }
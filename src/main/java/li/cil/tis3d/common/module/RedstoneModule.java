@@ -11,14 +11,16 @@ import li.cil.tis3d.api.module.traits.ModuleWithRedstone;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.common.machine.WorldEffects;
 import li.cil.tis3d.util.Color;
-import net.minecraft.block.Block;
 import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 
-public final class RedstoneModule extends AbstractModuleWithRotation implements ModuleWithRedstone {
+public final class RedstoneModule extends AbstractModuleWithRotation implements ConcurrentModule, ModuleWithRedstone {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -247,10 +249,10 @@ public final class RedstoneModule extends AbstractModuleWithRotation implements
      */
     private void notifyNeighbors() {
         final World world = getCasing().getCasingLevel();
+        final BlockPos position = getCasing().getPosition();
 
         scheduledNeighborUpdate = false;
-        final Block blockType = world.getBlockState(getCasing().getPosition()).getBlock();
-        world.updateNeighborsAt(getCasing().getPosition(), blockType);
+        WorldEffects.run(() -> world.updateNeighborsAt(position, world.getBlockState(position).getBlock()));
     }
 
     /**
@@ -10,6 +10,7 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.CompoundNBT;
@@ -19,7 +20,7 @@ import net.minecraft.world.World;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 
-public final class SequencerModule extends AbstractModuleWithRotation {
+public final class SequencerModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -12,6 +12,7 @@ import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
 import li.cil.manual.api.render.FontRenderer;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.util.math.MathHelper;
@@ -25,7 +26,7 @@ import net.minecraftforge.api.distmarker.OnlyIn;
  * <p>
  * While it is not full, it will receive data on all ports and push them back.
  */
-public final class StackModule extends AbstractModuleWithRotation {
+public final class StackModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
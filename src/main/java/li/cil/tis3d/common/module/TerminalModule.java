@@ -13,6 +13,8 @@ import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.gui.TerminalModuleScreen;
 import li.cil.tis3d.client.renderer.Textures;
 import li.cil.manual.api.render.FontRenderer;
+import li.cil.tis3d.common.machine.ConcurrentModule;
+import li.cil.tis3d.common.machine.WorldEffects;
 import li.cil.tis3d.util.Color;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screen.Screen;
@@ -37,7 +39,7 @@ import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 
-public final class TerminalModule extends AbstractModuleWithRotation {
+public final class TerminalModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // Persisted data
 
     /**
@@ -473,7 +475,7 @@ public final class TerminalModule extends AbstractModuleWithRotation {
     private void bell() {
         final World world = getCasing().getCasingLevel();
         if (!world.isClientSide()) {
-            world.playSound(null, getCasing().getPosition(), SoundEvents.NOTE_BLOCK_PLING, SoundCategory.BLOCKS, 0.3f, 2f);
+            WorldEffects.run(() -> world.playSound(null, getCasing().getPosition(), SoundEvents.NOTE_BLOCK_PLING, SoundCategory.BLOCKS, 0.3f, 2f));
         }
     }
 
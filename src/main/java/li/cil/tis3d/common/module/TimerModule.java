@@ -12,6 +12,7 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
 import li.cil.tis3d.api.util.RenderContext;
 import li.cil.tis3d.client.renderer.Textures;
+import li.cil.tis3d.common.machine.ConcurrentModule;
 import li.cil.tis3d.util.Color;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraftforge.api.distmarker.Dist;
@@ -26,7 +27,7 @@ import net.minecraftforge.api.distmarker.OnlyIn;
  * This module will receive data on all ports and push back a value while the
  * timer is zero.
  */
-public final class TimerModule extends AbstractModuleWithRotation {
+public final class TimerModule extends AbstractModuleWithRotation implements ConcurrentModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
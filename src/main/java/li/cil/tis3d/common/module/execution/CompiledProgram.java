@@ -0,0 +1,150 @@
+package li.cil.tis3d.common.module.execution;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import li.cil.tis3d.common.CommonConfig;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * The result of compiling a piece of TIS-100 assembly code.
+ * <p>
+ * Programs are immutable and interned by the {@link li.cil.tis3d.common.module.execution.compiler.Compiler}
+ * using their normalized source code, so any number of execution modules running
+ * the same code share a single instance. Only the registers live in the
+ * {@link MachineState} of each module.
+ * <p>
+ * Note that the arrays exposed by this class <em>must not</em> be modified.
+ */
+public final class CompiledProgram {
+    /**
+     * The empty program, used by machines that have not been programmed yet.
+     */
+    public static final CompiledProgram EMPTY = new CompiledProgram(new String[0], ImmutableList.of(), ImmutableMap.of(), new int[0], new int[0], null);
+
+    /**
+     * Lines of original code this program was compiled from, normalized to upper case.
+     */
+    public final String[] code;
+
+    /**
+     * List of instructions (the program), in the form generated by the compiler.
+     */
+    public final List<Instruction> instructions;
+
+    /**
+     * List of labels and associated addresses.
+     * <p>
+     * Only used for validation and diagnostics, jumps are linked to their
+     * absolute target address when compiling.
+     */
+    public final Map<String, Integer> labels;
+
+    /**
+     * The program encoded as packed bytecode, see {@link Opcodes}.
+     * <p>
+     * This is what is actually run by the machine; it is generated from the
+     * {@link #instructions} after successful compilation.
+     */
+    public final int[] bytecode;
+
+    /**
+     * Instruction address to line number mapping.
+     */
+    public final int[] lineNumbers;
+
+    /**
+     * The error compilation failed with, if it failed.
+     */
+    @Nullable
+    private final ParseException error;
+
+    // --------------------------------------------------------------------- //
+
+    private CompiledProgram(final String[] code, final List<Instruction> instructions, final Map<String, Integer> labels, final int[] bytecode, final int[] lineNumbers, @Nullable final ParseException error) {
+        this.code = code;
+        this.instructions = instructions;
+        this.labels = labels;
+        this.bytecode = bytecode;
+        this.lineNumbers = lineNumbers;
+        this.error = error;
+    }
+
+    /**
+     * Create a program representing a failed compilation.
+     * <p>
+     * The program holds no instructions, but keeps the code it was compiled
+     * from, for displaying the error location to the user.
+     *
+     * @param code  the code that failed to compile.
+     * @param error the error compilation failed with.
+     * @return the program representing the failed compilation.
+     */
+    public static CompiledProgram failed(final String[] code, final ParseException error) {
+        return new CompiledProgram(code, ImmutableList.of(), ImmutableMap.of(), EMPTY.bytecode, EMPTY.lineNumbers, error);
+    }
+
+    /**
+     * Whether this program contains no instructions, i.e. there is nothing to run.
+     *
+     * @return <code>true</code> if the program is empty; <code>false</code> otherwise.
+     */
+    public boolean isEmpty() {
+        return bytecode.length == 0;
+    }
+
+    /**
+     * The error compilation failed with, if any.
+     *
+     * @return the compile error.
+     */
+    public Optional<ParseException> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Mutable state of a program while it is being compiled.
+     */
+    public static final class Builder {
+        /**
+         * Lines of code being compiled, normalized to upper case.
+         */
+        public final String[] code;
+
+        /**
+         * List of instructions generated so far.
+         */
+        public final List<Instruction> instructions = new ArrayList<>(CommonConfig.maxLinesPerProgram);
+
+        /**
+         * List of labels found so far and associated addresses.
+         */
+        public final Map<String, Integer> labels = new HashMap<>(CommonConfig.maxLinesPerProgram);
+
+        /**
+         * Instruction address to line number mapping, sized to the number of lines.
+         */
+        public final int[] lineNumbers;
+
+        public Builder(final String[] code) {
+            this.code = code;
+            this.lineNumbers = new int[code.length];
+        }
+
+        /**
+         * Create the immutable program from the current state of the builder.
+         *
+         * @param bytecode the encoded program.
+         * @return the compiled program.
+         */
+        public CompiledProgram build(final int[] bytecode) {
+            return new CompiledProgram(code, ImmutableList.copyOf(instructions), ImmutableMap.copyOf(labels),
+                bytecode, Arrays.copyOf(lineNumbers, instructions.size()), null);
+        }
+    }
+}
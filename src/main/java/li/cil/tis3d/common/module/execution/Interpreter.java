@@ -0,0 +1,337 @@
+package li.cil.tis3d.common.module.execution;
+
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+
+import static li.cil.tis3d.common.module.execution.Opcodes.*;
+
+/**
+ * Dispatch loop for the packed bytecode generated from compiled programs.
+ * <p>
+ * Operates directly on the machine's state and its target interfaces, which
+ * are indexed by {@link li.cil.tis3d.common.module.execution.target.Target}
+ * ordinal and already adjusted for the module's rotation.
+ */
+final class Interpreter {
+    /**
+     * Returned by {@link #getStall} if the current instruction is not stalled.
+     * Reads stall with the ordinal of the target read from, writes with
+     * <code>-2 - ordinal</code> of the target written to.
+     */
+    static final int STALL_NONE = -1;
+
+    /**
+     * Run the instruction at the current program counter for one cycle.
+     * <p>
+     * Instructions advance the program counter themselves once they finish.
+     *
+     * @param state      the state of the machine to run on.
+     * @param interfaces the target interfaces of the machine, by target ordinal.
+     */
+    static void step(final MachineState state, final TargetInterface[] interfaces) {
+        final int[] bytecode = state.getProgram().bytecode;
+        if (state.pc < 0 || state.pc >= bytecode.length) {
+            return;
+        }
+
+        final int instruction = bytecode[state.pc];
+        switch (opcode(instruction)) {
+            case HCF:
+                throw new HaltAndCatchFireException();
+
+            case JMP:
+                state.pc = unsignedImmediate(instruction);
+                break;
+            case JEZ:
+                state.pc = state.acc == 0 ? unsignedImmediate(instruction) : state.pc + 1;
+                break;
+            case JGZ:
+                state.pc = state.acc > 0 ? unsignedImmediate(instruction) : state.pc + 1;
+                break;
+            case JLZ:
+                state.pc = state.acc < 0 ? unsignedImmediate(instruction) : state.pc + 1;
+                break;
+            case JNZ:
+                state.pc = state.acc != 0 ? unsignedImmediate(instruction) : state.pc + 1;
+                break;
+            case JRO: {
+                final TargetInterface source = interfaces[operand(instruction)];
+                if (beginRead(source)) {
+                    state.pc += source.read();
+                }
+                break;
+            }
+            case JRO_IMM:
+                state.pc += immediate(instruction);
+                break;
+
+            case MOV: {
+                final TargetInterface destination = interfaces[unsignedImmediate(instruction)];
+                if (!destination.isWriting()) {
+                    final TargetInterface source = interfaces[operand(instruction)];
+                    if (beginRead(source)) {
+                        if (destination.beginWrite(source.read())) {
+                            state.pc++;
+                        }
+                    }
+                }
+                break;
+            }
+            case MOV_IMM: {
+                final TargetInterface destination = interfaces[operand(instruction)];
+                if (!destination.isWriting()) {
+                    if (destination.beginWrite(immediate(instruction))) {
+                        state.pc++;
+                    }
+                }
+                break;
+            }
+            case SAV:
+                state.bak = state.acc;
+                state.pc++;
+                break;
+            case SWP: {
+                final short tmp = state.acc;
+                state.acc = state.bak;
+                state.bak = tmp;
+                state.pc++;
+                break;
+            }
+
+            case NEG:
+                state.acc = (short) -state.acc;
+                state.pc++;
+                break;
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case AND:
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR: {
+                final TargetInterface source = interfaces[operand(instruction)];
+                if (beginRead(source)) {
+                    apply(state, opcode(instruction), source.read());
+                }
+                break;
+            }
+            case ADD_IMM:
+                apply(state, ADD, immediate(instruction));
+                break;
+            case SUB_IMM:
+                apply(state, SUB, immediate(instruction));
+                break;
+            case MUL_IMM:
+                apply(state, MUL, immediate(instruction));
+                break;
+            case DIV_IMM:
+                apply(state, DIV, immediate(instruction));
+                break;
+
+            case NOT:
+                state.acc = (short) ~state.acc;
+                state.pc++;
+                break;
+            case AND_IMM:
+                apply(state, AND, immediate(instruction));
+                break;
+            case OR_IMM:
+                apply(state, OR, immediate(instruction));
+                break;
+            case XOR_IMM:
+                apply(state, XOR, immediate(instruction));
+                break;
+            case SHL_IMM:
+                apply(state, SHL, immediate(instruction));
+                break;
+            case SHR_IMM:
+                apply(state, SHR, immediate(instruction));
+                break;
+
+            case RLLAST:
+                state.last = state.last.map(p -> p.rotated(-1));
+                state.pc++;
+                break;
+            case RRLAST:
+                state.last = state.last.map(p -> p.rotated(1));
+                state.pc++;
+                break;
+
+            case NOP:
+                state.pc++;
+                break;
+            case MOV_IMM_ACC:
+                state.acc = immediate(instruction);
+                state.pc++;
+                break;
+            case OP_ACC:
+                apply(state, operand(instruction), state.acc);
+                break;
+
+            default:
+                throw new IllegalStateException("Invalid opcode: " + opcode(instruction));
+        }
+    }
+
+    /**
+     * Take action based on pending write operation completion, e.g. to abort other
+     * writes when a value should only be readable once.
+     *
+     * @param state      the state of the machine the operation will finish on.
+     * @param interfaces the target interfaces of the machine, by target ordinal.
+     * @param port       the port the operation will finish on.
+     * @see li.cil.tis3d.api.module.Module#onBeforeWriteComplete(Port)
+     */
+    static void onBeforeWriteComplete(final MachineState state, final TargetInterface[] interfaces, final Port port) {
+        final int[] bytecode = state.getProgram().bytecode;
+        if (state.pc < 0 || state.pc >= bytecode.length) {
+            return;
+        }
+
+        final int instruction = bytecode[state.pc];
+        switch (opcode(instruction)) {
+            case MOV:
+                interfaces[unsignedImmediate(instruction)].onBeforeWriteComplete(port);
+                break;
+            case MOV_IMM:
+                interfaces[operand(instruction)].onBeforeWriteComplete(port);
+                break;
+        }
+    }
+
+    /**
+     * Finish a write operation started by the current instruction, by
+     * advancing the program counter.
+     *
+     * @param state the state of the machine the operation finished on.
+     */
+    static void onWriteCompleted(final MachineState state) {
+        final int[] bytecode = state.getProgram().bytecode;
+        if (state.pc < 0 || state.pc >= bytecode.length) {
+            return;
+        }
+
+        final int instruction = bytecode[state.pc];
+        switch (opcode(instruction)) {
+            case MOV:
+            case MOV_IMM:
+                state.pc++;
+                break;
+        }
+    }
+
+    /**
+     * Determine whether the instruction at the current program counter is
+     * stalled on a read or write, after it ran for a cycle without finishing.
+     * <p>
+     * Only used for profiling, see {@link MachineProfile}.
+     *
+     * @param state      the state of the machine to check.
+     * @param interfaces the target interfaces of the machine, by target ordinal.
+     * @return the stall, or {@link #STALL_NONE} if the instruction is not stalled.
+     */
+    static int getStall(final MachineState state, final TargetInterface[] interfaces) {
+        final int[] bytecode = state.getProgram().bytecode;
+        if (state.pc < 0 || state.pc >= bytecode.length) {
+            return STALL_NONE;
+        }
+
+        final int instruction = bytecode[state.pc];
+        switch (opcode(instruction)) {
+            case MOV: {
+                final int destination = unsignedImmediate(instruction);
+                if (interfaces[destination].isWriting()) {
+                    return -2 - destination;
+                }
+                final int source = operand(instruction);
+                return interfaces[source].canTransfer() ? STALL_NONE : source;
+            }
+            case MOV_IMM: {
+                final int destination = operand(instruction);
+                return interfaces[destination].isWriting() ? -2 - destination : STALL_NONE;
+            }
+            case JRO:
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case AND:
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR: {
+                final int source = operand(instruction);
+                return interfaces[source].canTransfer() ? STALL_NONE : source;
+            }
+            default:
+                return STALL_NONE;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Start a read operation on the specified target if necessary.
+     *
+     * @param source the target to read from.
+     * @return <tt>true</tt> if a value can be read from the target now.
+     */
+    private static boolean beginRead(final TargetInterface source) {
+        if (!source.isReading()) {
+            source.beginRead();
+        }
+        return source.canTransfer();
+    }
+
+    /**
+     * Apply an arithmetic or bitwise operation to the accumulator and advance
+     * the program counter.
+     *
+     * @param state  the state to operate on.
+     * @param opcode the register variant of the operation to apply.
+     * @param value  the operand of the operation.
+     */
+    private static void apply(final MachineState state, final int opcode, final int value) {
+        switch (opcode) {
+            case ADD:
+                state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc + value));
+                break;
+            case SUB:
+                state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc - value));
+                break;
+            case MUL:
+                state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc * value));
+                break;
+            case DIV:
+                if (value == 0) {
+                    throw new HaltAndCatchFireException();
+                }
+                state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc / value));
+                break;
+            case AND:
+                state.acc &= value;
+                break;
+            case OR:
+                state.acc |= value;
+                break;
+            case XOR:
+                state.acc ^= value;
+                break;
+            case SHL:
+                state.acc <<= value;
+                break;
+            case SHR:
+                state.acc >>= value;
+                break;
+        }
+        state.pc++;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Interpreter() {
+    }
+}
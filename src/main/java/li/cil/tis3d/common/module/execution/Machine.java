@@ -8,9 +8,8 @@ import li.cil.tis3d.common.module.execution.target.TargetInterface;
 /**
  * Interface for the virtual machine used by the {@link ExecutionModule}.
  * <p>
- * Provided to {@link li.cil.tis3d.common.module.execution.instruction.Instruction}s on top of the
- * state itself for unified data transfer to all valid targets, including virtual ones such as
- * {@link Target#ANY}.
+ * Provided to {@link TargetInterface}s on top of the state itself for unified data
+ * transfer to all valid targets, including virtual ones such as {@link Target#ANY}.
  */
 public interface Machine {
     /**
@@ -1,14 +1,11 @@
 package li.cil.tis3d.common.module.execution;
 
-import com.google.common.collect.ImmutableMap;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.common.module.ExecutionModule;
-import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.target.*;
 
 import javax.annotation.Nullable;
-import java.util.Map;
 
 /**
  * Track machine state and ease communicating with ports of an execution module.
@@ -22,25 +19,48 @@ public final class MachineImpl implements Machine {
     // Computed data
 
     private final ExecutionModule module;
-    private final Map<Target, TargetInterface> interfaces;
+
+    /**
+     * Interfaces for all targets, indexed by {@link Target} ordinal.
+     */
+    private final TargetInterface[] interfaces;
+
+    /**
+     * Interfaces for all targets, indexed by {@link Target} ordinal, with port
+     * targets adjusted for the module's rotation. Rebuilt when the rotation
+     * changes, see {@link #getRotatedInterfaces()}.
+     */
+    private final TargetInterface[] rotatedInterfaces;
+
+    /**
+     * The module facing {@link #rotatedInterfaces} was last built for.
+     */
+    @Nullable
+    private Port rotatedFacing;
+
+    /**
+     * Counters collected while profiling, <code>null</code> when not profiling.
+     */
+    @Nullable
+    private MachineProfile profile;
 
     // --------------------------------------------------------------------- //
 
     public MachineImpl(final ExecutionModule module, final Face face) {
         this.state = new MachineState();
         this.module = module;
-        this.interfaces = ImmutableMap.<Target, TargetInterface>builder().
-            put(Target.PC, new PcTargetInterface(this)).
-            put(Target.ACC, new AccTargetInterface(this)).
-            put(Target.BAK, new BakTargetInterface(this)).
-            put(Target.NIL, new NilTargetInterface(this)).
-            put(Target.LEFT, new SideTargetInterface(this, module, face, Port.LEFT)).
-            put(Target.RIGHT, new SideTargetInterface(this, module, face, Port.RIGHT)).
-            put(Target.UP, new SideTargetInterface(this, module, face, Port.UP)).
-            put(Target.DOWN, new SideTargetInterface(this, module, face, Port.DOWN)).
-            put(Target.ANY, new AnyTargetInterface(this, module, face)).
-            put(Target.LAST, new LastTargetInterface(this, module, face)).
-            build();
+        this.interfaces = new TargetInterface[Target.values().length];
+        this.interfaces[Target.PC.ordinal()] = new PcTargetInterface(this);
+        this.interfaces[Target.ACC.ordinal()] = new AccTargetInterface(this);
+        this.interfaces[Target.BAK.ordinal()] = new BakTargetInterface(this);
+        this.interfaces[Target.NIL.ordinal()] = new NilTargetInterface(this);
+        this.interfaces[Target.LEFT.ordinal()] = new SideTargetInterface(this, module, face, Port.LEFT);
+        this.interfaces[Target.RIGHT.ordinal()] = new SideTargetInterface(this, module, face, Port.RIGHT);
+        this.interfaces[Target.UP.ordinal()] = new SideTargetInterface(this, module, face, Port.UP);
+        this.interfaces[Target.DOWN.ordinal()] = new SideTargetInterface(this, module, face, Port.DOWN);
+        this.interfaces[Target.ANY.ordinal()] = new AnyTargetInterface(this, module, face);
+        this.interfaces[Target.LAST.ordinal()] = new LastTargetInterface(this, module, face);
+        this.rotatedInterfaces = interfaces.clone();
     }
 
     /**
@@ -50,11 +70,12 @@ public final class MachineImpl implements Machine {
      * @return <tt>true</tt> if the current instruction changed (even if it's the same again).
      */
     public boolean step() {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.step(this);
+        if (profile != null) {
+            return stepProfiled(profile);
         }
 
+        Interpreter.step(state, getRotatedInterfaces());
+
         return state.finishCycle();
     }
 
@@ -65,10 +86,7 @@ public final class MachineImpl implements Machine {
      * @see li.cil.tis3d.api.module.Module#onBeforeWriteComplete(Port)
      */
     public void onBeforeWriteComplete(final Port port) {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.onBeforeWriteComplete(this, port);
-        }
+        Interpreter.onBeforeWriteComplete(state, getRotatedInterfaces(), port);
     }
 
     /**
@@ -80,23 +98,39 @@ public final class MachineImpl implements Machine {
      * @param port the port on which the write operation was completed.
      */
     public void onWriteCompleted(final Port port) {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.onWriteCompleted(this, port);
+        final int pc = state.pc;
+        Interpreter.onWriteCompleted(state);
+        if (profile != null && state.pc != pc) {
+            profile.recordExecution(state.getProgram(), pc);
         }
     }
 
     /**
-     * Utility method for safely retrieving the current instruction.
+     * Enable or disable profiling. Enabling profiling starts with cleared
+     * counters, disabling it discards them.
      *
-     * @return the currently active instruction, or {@code null}.
+     * @param value <code>true</code> to enable profiling; <code>false</code> to disable it.
      */
-    @Nullable
-    private Instruction getInstruction() {
-        if (state.pc >= 0 && state.pc < state.instructions.size()) {
-            return state.instructions.get(state.pc);
+    public void setProfiling(final boolean value) {
+        if (value) {
+            if (profile == null) {
+                profile = new MachineProfile();
+            } else {
+                profile.clear();
+            }
+        } else {
+            profile = null;
         }
-        return null;
+    }
+
+    /**
+     * The counters collected while profiling.
+     *
+     * @return the profile, or <code>null</code> if not profiling.
+     */
+    @Nullable
+    public MachineProfile getProfile() {
+        return profile;
     }
 
     // --------------------------------------------------------------------- //
@@ -109,34 +143,63 @@ public final class MachineImpl implements Machine {
 
     @Override
     public TargetInterface getInterface(final Target target) {
-        final Target rotatedTarget = getRotatedTarget(target);
-        return interfaces.get(rotatedTarget);
+        return getRotatedInterfaces()[target.ordinal()];
     }
 
     // --------------------------------------------------------------------- //
 
     /**
-     * Adjust the specified target based on the execution module's rotation.
+     * Same as {@link #step()}, but records the cycle in the specified profile.
+     * Kept separate so the common case does not pay for profiling.
+     *
+     * @param profile the profile to record the cycle in.
+     * @return <tt>true</tt> if the current instruction changed (even if it's the same again).
+     */
+    private boolean stepProfiled(final MachineProfile profile) {
+        final TargetInterface[] interfaces = getRotatedInterfaces();
+        final int pc = state.pc;
+        Interpreter.step(state, interfaces);
+
+        final CompiledProgram program = state.getProgram();
+        if (state.pc != pc) {
+            profile.recordExecution(program, pc);
+            profile.recordCycle(program, pc, Interpreter.STALL_NONE);
+        } else {
+            final int stall = Interpreter.getStall(state, interfaces);
+            if (stall == Interpreter.STALL_NONE) {
+                // Finished, but jumped to itself.
+                profile.recordExecution(program, pc);
+            }
+            profile.recordCycle(program, pc, stall);
+        }
+
+        return state.finishCycle();
+    }
+
+    /**
+     * Get the target interfaces adjusted for the execution module's rotation.
      * <p>
-     * Will only do something for port targets.
+     * Only port targets are affected by the rotation. The mapping is cached
+     * and only recomputed when the module's facing changed.
      *
-     * @param target the target to transform.
-     * @return the adjusted target.
+     * @return the rotated target interfaces, indexed by {@link Target} ordinal.
      */
-    private Target getRotatedTarget(final Target target) {
-        switch (target) {
-            case LEFT:
-            case RIGHT:
-            case UP:
-            case DOWN:
-                int rotation = Port.ROTATION[module.getFacing().ordinal()];
-                if (module.getFace() == Face.Y_NEG) {
-                    rotation = -rotation;
-                }
-                final Port port = Target.toPort(target);
-                final Port rotatedPort = port.rotated(rotation);
-                return Target.fromPort(rotatedPort);
+    private TargetInterface[] getRotatedInterfaces() {
+        final Port facing = module.getFacing();
+        if (facing != rotatedFacing) {
+            rotatedFacing = facing;
+
+            int rotation = Port.ROTATION[facing.ordinal()];
+            if (module.getFace() == Face.Y_NEG) {
+                rotation = -rotation;
+            }
+
+            for (final Port port : Port.VALUES) {
+                final Target target = Target.fromPort(port);
+                final Target rotatedTarget = Target.fromPort(port.rotated(rotation));
+                rotatedInterfaces[target.ordinal()] = interfaces[rotatedTarget.ordinal()];
+            }
         }
-        return target;
+        return rotatedInterfaces;
     }
 }
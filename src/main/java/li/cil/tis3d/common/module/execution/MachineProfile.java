@@ -0,0 +1,163 @@
+package li.cil.tis3d.common.module.execution;
+
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.Arrays;
+
+/**
+ * Counters collected while profiling a machine, see {@link MachineImpl#setProfiling(boolean)}.
+ * <p>
+ * Counts how often each instruction finished, and how many cycles were spent
+ * stalled on reads from and writes to each target. Only ports, {@link Target#ANY}
+ * and {@link Target#LAST} can stall. Stall cycles are also attributed to the
+ * instruction stalling, so each cycle is counted exactly once per address.
+ * <p>
+ * Counters are tied to a program, and reset when the machine's program changes.
+ */
+public final class MachineProfile {
+    private CompiledProgram program = CompiledProgram.EMPTY;
+
+    /**
+     * Number of times the instruction at each address finished.
+     */
+    private long[] executions = new long[0];
+
+    /**
+     * Number of cycles the instruction at each address spent stalled.
+     */
+    private long[] stalls = new long[0];
+
+    /**
+     * Number of cycles spent stalled reading from / writing to each target,
+     * indexed by {@link Target} ordinal.
+     */
+    private final long[] readStalls = new long[Target.values().length];
+    private final long[] writeStalls = new long[Target.values().length];
+
+    /**
+     * Total number of profiled cycles.
+     */
+    private long cycles;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The program the counters were collected for.
+     *
+     * @return the profiled program.
+     */
+    public CompiledProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * The total number of cycles profiled.
+     *
+     * @return the number of profiled cycles.
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Number of times the instruction at the specified address finished.
+     *
+     * @param address the address of the instruction.
+     * @return the number of times the instruction finished.
+     */
+    public long getExecutions(final int address) {
+        return address >= 0 && address < executions.length ? executions[address] : 0;
+    }
+
+    /**
+     * Number of cycles the instruction at the specified address was stalled.
+     *
+     * @param address the address of the instruction.
+     * @return the number of cycles the instruction was stalled.
+     */
+    public long getStalls(final int address) {
+        return address >= 0 && address < stalls.length ? stalls[address] : 0;
+    }
+
+    /**
+     * Number of cycles spent stalled reading from the specified target.
+     *
+     * @param target the target to get the number of stalled cycles for.
+     * @return the number of cycles stalled reading from the target.
+     */
+    public long getReadStalls(final Target target) {
+        return readStalls[target.ordinal()];
+    }
+
+    /**
+     * Number of cycles spent stalled writing to the specified target.
+     *
+     * @param target the target to get the number of stalled cycles for.
+     * @return the number of cycles stalled writing to the target.
+     */
+    public long getWriteStalls(final Target target) {
+        return writeStalls[target.ordinal()];
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public void clear() {
+        Arrays.fill(executions, 0);
+        Arrays.fill(stalls, 0);
+        Arrays.fill(readStalls, 0);
+        Arrays.fill(writeStalls, 0);
+        cycles = 0;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Record the instruction at the specified address finishing.
+     *
+     * @param program the program currently run by the machine.
+     * @param address the address of the finished instruction.
+     */
+    void recordExecution(final CompiledProgram program, final int address) {
+        if (validate(program, address)) {
+            executions[address]++;
+        }
+    }
+
+    /**
+     * Record a cycle of the instruction at the specified address.
+     *
+     * @param program the program currently run by the machine.
+     * @param address the address of the instruction.
+     * @param stall   the stall the instruction ended the cycle in, as returned by {@link Interpreter#getStall}.
+     */
+    void recordCycle(final CompiledProgram program, final int address, final int stall) {
+        if (!validate(program, address)) {
+            return;
+        }
+
+        cycles++;
+        if (stall == Interpreter.STALL_NONE) {
+            return;
+        }
+
+        stalls[address]++;
+        if (stall < 0) {
+            writeStalls[-2 - stall]++;
+        } else {
+            readStalls[stall]++;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private boolean validate(final CompiledProgram program, final int address) {
+        if (program != this.program) {
+            this.program = program;
+            executions = new long[program.bytecode.length];
+            stalls = new long[program.bytecode.length];
+            clear();
+        }
+        return address >= 0 && address < executions.length;
+    }
+}
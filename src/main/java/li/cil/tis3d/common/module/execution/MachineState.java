@@ -1,15 +1,12 @@
 package li.cil.tis3d.common.module.execution;
 
 import li.cil.tis3d.api.machine.Port;
-import li.cil.tis3d.common.Constants;
-import li.cil.tis3d.common.CommonConfig;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
-import li.cil.tis3d.common.module.execution.compiler.ParseException;
-import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.nbt.CompoundNBT;
 
-import java.util.*;
+import javax.annotation.Nullable;
+import java.util.Optional;
 
 /**
  * Virtual machine state for executing TIS-100 assembly.
@@ -39,9 +36,15 @@ public final class MachineState {
     public Optional<Port> last = Optional.empty();
 
     /**
-     * Lines of original code this state was compiled from.
+     * The program run by the machine, see {@link #getProgram()}.
      */
-    public String[] code;
+    private CompiledProgram program = CompiledProgram.EMPTY;
+
+    /**
+     * Code loaded from NBT that has not been compiled yet, see {@link #getProgram()}.
+     */
+    @Nullable
+    private String pendingCode;
 
     /**
      * State of program counter after last call to {@link #finishCycle()}.
@@ -59,22 +62,48 @@ public final class MachineState {
     private static final String TAG_LAST = "last";
     private static final String TAG_PC_PREV = "pcPrev";
 
+    // --------------------------------------------------------------------- //
+
     /**
-     * List of instructions (the program) stored in the machine.
+     * The program run by the machine.
+     * <p>
+     * Code loaded from NBT is only compiled when the program is first needed,
+     * to avoid compiling on chunk load. Programs are shared between all machines
+     * running the same code, so this must never be modified.
+     *
+     * @return the program run by the machine.
      */
-    public final List<Instruction> instructions = new ArrayList<>(CommonConfig.maxLinesPerProgram);
+    public CompiledProgram getProgram() {
+        if (pendingCode != null) {
+            program = Compiler.compile(pendingCode);
+            pendingCode = null;
+        }
+        return program;
+    }
 
     /**
-     * List of labels and associated addresses.
+     * Set the program to be run by the machine.
+     *
+     * @param program the program to run.
      */
-    public final HashMap<String, Integer> labels = new HashMap<>(CommonConfig.maxLinesPerProgram);
+    public void setProgram(final CompiledProgram program) {
+        this.program = program;
+        this.pendingCode = null;
+    }
 
     /**
-     * Instruction address to line number mapping.
+     * Set the code of the program to be run by the machine, without compiling it.
+     * <p>
+     * Used while the program is being compiled in the background, so that the
+     * code is persisted in the meantime. If the program is needed before it has
+     * been compiled, it is compiled on the calling thread.
+     *
+     * @param code the code of the program to run.
      */
-    public final HashMap<Integer, Integer> lineNumbers = new HashMap<>(CommonConfig.maxLinesPerProgram);
-
-    // --------------------------------------------------------------------- //
+    public void setCode(final String code) {
+        this.program = CompiledProgram.EMPTY;
+        this.pendingCode = code;
+    }
 
     /**
      * Finishes an execution cycle, ensuring values of the state are valid ones and
@@ -91,7 +120,7 @@ public final class MachineState {
 
         // Set to zero even when running out at the end to have programs
         // restart automatically.
-        if (pc < 0 || pc >= instructions.size()) {
+        if (pc < 0 || pc >= getProgram().bytecode.length) {
             pc = 0;
         }
 
@@ -116,24 +145,15 @@ public final class MachineState {
     public void clear() {
         reset();
 
-        instructions.clear();
-        labels.clear();
-        code = null;
-        lineNumbers.clear();
+        setProgram(CompiledProgram.EMPTY);
     }
 
     // --------------------------------------------------------------------- //
 
     public void readFromNBT(final CompoundNBT nbt) {
-        if (nbt.contains(TAG_CODE)) {
-            try {
-                Compiler.compile(Arrays.asList(Constants.PATTERN_LINES.split(nbt.getString(TAG_CODE))), this);
-            } catch (final ParseException ignored) {
-                // Silent because this is also used to send code to the
-                // clients to visualize errors, and code is also saved
-                // in errored state.
-            }
-        }
+        // Compilation is deferred until the program is first used, see getProgram().
+        program = CompiledProgram.EMPTY;
+        pendingCode = nbt.contains(TAG_CODE) ? nbt.getString(TAG_CODE) : null;
 
         pc = nbt.getInt(TAG_PC);
         acc = nbt.getShort(TAG_ACC);
@@ -153,8 +173,10 @@ public final class MachineState {
         last.ifPresent(port -> EnumUtils.writeToNBT(port, TAG_LAST, nbt));
         nbt.putInt(TAG_PC_PREV, pcPrev);
 
-        if (code != null) {
-            nbt.putString(TAG_CODE, String.join("\n", code));
+        if (pendingCode != null) {
+            nbt.putString(TAG_CODE, pendingCode);
+        } else if (program.code.length > 0) {
+            nbt.putString(TAG_CODE, String.join("\n", program.code));
         }
     }
 }
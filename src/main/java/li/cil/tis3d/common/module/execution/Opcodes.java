@@ -0,0 +1,135 @@
+package li.cil.tis3d.common.module.execution;
+
+/**
+ * Opcodes and encoding of the packed bytecode run by the {@link Interpreter}.
+ * <p>
+ * Each instruction is packed into a single <tt>int</tt>, with the opcode in
+ * the highest byte, the operand (usually a {@link li.cil.tis3d.common.module.execution.target.Target}
+ * ordinal) in the next byte and the immediate value (a constant, a second
+ * target or an absolute jump address) in the lower two bytes:
+ * <pre>
+ * [31..24 opcode][23..16 operand][15..0 immediate]
+ * </pre>
+ */
+public final class Opcodes {
+    // Special.
+    public static final int HCF = 0;
+
+    // Jumps.
+    public static final int JMP = 1;
+    public static final int JEZ = 2;
+    public static final int JGZ = 3;
+    public static final int JLZ = 4;
+    public static final int JNZ = 5;
+    public static final int JRO = 6;
+    public static final int JRO_IMM = 7;
+
+    // Data transfer.
+    public static final int MOV = 8;
+    public static final int MOV_IMM = 9;
+    public static final int SAV = 10;
+    public static final int SWP = 11;
+
+    // Arithmetic operations.
+    public static final int NEG = 12;
+    public static final int ADD = 13;
+    public static final int ADD_IMM = 14;
+    public static final int SUB = 15;
+    public static final int SUB_IMM = 16;
+    public static final int MUL = 17;
+    public static final int MUL_IMM = 18;
+    public static final int DIV = 19;
+    public static final int DIV_IMM = 20;
+
+    // Bitwise operations.
+    public static final int NOT = 21;
+    public static final int AND = 22;
+    public static final int AND_IMM = 23;
+    public static final int OR = 24;
+    public static final int OR_IMM = 25;
+    public static final int XOR = 26;
+    public static final int XOR_IMM = 27;
+    public static final int SHL = 28;
+    public static final int SHL_IMM = 29;
+    public static final int SHR = 30;
+    public static final int SHR_IMM = 31;
+
+    // Operations on LAST.
+    public static final int RLLAST = 32;
+    public static final int RRLAST = 33;
+
+    // Specialized forms generated by the optimizer, see
+    // li.cil.tis3d.common.module.execution.compiler.Optimizer.
+    public static final int NOP = 34;
+    public static final int MOV_IMM_ACC = 35;
+    public static final int OP_ACC = 36;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Pack an instruction into its bytecode representation.
+     *
+     * @param opcode    the opcode of the instruction.
+     * @param operand   the operand of the instruction, in [0, 255].
+     * @param immediate the immediate value of the instruction, truncated to 16 bit.
+     * @return the packed instruction.
+     */
+    public static int pack(final int opcode, final int operand, final int immediate) {
+        return (opcode << 24) | ((operand & 0xFF) << 16) | (immediate & 0xFFFF);
+    }
+
+    /**
+     * Pack an instruction without an immediate value.
+     *
+     * @param opcode  the opcode of the instruction.
+     * @param operand the operand of the instruction, in [0, 255].
+     * @return the packed instruction.
+     */
+    public static int pack(final int opcode, final int operand) {
+        return pack(opcode, operand, 0);
+    }
+
+    /**
+     * Pack an instruction without operand or immediate value.
+     *
+     * @param opcode the opcode of the instruction.
+     * @return the packed instruction.
+     */
+    public static int pack(final int opcode) {
+        return pack(opcode, 0, 0);
+    }
+
+    public static int opcode(final int instruction) {
+        return instruction >>> 24;
+    }
+
+    public static int operand(final int instruction) {
+        return (instruction >>> 16) & 0xFF;
+    }
+
+    /**
+     * Get the immediate value of a packed instruction, sign extended.
+     *
+     * @param instruction the packed instruction.
+     * @return the immediate value.
+     */
+    public static short immediate(final int instruction) {
+        return (short) instruction;
+    }
+
+    /**
+     * Get the immediate value of a packed instruction as an unsigned value,
+     * used for addresses and target ordinals.
+     *
+     * @param instruction the packed instruction.
+     * @return the unsigned immediate value.
+     */
+    public static int unsignedImmediate(final int instruction) {
+        return instruction & 0xFFFF;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Opcodes() {
+    }
+}
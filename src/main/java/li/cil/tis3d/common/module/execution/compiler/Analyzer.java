@@ -0,0 +1,405 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.*;
+
+import static li.cil.tis3d.common.module.execution.Opcodes.*;
+
+/**
+ * Static cycle and throughput analysis of compiled programs.
+ * <p>
+ * Splits the bytecode of a program into basic blocks, finds the loops in the
+ * resulting control flow graph, including nested loops, and computes the
+ * minimum number of cycles per iteration and the port operations on the
+ * fastest path through each loop. This allows sizing pipelines without
+ * running them, e.g. determining how many modules are needed to sustain
+ * a given throughput.
+ * <p>
+ * Operates on the optimized bytecode, which takes exactly as many cycles as
+ * the original instructions, see {@link Optimizer}.
+ */
+public final class Analyzer {
+    private static final int PC = Target.PC.ordinal();
+    private static final int FIRST_PORT = Target.LEFT.ordinal();
+    private static final int TARGET_COUNT = Target.values().length;
+
+    /**
+     * Analyze the specified program.
+     *
+     * @param program the program to analyze.
+     * @return the result of the analysis.
+     */
+    public static ProgramAnalysis analyze(final CompiledProgram program) {
+        return new Analyzer(program).run();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private final int[] bytecode;
+    private final int[] lineNumbers;
+
+    /**
+     * Start address of each block, and the block of each address.
+     */
+    private int[] blockStarts = new int[0];
+    private int[] blockOfAddress = new int[0];
+
+    /**
+     * Successors of each block in the control flow graph, minimum cycles
+     * spent in each block and port operations in each block.
+     */
+    private int[][] blockSuccessors = new int[0][];
+    private int[] blockCycles = new int[0];
+    private int[][] blockReads = new int[0][], blockWrites = new int[0][];
+
+    private boolean hasComputedJumps;
+
+    private final List<ProgramAnalysis.Loop> loops = new ArrayList<>();
+
+    // --------------------------------------------------------------------- //
+
+    private Analyzer(final CompiledProgram program) {
+        this.bytecode = program.bytecode;
+        this.lineNumbers = program.lineNumbers;
+    }
+
+    private ProgramAnalysis run() {
+        if (bytecode.length == 0) {
+            return new ProgramAnalysis(new int[0], Collections.emptyList(), false);
+        }
+
+        buildBlocks();
+
+        final BitSet all = new BitSet();
+        all.set(0, blockStarts.length);
+        findLoops(all, 0);
+
+        loops.sort(Comparator.comparingInt((ProgramAnalysis.Loop loop) -> loop.depth).thenComparingInt(loop -> loop.header));
+        return new ProgramAnalysis(blockStarts, Collections.unmodifiableList(loops), hasComputedJumps);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Split the program into basic blocks and build the control flow graph.
+     */
+    private void buildBlocks() {
+        // Blocks start at the entry point, at jump targets and after jumps.
+        final BitSet leaders = new BitSet(bytecode.length);
+        leaders.set(0);
+        for (int address = 0; address < bytecode.length; address++) {
+            final int[] successors = successors(address);
+            if (successors.length != 1 || successors[0] != wrap(address + 1)) {
+                for (final int successor : successors) {
+                    leaders.set(successor);
+                }
+                if (address + 1 < bytecode.length) {
+                    leaders.set(address + 1);
+                }
+            }
+        }
+
+        blockStarts = leaders.stream().toArray();
+        blockOfAddress = new int[bytecode.length];
+        for (int block = 0; block < blockStarts.length; block++) {
+            final int end = block + 1 < blockStarts.length ? blockStarts[block + 1] : bytecode.length;
+            Arrays.fill(blockOfAddress, blockStarts[block], end, block);
+        }
+
+        blockSuccessors = new int[blockStarts.length][];
+        blockCycles = new int[blockStarts.length];
+        blockReads = new int[blockStarts.length][TARGET_COUNT];
+        blockWrites = new int[blockStarts.length][TARGET_COUNT];
+        for (int block = 0; block < blockStarts.length; block++) {
+            final int end = block + 1 < blockStarts.length ? blockStarts[block + 1] : bytecode.length;
+            for (int address = blockStarts[block]; address < end; address++) {
+                final int read = portRead(bytecode[address]);
+                final int write = portWrite(bytecode[address]);
+                blockCycles[block]++;
+                if (read >= 0) {
+                    blockReads[block][read]++;
+                    blockCycles[block]++;
+                }
+                if (write >= 0) {
+                    blockWrites[block][write]++;
+                    blockCycles[block]++;
+                }
+            }
+
+            blockSuccessors[block] = Arrays.stream(successors(end - 1)).map(successor -> blockOfAddress[successor]).distinct().toArray();
+        }
+    }
+
+    /**
+     * Find the loops among the specified blocks and, recursively, the loops
+     * nested in them, by finding strongly connected components and removing
+     * their header.
+     *
+     * @param blocks the blocks to find loops in.
+     * @param depth  the nesting depth of the loops found.
+     */
+    private void findLoops(final BitSet blocks, final int depth) {
+        for (final BitSet component : stronglyConnectedComponents(blocks)) {
+            final int first = component.nextSetBit(0);
+            if (component.cardinality() == 1 && !contains(blockSuccessors[first], first)) {
+                continue; // Not a loop.
+            }
+
+            final int header = findHeader(component);
+            addLoop(component, header, depth);
+
+            final BitSet inner = (BitSet) component.clone();
+            inner.clear(header);
+            findLoops(inner, depth + 1);
+        }
+    }
+
+    /**
+     * Pick the block a loop is entered at: the program entry if it is part of
+     * the loop, otherwise the first block with a predecessor outside the loop.
+     *
+     * @param component the blocks of the loop.
+     * @return the header block of the loop.
+     */
+    private int findHeader(final BitSet component) {
+        if (component.get(0)) {
+            return 0;
+        }
+        for (int block = 0; block < blockStarts.length; block++) {
+            if (component.get(block)) {
+                continue;
+            }
+            for (final int successor : blockSuccessors[block]) {
+                if (component.get(successor)) {
+                    return successor;
+                }
+            }
+        }
+        return component.nextSetBit(0);
+    }
+
+    /**
+     * Compute the fastest path through a loop, starting and ending at its
+     * header, and store the loop.
+     *
+     * @param component the blocks of the loop.
+     * @param header    the header block of the loop.
+     * @param depth     the nesting depth of the loop.
+     */
+    private void addLoop(final BitSet component, final int header, final int depth) {
+        // Dijkstra from the header, the fastest iteration is the cheapest edge back to it.
+        final int[] cycles = new int[blockStarts.length];
+        final int[] previous = new int[blockStarts.length];
+        Arrays.fill(cycles, Integer.MAX_VALUE);
+        Arrays.fill(previous, -1);
+        cycles[header] = blockCycles[header];
+
+        final BitSet done = new BitSet();
+        int bestCycles = Integer.MAX_VALUE, bestLast = -1;
+        while (true) {
+            int current = -1;
+            for (int block = component.nextSetBit(0); block >= 0; block = component.nextSetBit(block + 1)) {
+                if (!done.get(block) && cycles[block] != Integer.MAX_VALUE && (current < 0 || cycles[block] < cycles[current])) {
+                    current = block;
+                }
+            }
+            if (current < 0) {
+                break;
+            }
+            done.set(current);
+
+            for (final int successor : blockSuccessors[current]) {
+                if (successor == header) {
+                    if (cycles[current] < bestCycles) {
+                        bestCycles = cycles[current];
+                        bestLast = current;
+                    }
+                } else if (component.get(successor) && cycles[current] + blockCycles[successor] < cycles[successor]) {
+                    cycles[successor] = cycles[current] + blockCycles[successor];
+                    previous[successor] = current;
+                }
+            }
+        }
+
+        if (bestLast < 0) {
+            return; // Cannot happen for strongly connected components, but be safe.
+        }
+
+        final int[] reads = new int[TARGET_COUNT];
+        final int[] writes = new int[TARGET_COUNT];
+        for (int block = bestLast; block >= 0; block = previous[block]) {
+            for (int target = 0; target < TARGET_COUNT; target++) {
+                reads[target] += blockReads[block][target];
+                writes[target] += blockWrites[block][target];
+            }
+        }
+
+        int firstLine = Integer.MAX_VALUE, lastLine = Integer.MIN_VALUE;
+        for (int block = component.nextSetBit(0); block >= 0; block = component.nextSetBit(block + 1)) {
+            final int end = block + 1 < blockStarts.length ? blockStarts[block + 1] : bytecode.length;
+            for (int address = blockStarts[block]; address < end; address++) {
+                firstLine = Math.min(firstLine, lineNumbers[address]);
+                lastLine = Math.max(lastLine, lineNumbers[address]);
+            }
+        }
+
+        loops.add(new ProgramAnalysis.Loop(blockStarts[header], depth, firstLine, lastLine, bestCycles, reads, writes));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Tarjan's algorithm, restricted to the specified blocks.
+     *
+     * @param blocks the blocks to consider.
+     * @return the strongly connected components of the blocks.
+     */
+    private List<BitSet> stronglyConnectedComponents(final BitSet blocks) {
+        final List<BitSet> components = new ArrayList<>();
+        final int[] index = new int[blockStarts.length];
+        final int[] lowLink = new int[blockStarts.length];
+        Arrays.fill(index, -1);
+        final Deque<Integer> stack = new ArrayDeque<>();
+        final BitSet onStack = new BitSet();
+        final int[] counter = {0};
+        for (int block = blocks.nextSetBit(0); block >= 0; block = blocks.nextSetBit(block + 1)) {
+            if (index[block] < 0) {
+                connect(block, blocks, index, lowLink, stack, onStack, counter, components);
+            }
+        }
+        return components;
+    }
+
+    private void connect(final int block, final BitSet blocks, final int[] index, final int[] lowLink, final Deque<Integer> stack, final BitSet onStack, final int[] counter, final List<BitSet> components) {
+        index[block] = lowLink[block] = counter[0]++;
+        stack.push(block);
+        onStack.set(block);
+
+        for (final int successor : blockSuccessors[block]) {
+            if (!blocks.get(successor)) {
+                continue;
+            }
+            if (index[successor] < 0) {
+                connect(successor, blocks, index, lowLink, stack, onStack, counter, components);
+                lowLink[block] = Math.min(lowLink[block], lowLink[successor]);
+            } else if (onStack.get(successor)) {
+                lowLink[block] = Math.min(lowLink[block], index[successor]);
+            }
+        }
+
+        if (lowLink[block] == index[block]) {
+            final BitSet component = new BitSet();
+            int member;
+            do {
+                member = stack.pop();
+                onStack.clear(member);
+                component.set(member);
+            } while (member != block);
+            components.add(component);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the addresses execution may continue at after the instruction at
+     * the specified address. Computed jumps have no known successors.
+     *
+     * @param address the address of the instruction.
+     * @return the possible successors of the instruction.
+     */
+    private int[] successors(final int address) {
+        final int instruction = bytecode[address];
+        switch (opcode(instruction)) {
+            case HCF:
+                return new int[0];
+            case JMP:
+                return new int[]{wrap(unsignedImmediate(instruction))};
+            case JEZ:
+            case JGZ:
+            case JLZ:
+            case JNZ:
+                return new int[]{wrap(unsignedImmediate(instruction)), wrap(address + 1)};
+            case JRO_IMM:
+                return new int[]{wrap(address + immediate(instruction))};
+            case JRO:
+                hasComputedJumps = true;
+                return new int[0];
+            case MOV:
+                if (unsignedImmediate(instruction) == PC) {
+                    hasComputedJumps = true;
+                    return new int[0];
+                }
+                break;
+            case MOV_IMM:
+                // Setting the program counter is followed by the usual increment.
+                if (operand(instruction) == PC) {
+                    return new int[]{wrap(immediate(instruction) + 1)};
+                }
+                break;
+        }
+        return new int[]{wrap(address + 1)};
+    }
+
+    /**
+     * Get the port the specified instruction reads from, if any.
+     *
+     * @param instruction the instruction to check.
+     * @return the target ordinal of the port, or <code>-1</code>.
+     */
+    private static int portRead(final int instruction) {
+        switch (opcode(instruction)) {
+            case JRO:
+            case MOV:
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case AND:
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR:
+                return isPort(operand(instruction)) ? operand(instruction) : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the port the specified instruction writes to, if any.
+     *
+     * @param instruction the instruction to check.
+     * @return the target ordinal of the port, or <code>-1</code>.
+     */
+    private static int portWrite(final int instruction) {
+        switch (opcode(instruction)) {
+            case MOV:
+                return isPort(unsignedImmediate(instruction)) ? unsignedImmediate(instruction) : -1;
+            case MOV_IMM:
+                return isPort(operand(instruction)) ? operand(instruction) : -1;
+        }
+        return -1;
+    }
+
+    private static boolean isPort(final int target) {
+        return target >= FIRST_PORT;
+    }
+
+    /**
+     * Like the machine, continue at the start when running past either end.
+     */
+    private int wrap(final int address) {
+        return address >= 0 && address < bytecode.length ? address : 0;
+    }
+
+    private static boolean contains(final int[] values, final int value) {
+        for (final int candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,193 +2,235 @@ package li.cil.tis3d.common.module.execution.compiler;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import li.cil.tis3d.common.CommonConfig;
 import li.cil.tis3d.common.Constants;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer.Token;
 import li.cil.tis3d.common.module.execution.compiler.instruction.*;
 import li.cil.tis3d.common.module.execution.instruction.*;
 import li.cil.tis3d.common.module.execution.target.Target;
 
+import javax.annotation.Nullable;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
 
 /**
- * Compiles TIS-100 assembly code into instructions.
+ * Compiles TIS-100 assembly code into programs.
  * <p>
  * Generates exceptions with line and column location if invalid code is encountered.
  */
 public final class Compiler {
     /**
-     * Parse the specified piece of assembly code into the specified machine state.
+     * Compile the specified piece of assembly code into a program.
      * <p>
-     * Note that the machine state will be hard reset.
+     * Programs are interned using their normalized code, so compiling the same
+     * code again returns the already existing program instead of compiling it
+     * anew. Programs are held weakly, so they are released once no machine
+     * references them anymore.
+     * <p>
+     * Compilation never throws, if the code contains errors the returned program
+     * will be empty and provide the error via {@link CompiledProgram#getError()}.
      *
-     * @param code  the code to parse and compile.
-     * @param state the machine state to store the instructions and debug info in.
-     * @throws ParseException if the specified code contains syntax errors.
+     * @param code the code to parse and compile.
+     * @return the compiled program.
      */
-    public static void compile(final Iterable<String> code, final MachineState state) throws ParseException {
-        state.clear();
-
+    public static CompiledProgram compile(final Iterable<String> code) {
         final String[] lines = Iterables.toArray(code, String.class);
-        if (lines.length > CommonConfig.maxLinesPerProgram) {
-            throw new ParseException(Strings.MESSAGE_TOO_MANY_LINES, CommonConfig.maxLinesPerProgram, 0, 0);
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            lines[lineNumber] = lines[lineNumber].toUpperCase(Locale.US);
         }
+
+        return PROGRAMS.computeIfAbsent(String.join("\n", lines), key -> compile(lines));
+    }
+
+    /**
+     * Compile the specified piece of assembly code into a program.
+     * <p>
+     * Same as {@link #compile(Iterable)}, but takes the code as a single string.
+     * If the code is already normalized, e.g. because it is the code of a
+     * previously compiled program, and a program for it has already been
+     * interned, that program is returned without any further processing.
+     *
+     * @param code the code to parse and compile.
+     * @return the compiled program.
+     */
+    public static CompiledProgram compile(final String code) {
+        final CompiledProgram program = PROGRAMS.get(code);
+        if (program != null) {
+            return program;
+        }
+
+        return compile(Arrays.asList(Constants.PATTERN_LINES.split(code)));
+    }
+
+    /**
+     * Compile the specified piece of assembly code into a program in the background.
+     * <p>
+     * Same as {@link #compile(Iterable)}, but compiles on a bounded pool of
+     * background threads, so that programming many modules at once does not
+     * stall the server thread. The code is copied before returning, so it may
+     * be modified afterwards. If the program has already been interned, the
+     * returned future is already complete. If too many programs are waiting to
+     * be compiled, the program is compiled on the calling thread instead.
+     *
+     * @param code the code to parse and compile.
+     * @return the future completed with the compiled program.
+     */
+    public static CompletableFuture<CompiledProgram> compileAsync(final Iterable<String> code) {
+        final String[] lines = Iterables.toArray(code, String.class);
         for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
             lines[lineNumber] = lines[lineNumber].toUpperCase(Locale.US);
         }
 
-        state.code = lines;
+        final String key = String.join("\n", lines);
+        final CompiledProgram program = PROGRAMS.get(key);
+        if (program != null) {
+            return CompletableFuture.completedFuture(program);
+        }
+
+        return CompletableFuture.supplyAsync(() -> PROGRAMS.computeIfAbsent(key, k -> compile(lines)), getExecutor());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the executor used for compiling in the background, creating it on
+     * first use, after the configuration has been loaded.
+     *
+     * @return the executor to compile on.
+     */
+    private static synchronized Executor getExecutor() {
+        if (executor == null) {
+            final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                CommonConfig.compilerThreads, CommonConfig.compilerThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CommonConfig.maxPendingCompilations),
+                new ThreadFactoryBuilder().setNameFormat("TIS-3D Compiler %d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+            threadPool.allowCoreThreadTimeOut(true);
+            executor = threadPool;
+        }
+        return executor;
+    }
+
+    /**
+     * Parse the specified normalized lines of assembly code into a new program.
+     *
+     * @param lines the code to parse and compile, normalized to upper case.
+     * @return the compiled program.
+     */
+    private static CompiledProgram compile(final String[] lines) {
+        if (lines.length > CommonConfig.maxLinesPerProgram) {
+            return CompiledProgram.failed(lines, new ParseException(Strings.MESSAGE_TOO_MANY_LINES, CommonConfig.maxLinesPerProgram, 0, 0));
+        }
 
+        final CompiledProgram.Builder program = new CompiledProgram.Builder(lines);
         try {
-            // Parse all lines into the specified machine state.
+            // Parse all lines into the program.
             final List<Validator> validators = new ArrayList<>();
             final Map<String, String> defines = new HashMap<>();
+            final Tokenizer tokenizer = new Tokenizer();
             for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
                 // Enforce max line length.
                 if (lines[lineNumber].length() > Constants.MAX_CHARS_PER_LINE) {
                     throw new ParseException(Strings.MESSAGE_TOO_MANY_COLUMNS, lineNumber, Constants.MAX_CHARS_PER_LINE, Constants.MAX_CHARS_PER_LINE);
                 }
 
-                // Check for defines, also trims whitespace.
-                final Matcher defineMatcher = PATTERN_DEFINE.matcher(lines[lineNumber]);
-                if (defineMatcher.matches()) {
-                    parseDefine(defineMatcher, defines);
-                }
-
-                final Matcher undefineMatcher = PATTERN_UNDEFINE.matcher(lines[lineNumber]);
-                if (undefineMatcher.matches()) {
-                    parseUndefine(undefineMatcher, defines);
-                }
+                // Check for defines.
+                Tokenizer.parseDefine(lines[lineNumber], defines);
+                Tokenizer.parseUndefine(lines[lineNumber], defines);
 
-                // Get current line, strip comments.
-                final Matcher commentMatcher = PATTERN_COMMENT.matcher(lines[lineNumber]);
-                final String line = commentMatcher.replaceFirst("").trim();
-
-                // Extract a label, if any, pass the rest onto the instruction parser. Also trims.
-                final Matcher lineMatcher = PATTERN_LINE.matcher(line);
-                if (lineMatcher.matches()) {
-                    parseLabel(lineMatcher, state, lineNumber);
-                    parseInstruction(lineMatcher, state, lineNumber, defines, validators);
-                } else {
-                    // This should be pretty much impossible...
-                    throw new ParseException(Strings.MESSAGE_INVALID_FORMAT, lineNumber, 0, 0);
-                }
+                // Split the line into label and instruction parts, skipping comments.
+                tokenizer.tokenize(lines[lineNumber]);
+                parseLabel(tokenizer, program, lineNumber);
+                parseInstruction(tokenizer, program, lineNumber, defines, validators);
             }
 
             // Run all registered validators as a post-processing step. This is used
             // to check jumps reference existing labels, for example.
             for (final Validator validator : validators) {
-                validator.accept(state);
+                validator.accept(program);
             }
-        } catch (final ParseException e) {
-            state.clear();
-            state.code = lines;
-            throw e;
-        }
-    }
 
-    // --------------------------------------------------------------------- //
-
-    /**
-     * Parse a define from the specified match and put it in the map of defines.
-     *
-     * @param matcher the matcher for the line to parse.
-     * @param defines the map with defines to add results to.
-     */
-    private static void parseDefine(final Matcher matcher, final Map<String, String> defines) {
-        final String key = matcher.group("key");
-        if (key == null) {
-            return;
-        }
-
-        String value = matcher.group("value");
-        if (value == null) {
-            return;
-        }
-
-        if (key.equals(value)) {
-            return;
-        }
-
-        // Resolve value if it is also a define.
-        if (defines.containsKey(value)) {
-            value = defines.get(value);
-        }
-
-        // Overwrite previous defines if there is one.
-        defines.put(key, value);
-    }
+            // Link instructions referencing other parts of the program, i.e. resolve
+            // jump labels to absolute addresses, then encode the linked program into
+            // the bytecode actually run by the machine and optimize that.
+            final int[] bytecode = new int[program.instructions.size()];
+            for (int address = 0; address < bytecode.length; address++) {
+                final Instruction instruction = program.instructions.get(address).link(program);
+                program.instructions.set(address, instruction);
+                bytecode[address] = instruction.encode();
+            }
+            Optimizer.optimize(bytecode);
 
-    /**
-     * Parse an undefine from the specified match and remove it from the map of defines.
-     *
-     * @param matcher the matcher for the line to parse.
-     * @param defines the map with defines to remove results from.
-     */
-    private static void parseUndefine(final Matcher matcher, final Map<String, String> defines) {
-        final String key = matcher.group("key");
-        if (key == null) {
-            return;
+            return program.build(bytecode);
+        } catch (final ParseException e) {
+            return CompiledProgram.failed(lines, e);
         }
-
-        defines.remove(key);
     }
 
     /**
      * Look for a label on the specified line and store it if present.
      *
-     * @param matcher    the matcher for the line to parse.
-     * @param state      the machine state to store the label in.
+     * @param tokenizer  the tokenizer holding the line to parse.
+     * @param program    the program to store the label in.
      * @param lineNumber the current line number.
      */
-    private static void parseLabel(final Matcher matcher, final MachineState state, final int lineNumber) throws ParseException {
-        final String label = matcher.group("label");
+    private static void parseLabel(final Tokenizer tokenizer, final CompiledProgram.Builder program, final int lineNumber) throws ParseException {
+        final String label = tokenizer.get(Token.LABEL);
         if (label == null) {
             return;
         }
 
         // Got a label, store it and the address it represents.
-        if (state.labels.containsKey(label)) {
-            throw new ParseException(Strings.MESSAGE_LABEL_DUPLICATE, lineNumber, matcher.start("label"), matcher.end("label"));
+        if (program.labels.containsKey(label)) {
+            throw new ParseException(Strings.MESSAGE_LABEL_DUPLICATE, lineNumber, tokenizer.start(Token.LABEL), tokenizer.end(Token.LABEL));
         }
-        state.labels.put(label, state.instructions.size());
+        program.labels.put(label, program.instructions.size());
     }
 
     /**
      * Look for an instruction on the specified line and store it if present.
      *
-     * @param matcher    the matcher for the line to parse.
-     * @param state      the machine state to store the generated instruction in.
+     * @param tokenizer  the tokenizer holding the line to parse.
+     * @param program    the program to store the generated instruction in.
      * @param lineNumber the number of the line we're parsing (for exceptions).
      * @param defines    the map of currently active defines.
      * @param validators list of validators instruction emitters may add to.
      * @throws ParseException if there was a syntax error.
      */
-    private static void parseInstruction(final Matcher matcher, final MachineState state, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final String name = matcher.group("name");
+    private static void parseInstruction(final Tokenizer tokenizer, final CompiledProgram.Builder program, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final String name = tokenizer.get(Token.NAME);
         if (name == null) {
             return;
         }
 
         // Got an instruction, process arguments and instantiate it.
         final Instruction instruction = EMITTER_MAP.getOrDefault(name, EMITTER_MISSING).
-            compile(matcher, lineNumber, defines, validators);
+            compile(tokenizer, lineNumber, defines, validators);
 
         // Remember line numbers for debugging.
-        state.lineNumbers.put(state.instructions.size(), lineNumber);
+        program.lineNumbers[program.instructions.size()] = lineNumber;
 
-        // Store the instruction in the machine state (after just to skip the -1 :P).
-        state.instructions.add(instruction);
+        // Store the instruction in the program (after just to skip the -1 :P).
+        program.instructions.add(instruction);
     }
 
     // --------------------------------------------------------------------- //
 
-    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
-    private static final Pattern PATTERN_DEFINE = Pattern.compile("#DEFINE\\s+(?<key>\\S+)\\s*(?<value>\\S+)\\s*$");
-    private static final Pattern PATTERN_UNDEFINE = Pattern.compile("#UNDEF\\s+(?<key>\\S+)\\s*$");
-    private static final Pattern PATTERN_LINE = Pattern.compile("^\\s*(?:(?<label>[^:\\s]+)\\s*:\\s*)?(?:(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?)?\\s*$");
+    /**
+     * Programs compiled so far, by their normalized code, for interning.
+     */
+    private static final Map<String, CompiledProgram> PROGRAMS = new MapMaker().weakValues().makeMap();
+
+    /**
+     * Pool of threads used for compiling in the background, see {@link #getExecutor()}.
+     */
+    @Nullable
+    private static Executor executor;
+
     private static final String INSTRUCTION_NO_NAME = "NOP";
     private static final Instruction INSTRUCTION_NOP = new AddInstruction(Target.NIL);
     private static final InstructionEmitter EMITTER_MISSING = new MissingInstructionEmitter();
@@ -0,0 +1,154 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import static li.cil.tis3d.common.module.execution.Opcodes.*;
+
+/**
+ * Peephole optimizer run on the bytecode of successfully compiled programs.
+ * <p>
+ * Rewrites instructions operating on <tt>ACC</tt> and <tt>NIL</tt> into forms
+ * that do not have to go through the machine's target interfaces, and
+ * instructions that do nothing into a plain {@link li.cil.tis3d.common.module.execution.Opcodes#NOP}.
+ * <p>
+ * Every instruction is replaced with exactly one instruction taking the same
+ * number of cycles, so addresses, relative jumps and the program counter as
+ * seen by the player are not affected.
+ */
+public final class Optimizer {
+    private static final int ACC = Target.ACC.ordinal();
+    private static final int NIL = Target.NIL.ordinal();
+
+    /**
+     * Optimize the specified bytecode in place.
+     *
+     * @param bytecode the bytecode to optimize.
+     */
+    public static void optimize(final int[] bytecode) {
+        for (int address = 0; address < bytecode.length; address++) {
+            bytecode[address] = optimize(bytecode[address]);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static int optimize(final int instruction) {
+        final int opcode = opcode(instruction);
+        switch (opcode) {
+            case JRO:
+                if (operand(instruction) == NIL) {
+                    return pack(JRO_IMM, 0, 0);
+                }
+                break;
+
+            case MOV: {
+                final int source = operand(instruction);
+                final int destination = unsignedImmediate(instruction);
+                if (destination == NIL) {
+                    if (source == NIL || source == ACC) {
+                        return pack(NOP);
+                    }
+                } else if (destination == ACC) {
+                    if (source == ACC) {
+                        return pack(NOP);
+                    } else if (source == NIL) {
+                        return pack(MOV_IMM_ACC, 0, 0);
+                    }
+                }
+                break;
+            }
+            case MOV_IMM: {
+                final int destination = operand(instruction);
+                if (destination == NIL) {
+                    return pack(NOP);
+                } else if (destination == ACC) {
+                    return pack(MOV_IMM_ACC, 0, immediate(instruction));
+                }
+                break;
+            }
+
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case AND:
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR: {
+                final int source = operand(instruction);
+                if (source == NIL) {
+                    // Immediate variants directly follow their register variant.
+                    return optimizeImmediate(opcode + 1, (short) 0);
+                } else if (source == ACC) {
+                    return optimizeAcc(opcode);
+                }
+                break;
+            }
+            case ADD_IMM:
+            case SUB_IMM:
+            case MUL_IMM:
+            case DIV_IMM:
+            case AND_IMM:
+            case OR_IMM:
+            case XOR_IMM:
+            case SHL_IMM:
+            case SHR_IMM:
+                return optimizeImmediate(opcode, immediate(instruction));
+        }
+        return instruction;
+    }
+
+    private static int optimizeImmediate(final int opcode, final short value) {
+        switch (opcode) {
+            case ADD_IMM:
+            case SUB_IMM:
+            case OR_IMM:
+            case XOR_IMM:
+            case SHL_IMM:
+            case SHR_IMM:
+                if (value == 0) {
+                    return pack(NOP);
+                }
+                break;
+            case MUL_IMM:
+                if (value == 0) {
+                    return pack(MOV_IMM_ACC, 0, 0);
+                } else if (value == 1) {
+                    return pack(NOP);
+                }
+                break;
+            case DIV_IMM:
+                // Division by zero must still halt and catch fire.
+                if (value == 1) {
+                    return pack(NOP);
+                }
+                break;
+            case AND_IMM:
+                if (value == 0) {
+                    return pack(MOV_IMM_ACC, 0, 0);
+                } else if (value == -1) {
+                    return pack(NOP);
+                }
+                break;
+        }
+        return pack(opcode, 0, value);
+    }
+
+    private static int optimizeAcc(final int opcode) {
+        switch (opcode) {
+            case AND:
+            case OR:
+                return pack(NOP);
+            case SUB:
+            case XOR:
+                return pack(MOV_IMM_ACC, 0, 0);
+        }
+        return pack(OP_ACC, opcode);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Optimizer() {
+    }
+}
@@ -0,0 +1,146 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.List;
+
+/**
+ * The result of statically analyzing a compiled program, see {@link Analyzer}.
+ */
+public final class ProgramAnalysis {
+    /**
+     * Start addresses of the basic blocks of the program, in ascending order.
+     */
+    public final int[] blocks;
+
+    /**
+     * The loops of the program, outer loops before the loops nested in them.
+     */
+    public final List<Loop> loops;
+
+    /**
+     * Whether the program contains jumps with targets computed at runtime,
+     * i.e. <tt>JRO</tt> with a register or port operand, or moves to <tt>PC</tt>.
+     * Loops through such jumps are not detected.
+     */
+    public final boolean hasComputedJumps;
+
+    // --------------------------------------------------------------------- //
+
+    ProgramAnalysis(final int[] blocks, final List<Loop> loops, final boolean hasComputedJumps) {
+        this.blocks = blocks;
+        this.loops = loops;
+        this.hasComputedJumps = hasComputedJumps;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * A loop in a program, i.e. a strongly connected set of basic blocks.
+     * <p>
+     * The cycle counts assume all port operations complete as early as
+     * possible. Reads and writes on ports take at least one additional cycle
+     * each, since values are only transferred when pipes are stepped.
+     */
+    public static final class Loop {
+        /**
+         * The address the loop is entered at.
+         */
+        public final int header;
+
+        /**
+         * The nesting depth of the loop, zero for outermost loops.
+         */
+        public final int depth;
+
+        /**
+         * The range of source lines containing the instructions of the loop, inclusive.
+         */
+        public final int firstLine, lastLine;
+
+        /**
+         * The minimum number of cycles a single iteration of the loop takes.
+         */
+        public final int minCycles;
+
+        /**
+         * Number of reads from / writes to each port on the fastest path through
+         * the loop, indexed by {@link Target} ordinal. Only ports, {@link Target#ANY}
+         * and {@link Target#LAST} are counted.
+         */
+        private final int[] reads, writes;
+
+        // --------------------------------------------------------------------- //
+
+        Loop(final int header, final int depth, final int firstLine, final int lastLine, final int minCycles, final int[] reads, final int[] writes) {
+            this.header = header;
+            this.depth = depth;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.minCycles = minCycles;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        /**
+         * Number of reads from the specified target per iteration.
+         *
+         * @param target the target to get the number of reads for.
+         * @return the number of reads from the target.
+         */
+        public int getReads(final Target target) {
+            return reads[target.ordinal()];
+        }
+
+        /**
+         * Number of writes to the specified target per iteration.
+         *
+         * @param target the target to get the number of writes for.
+         * @return the number of writes to the target.
+         */
+        public int getWrites(final Target target) {
+            return writes[target.ordinal()];
+        }
+
+        /**
+         * Total number of port reads per iteration.
+         *
+         * @return the number of port reads.
+         */
+        public int getPortReads() {
+            int sum = 0;
+            for (final int count : reads) {
+                sum += count;
+            }
+            return sum;
+        }
+
+        /**
+         * Total number of port writes per iteration.
+         *
+         * @return the number of port writes.
+         */
+        public int getPortWrites() {
+            int sum = 0;
+            for (final int count : writes) {
+                sum += count;
+            }
+            return sum;
+        }
+
+        /**
+         * The number of modules running this loop in parallel required to
+         * transfer one value per cycle, based on the values written per
+         * iteration, or read if the loop writes no values.
+         *
+         * @return the number of modules, or zero if the loop does not use ports.
+         */
+        public int getModulesPerValuePerCycle() {
+            final int values = getPortWrites() > 0 ? getPortWrites() : getPortReads();
+            if (values == 0) {
+                return 0;
+            }
+            return (minCycles + values - 1) / values;
+        }
+    }
+}
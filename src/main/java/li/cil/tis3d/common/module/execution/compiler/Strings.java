@@ -1,7 +1,11 @@
 package li.cil.tis3d.common.module.execution.compiler;
 
+import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TranslationTextComponent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class Strings {
     public static final TranslationTextComponent MESSAGE_TOO_MANY_LINES = new TranslationTextComponent("tis3d.compiler.too_many_lines");
     public static final TranslationTextComponent MESSAGE_TOO_MANY_COLUMNS = new TranslationTextComponent("tis3d.compiler.too_many_columns");
@@ -13,10 +17,29 @@ public final class Strings {
     public static final TranslationTextComponent MESSAGE_LABEL_NOT_FOUND = new TranslationTextComponent("tis3d.compiler.label_not_found");
     public static final TranslationTextComponent MESSAGE_INVALID_INSTRUCTION = new TranslationTextComponent("tis3d.compiler.invalid_instruction");
 
+    public static final TranslationTextComponent MESSAGE_COMPUTED_JUMPS = new TranslationTextComponent("tis3d.analyzer.computed_jumps");
+
     public static TranslationTextComponent getCompileError(final ParseException e) {
         return new TranslationTextComponent("tis3d.compiler.error", e.getLineNumber(), e.getStart(), e.getEnd(), e.getDisplayMessage());
     }
 
+    /**
+     * Describe the timing and port usage of a loop found by the {@link Analyzer}.
+     *
+     * @param loop       the loop to describe.
+     * @param lineOffset offset to apply to line numbers, e.g. for code on later pages.
+     * @return the lines describing the loop.
+     */
+    public static List<ITextComponent> getLoopDescription(final ProgramAnalysis.Loop loop, final int lineOffset) {
+        final List<ITextComponent> description = new ArrayList<>();
+        description.add(new TranslationTextComponent("tis3d.analyzer.loop", loop.firstLine + 1 + lineOffset, loop.lastLine + 1 + lineOffset, loop.minCycles));
+        if (loop.getPortReads() > 0 || loop.getPortWrites() > 0) {
+            description.add(new TranslationTextComponent("tis3d.analyzer.ports", loop.getPortReads(), loop.getPortWrites()));
+            description.add(new TranslationTextComponent("tis3d.analyzer.modules", loop.getModulesPerValuePerCycle()));
+        }
+        return description;
+    }
+
     // --------------------------------------------------------------------- //
 
     private Strings() {
@@ -0,0 +1,313 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Splits single lines of assembly code into their parts, i.e. an optional
+ * label and an optional instruction name with its arguments.
+ * <p>
+ * Tokenizers are reused for all lines of a program, so the positions they
+ * provide are only valid until the next line is tokenized. Positions are
+ * relative to the line after stripping comments and surrounding whitespace.
+ */
+public final class Tokenizer {
+    /**
+     * The parts of a line the tokenizer extracts.
+     */
+    public enum Token {
+        /**
+         * A label, i.e. the text before a colon at the start of a line.
+         */
+        LABEL,
+
+        /**
+         * The instruction name.
+         */
+        NAME,
+
+        /**
+         * The first argument of the instruction.
+         */
+        ARG1,
+
+        /**
+         * The second argument of the instruction.
+         */
+        ARG2,
+
+        /**
+         * Anything left over after the second argument.
+         */
+        EXCESS
+    }
+
+    private static final String KEYWORD_DEFINE = "#DEFINE";
+    private static final String KEYWORD_UNDEFINE = "#UNDEF";
+
+    private static final int UNSET = -1;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The line currently being tokenized.
+     */
+    private String line = "";
+
+    /**
+     * The start and end of the tokenized part of the line, i.e. without
+     * comments and surrounding whitespace.
+     */
+    private int begin, end;
+
+    /**
+     * Absolute start and end positions of the tokens in the line, indexed
+     * by {@link Token} ordinal. {@link #UNSET} for tokens not present.
+     */
+    private final int[] starts = new int[Token.values().length];
+    private final int[] ends = new int[Token.values().length];
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Tokenize the specified line, replacing the results for the previous line.
+     *
+     * @param line the line to tokenize.
+     */
+    public void tokenize(final String line) {
+        this.line = line;
+        Arrays.fill(starts, UNSET);
+        Arrays.fill(ends, UNSET);
+
+        // Strip comments and surrounding whitespace.
+        final int comment = line.indexOf('#');
+        begin = 0;
+        end = comment >= 0 ? comment : line.length();
+        while (begin < end && line.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int position = begin;
+
+        // A label is anything up to a colon, as long as it contains no whitespace.
+        final int labelEnd = skipWord(position, true);
+        if (labelEnd > position) {
+            final int colon = skipWhitespace(labelEnd);
+            if (colon < end && line.charAt(colon) == ':') {
+                set(Token.LABEL, position, labelEnd);
+                position = skipWhitespace(colon + 1);
+            }
+        }
+
+        if (position >= end) {
+            return;
+        }
+
+        // The instruction name is anything up to the next whitespace.
+        final int nameEnd = skipWord(position, false);
+        set(Token.NAME, position, nameEnd);
+        position = skipWhitespace(nameEnd);
+
+        // Arguments are separated by whitespace, optionally with a comma.
+        final int arg1End = skipArg(position);
+        if (arg1End > position) {
+            set(Token.ARG1, position, arg1End);
+        }
+        position = skipWhitespace(arg1End);
+        if (position < end && line.charAt(position) == ',') {
+            position = skipWhitespace(position + 1);
+        }
+
+        final int arg2End = skipArg(position);
+        if (arg2End > position) {
+            set(Token.ARG2, position, arg2End);
+        }
+        position = skipWhitespace(arg2End);
+
+        if (position < end) {
+            set(Token.EXCESS, position, end);
+        }
+    }
+
+    /**
+     * The text of the specified token in the current line.
+     *
+     * @param token the token to get the text of.
+     * @return the text of the token, or <code>null</code> if it is not present.
+     */
+    @Nullable
+    public String get(final Token token) {
+        final int start = starts[token.ordinal()];
+        if (start == UNSET) {
+            return null;
+        }
+        return line.substring(start, ends[token.ordinal()]);
+    }
+
+    /**
+     * The start column of the specified token in the current line.
+     *
+     * @param token the token to get the start of.
+     * @return the start column of the token, or <code>-1</code> if it is not present.
+     */
+    public int start(final Token token) {
+        final int start = starts[token.ordinal()];
+        return start == UNSET ? UNSET : start - begin;
+    }
+
+    /**
+     * The end column of the specified token in the current line.
+     *
+     * @param token the token to get the end of.
+     * @return the end column of the token, or <code>-1</code> if it is not present.
+     */
+    public int end(final Token token) {
+        final int end = ends[token.ordinal()];
+        return end == UNSET ? UNSET : end - begin;
+    }
+
+    /**
+     * The end column of the current line, i.e. its length without comments
+     * and surrounding whitespace.
+     *
+     * @return the end column of the line.
+     */
+    public int end() {
+        return end - begin;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Apply a <code>#DEFINE KEY VALUE</code> directive, if the specified line is one.
+     * <p>
+     * For compatibility with older versions, a single word is split into a key
+     * formed by all but the last character, and the last character as the value.
+     *
+     * @param line    the line to check for a define.
+     * @param defines the map with defines to add results to.
+     */
+    public static void parseDefine(final String line, final Map<String, String> defines) {
+        final int keyStart = skipKeyword(line, KEYWORD_DEFINE);
+        if (keyStart < 0) {
+            return;
+        }
+
+        final int keyEnd = skipWord(line, keyStart);
+        final int valueStart = skipWhitespace(line, keyEnd);
+        final String key, value;
+        if (valueStart == line.length()) {
+            if (keyEnd - keyStart < 2) {
+                return;
+            }
+            key = line.substring(keyStart, keyEnd - 1);
+            value = line.substring(keyEnd - 1, keyEnd);
+        } else {
+            final int valueEnd = skipWord(line, valueStart);
+            if (skipWhitespace(line, valueEnd) != line.length()) {
+                return;
+            }
+            key = line.substring(keyStart, keyEnd);
+            value = line.substring(valueStart, valueEnd);
+        }
+
+        if (key.equals(value)) {
+            return;
+        }
+
+        // Resolve value if it is also a define, overwrite previous define if there is one.
+        defines.put(key, defines.getOrDefault(value, value));
+    }
+
+    /**
+     * Apply an <code>#UNDEF KEY</code> directive, if the specified line is one.
+     *
+     * @param line    the line to check for an undefine.
+     * @param defines the map with defines to remove results from.
+     */
+    public static void parseUndefine(final String line, final Map<String, String> defines) {
+        final int keyStart = skipKeyword(line, KEYWORD_UNDEFINE);
+        if (keyStart < 0) {
+            return;
+        }
+
+        final int keyEnd = skipWord(line, keyStart);
+        if (skipWhitespace(line, keyEnd) != line.length()) {
+            return;
+        }
+
+        defines.remove(line.substring(keyStart, keyEnd));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void set(final Token token, final int start, final int end) {
+        starts[token.ordinal()] = start;
+        ends[token.ordinal()] = end;
+    }
+
+    private int skipWhitespace(int position) {
+        while (position < end && isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private int skipWord(int position, final boolean stopAtColon) {
+        while (position < end) {
+            final char c = line.charAt(position);
+            if (isWhitespace(c) || (stopAtColon && c == ':')) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private int skipArg(int position) {
+        while (position < end) {
+            final char c = line.charAt(position);
+            if (isWhitespace(c) || c == ',') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Skip the specified keyword and the whitespace following it.
+     *
+     * @return the position after the whitespace, or <code>-1</code> if the
+     * line does not start with the keyword followed by whitespace and a word.
+     */
+    private static int skipKeyword(final String line, final String keyword) {
+        if (!line.startsWith(keyword) || line.length() == keyword.length() || !isWhitespace(line.charAt(keyword.length()))) {
+            return -1;
+        }
+        final int position = skipWhitespace(line, keyword.length());
+        return position < line.length() ? position : -1;
+    }
+
+    private static int skipWhitespace(final String line, int position) {
+        while (position < line.length() && isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipWord(final String line, int position) {
+        while (position < line.length() && !isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -1,59 +1,62 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
+import com.google.common.collect.ImmutableMap;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
 import li.cil.tis3d.common.module.execution.compiler.Strings;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer.Token;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.Map;
-import java.util.regex.Matcher;
 
 /**
  * Base implementation for instruction emitters.
  */
 abstract class AbstractInstructionEmitter implements InstructionEmitter {
-    static void checkExcess(final int lineNumber, final Matcher matcher, final String name) throws ParseException {
-        final int start = matcher.start(name);
+    static void checkExcess(final int lineNumber, final Tokenizer tokenizer, final Token token) throws ParseException {
+        final int start = tokenizer.start(token);
         if (start >= 0) {
-            throw new ParseException(Strings.MESSAGE_PARAMETER_OVERFLOW, lineNumber, start, matcher.end());
+            throw new ParseException(Strings.MESSAGE_PARAMETER_OVERFLOW, lineNumber, start, tokenizer.end());
         }
     }
 
-    static String checkArg(final int lineNumber, final Matcher matcher, final String name, final String previous) throws ParseException {
-        final String arg = matcher.group(name);
+    static String checkArg(final int lineNumber, final Tokenizer tokenizer, final Token token, final Token previous) throws ParseException {
+        final String arg = tokenizer.get(token);
         if (arg == null) {
-            throw new ParseException(Strings.MESSAGE_PARAMETER_UNDERFLOW, lineNumber, matcher.end(previous) + 1, matcher.end(previous) + 1);
+            throw new ParseException(Strings.MESSAGE_PARAMETER_UNDERFLOW, lineNumber, tokenizer.end(previous) + 1, tokenizer.end(previous) + 1);
         }
         return arg;
     }
 
     static Target checkTarget(String name, final int lineNumber, final Map<String, String> defines, final int start, final int end) throws ParseException {
         name = defines.getOrDefault(name, name);
-        try {
-            final Target target = Enum.valueOf(Target.class, name);
-            if (!Target.VALID_TARGETS.contains(target)) {
-                throw new ParseException(Strings.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
-            }
-            return target;
-        } catch (final IllegalArgumentException ex) {
+        final Target target = TARGETS.get(name);
+        if (target == null) {
             throw new ParseException(Strings.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
         }
+        return target;
     }
 
     static Object checkTargetOrNumber(String name, final int lineNumber, final Map<String, String> defines, final int start, final int end) throws ParseException {
         name = defines.getOrDefault(name, name);
-        try {
-            final Target target = Enum.valueOf(Target.class, name);
-            if (!Target.VALID_TARGETS.contains(target)) {
-                throw new ParseException(Strings.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
-            }
+        final Target target = TARGETS.get(name);
+        if (target != null) {
             return target;
-        } catch (final IllegalArgumentException ex) {
-            try {
-                return Integer.decode(name).shortValue();
-            } catch (final NumberFormatException ignored) {
-                throw new ParseException(Strings.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
-            }
+        }
+        try {
+            return Integer.decode(name).shortValue();
+        } catch (final NumberFormatException ignored) {
+            throw new ParseException(Strings.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
         }
     }
 
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Valid targets by name, to avoid going through {@link Enum#valueOf} and its
+     * exception for every immediate value.
+     */
+    private static final Map<String, Target> TARGETS = Target.VALID_TARGETS.stream().
+        collect(ImmutableMap.toImmutableMap(Enum::name, target -> target));
+
 }
@@ -1,12 +1,12 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 
 /**
  * Implemented for each individual supported instruction.
@@ -15,12 +15,12 @@ public interface InstructionEmitter {
     /**
      * Compile an instruction.
      *
-     * @param matcher    the matcher used to parse the line.
+     * @param tokenizer  the tokenizer holding the line to parse.
      * @param lineNumber the line number the instruction is on (for exceptions).
      * @param defines    the map of currently active defines.
      * @param validators list of validators instruction emitters may add to.
      * @return the compiled instruction.
      * @throws ParseException if there was a syntax error.
      */
-    Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException;
+    Instruction compile(final Tokenizer tokenizer, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException;
 }
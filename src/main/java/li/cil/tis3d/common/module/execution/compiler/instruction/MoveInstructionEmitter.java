@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer.Token;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.instruction.MoveInstruction;
@@ -9,16 +11,15 @@ import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 
 public final class MoveInstructionEmitter extends AbstractInstructionEmitter {
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final Object src = checkTargetOrNumber(checkArg(lineNumber, matcher, "arg1", "name"),
-            lineNumber, defines, matcher.start("arg1"), matcher.end("arg1"));
-        final Target dst = checkTarget(checkArg(lineNumber, matcher, "arg2", "arg1"),
-            lineNumber, defines, matcher.start("arg2"), matcher.end("arg2"));
-        checkExcess(lineNumber, matcher, "excess");
+    public Instruction compile(final Tokenizer tokenizer, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final Object src = checkTargetOrNumber(checkArg(lineNumber, tokenizer, Token.ARG1, Token.NAME),
+            lineNumber, defines, tokenizer.start(Token.ARG1), tokenizer.end(Token.ARG1));
+        final Target dst = checkTarget(checkArg(lineNumber, tokenizer, Token.ARG2, Token.ARG1),
+            lineNumber, defines, tokenizer.start(Token.ARG2), tokenizer.end(Token.ARG2));
+        checkExcess(lineNumber, tokenizer, Token.EXCESS);
 
         if (src instanceof Target) {
             return new MoveInstruction((Target) src, dst);
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer.Token;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.target.Target;
@@ -8,7 +10,6 @@ import li.cil.tis3d.common.module.execution.target.Target;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public final class TargetOrImmediateInstructionEmitter extends AbstractInstructionEmitter {
     private final Function<Target, Instruction> constructorTarget;
@@ -20,10 +21,10 @@ public final class TargetOrImmediateInstructionEmitter extends AbstractInstructi
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final Object src = checkTargetOrNumber(checkArg(lineNumber, matcher, "arg1", "name"),
-            lineNumber, defines, matcher.start("arg1"), matcher.end("arg1"));
-        checkExcess(lineNumber, matcher, "arg2");
+    public Instruction compile(final Tokenizer tokenizer, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final Object src = checkTargetOrNumber(checkArg(lineNumber, tokenizer, Token.ARG1, Token.NAME),
+            lineNumber, defines, tokenizer.start(Token.ARG1), tokenizer.end(Token.ARG1));
+        checkExcess(lineNumber, tokenizer, Token.ARG2);
 
         if (src instanceof Target) {
             return constructorTarget.apply((Target) src);
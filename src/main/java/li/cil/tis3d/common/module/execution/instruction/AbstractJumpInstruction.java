@@ -0,0 +1,44 @@
+package li.cil.tis3d.common.module.execution.instruction;
+
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.Opcodes;
+
+abstract class AbstractJumpInstruction implements Instruction {
+    private static final int ADDRESS_UNLINKED = -1;
+
+    protected final String label;
+    protected final int address;
+
+    protected AbstractJumpInstruction(final String label, final int address) {
+        this.label = label;
+        this.address = address;
+    }
+
+    protected AbstractJumpInstruction(final String label) {
+        this(label, ADDRESS_UNLINKED);
+    }
+
+    @Override
+    public final Instruction link(final CompiledProgram.Builder program) {
+        return withAddress(program.labels.get(label));
+    }
+
+    @Override
+    public final int encode() {
+        if (address == ADDRESS_UNLINKED) {
+            throw new IllegalStateException("Jump has not been linked.");
+        }
+        return Opcodes.pack(getOpcode(), 0, address);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + label;
+    }
+
+    protected abstract Instruction withAddress(final int address);
+
+    protected abstract String getName();
+
+    protected abstract int getOpcode();
+}
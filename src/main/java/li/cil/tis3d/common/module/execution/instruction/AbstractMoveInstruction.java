@@ -1,8 +1,5 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.api.machine.Port;
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineImpl;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 abstract class AbstractMoveInstruction implements Instruction {
@@ -11,14 +8,4 @@ abstract class AbstractMoveInstruction implements Instruction {
     protected AbstractMoveInstruction(final Target destination) {
         this.destination = destination;
     }
-
-    @Override
-    public void onBeforeWriteComplete(final MachineImpl machine, final Port port) {
-        machine.getInterface(destination).onBeforeWriteComplete(port);
-    }
-
-    @Override
-    public void onWriteCompleted(final Machine machine, final Port port) {
-        machine.getState().pc++;
-    }
 }
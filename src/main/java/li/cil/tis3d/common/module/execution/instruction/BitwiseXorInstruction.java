@@ -1,7 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 public final class BitwiseXorInstruction extends AbstractReadInstruction {
@@ -12,10 +11,8 @@ public final class BitwiseXorInstruction extends AbstractReadInstruction {
     }
 
     @Override
-    protected void doStep(final Machine machine, final int value) {
-        final MachineState state = machine.getState();
-        state.acc ^= value;
-        state.pc++;
+    public int encode() {
+        return Opcodes.pack(Opcodes.XOR, source.ordinal());
     }
 
     @Override
@@ -1,8 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.api.machine.HaltAndCatchFireException;
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
 public final class DivImmediateInstruction implements Instruction {
     private final short value;
@@ -12,14 +10,8 @@ public final class DivImmediateInstruction implements Instruction {
     }
 
     @Override
-    public void step(final Machine machine) {
-        if (value == 0) {
-            throw new HaltAndCatchFireException();
-        }
-
-        final MachineState state = machine.getState();
-        state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc / value));
-        state.pc++;
+    public int encode() {
+        return Opcodes.pack(Opcodes.DIV_IMM, 0, value);
     }
 
     @Override
@@ -1,15 +1,14 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.api.machine.HaltAndCatchFireException;
-import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
 public final class HaltAndCatchFireInstruction implements Instruction {
     public static final String NAME = "HCF";
     public static final Instruction INSTANCE = new HaltAndCatchFireInstruction();
 
     @Override
-    public void step(final Machine machine) {
-        throw new HaltAndCatchFireException();
+    public int encode() {
+        return Opcodes.pack(Opcodes.HCF);
     }
 
     @Override
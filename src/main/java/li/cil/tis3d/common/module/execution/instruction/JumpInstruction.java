@@ -1,25 +1,30 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
-public final class JumpInstruction implements Instruction {
+public final class JumpInstruction extends AbstractJumpInstruction {
     public static final String NAME = "JMP";
 
-    private final String label;
-
     public JumpInstruction(final String label) {
-        this.label = label;
+        super(label);
+    }
+
+    private JumpInstruction(final String label, final int address) {
+        super(label, address);
+    }
+
+    @Override
+    protected Instruction withAddress(final int address) {
+        return new JumpInstruction(label, address);
     }
 
     @Override
-    public void step(final Machine machine) {
-        final MachineState state = machine.getState();
-        state.pc = state.labels.get(label);
+    protected String getName() {
+        return NAME;
     }
 
     @Override
-    public String toString() {
-        return NAME + " " + label;
+    protected int getOpcode() {
+        return Opcodes.JMP;
     }
 }
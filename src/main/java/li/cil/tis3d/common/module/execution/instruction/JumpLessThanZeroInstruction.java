@@ -1,21 +1,30 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
-public final class JumpLessThanZeroInstruction extends AbstractJumpConditionalInstruction {
+public final class JumpLessThanZeroInstruction extends AbstractJumpInstruction {
     public static final String NAME = "JLZ";
 
     public JumpLessThanZeroInstruction(final String label) {
         super(label);
     }
 
+    private JumpLessThanZeroInstruction(final String label, final int address) {
+        super(label, address);
+    }
+
+    @Override
+    protected Instruction withAddress(final int address) {
+        return new JumpLessThanZeroInstruction(label, address);
+    }
+
     @Override
-    protected boolean isConditionTrue(final MachineState state) {
-        return state.acc < 0;
+    protected String getName() {
+        return NAME;
     }
 
     @Override
-    public String toString() {
-        return NAME + " " + label;
+    protected int getOpcode() {
+        return Opcodes.JLZ;
     }
 }
@@ -1,6 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
 public final class JumpRelativeImmediateInstruction implements Instruction {
     private final short delta;
@@ -10,8 +10,8 @@ public final class JumpRelativeImmediateInstruction implements Instruction {
     }
 
     @Override
-    public void step(final Machine machine) {
-        machine.getState().pc += delta;
+    public int encode() {
+        return Opcodes.pack(Opcodes.JRO_IMM, 0, delta);
     }
 
     @Override
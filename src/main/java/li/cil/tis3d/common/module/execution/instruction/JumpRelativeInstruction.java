@@ -1,8 +1,7 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
-import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
 public final class JumpRelativeInstruction implements Instruction {
     public static final String NAME = "JRO";
@@ -14,15 +13,8 @@ public final class JumpRelativeInstruction implements Instruction {
     }
 
     @Override
-    public void step(final Machine machine) {
-        final TargetInterface sourceInterface = machine.getInterface(source);
-
-        if (!sourceInterface.isReading()) {
-            sourceInterface.beginRead();
-        }
-        if (sourceInterface.canTransfer()) {
-            machine.getState().pc += sourceInterface.read();
-        }
+    public int encode() {
+        return Opcodes.pack(Opcodes.JRO, source.ordinal());
     }
 
     @Override
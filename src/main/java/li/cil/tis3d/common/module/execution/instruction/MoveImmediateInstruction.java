@@ -1,8 +1,7 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
-import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
 public final class MoveImmediateInstruction extends AbstractMoveInstruction {
     private final short value;
@@ -13,14 +12,8 @@ public final class MoveImmediateInstruction extends AbstractMoveInstruction {
     }
 
     @Override
-    public void step(final Machine machine) {
-        final TargetInterface destinationInterface = machine.getInterface(destination);
-
-        if (!destinationInterface.isWriting()) {
-            if (destinationInterface.beginWrite(value)) {
-                machine.getState().pc++;
-            }
-        }
+    public int encode() {
+        return Opcodes.pack(Opcodes.MOV_IMM, destination.ordinal(), value);
     }
 
     @Override
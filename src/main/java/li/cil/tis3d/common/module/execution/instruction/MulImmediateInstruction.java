@@ -1,7 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
 public final class MulImmediateInstruction implements Instruction {
     private final short value;
@@ -11,10 +10,8 @@ public final class MulImmediateInstruction implements Instruction {
     }
 
     @Override
-    public void step(final Machine machine) {
-        final MachineState state = machine.getState();
-        state.acc = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, state.acc * value));
-        state.pc++;
+    public int encode() {
+        return Opcodes.pack(Opcodes.MUL_IMM, 0, value);
     }
 
     @Override
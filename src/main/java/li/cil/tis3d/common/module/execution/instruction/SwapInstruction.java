@@ -1,19 +1,14 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
-import li.cil.tis3d.common.module.execution.Machine;
-import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Opcodes;
 
 public final class SwapInstruction implements Instruction {
     public static final String NAME = "SWP";
     public static final Instruction INSTANCE = new SwapInstruction();
 
     @Override
-    public void step(final Machine machine) {
-        final MachineState state = machine.getState();
-        final short tmp = state.acc;
-        state.acc = state.bak;
-        state.bak = tmp;
-        state.pc++;
+    public int encode() {
+        return Opcodes.pack(Opcodes.SWP);
     }
 
     @Override
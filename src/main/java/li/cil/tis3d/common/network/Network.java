@@ -9,8 +9,6 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.common.CommonConfig;
 import li.cil.tis3d.common.network.message.*;
 import li.cil.tis3d.common.tileentity.ComputerTileEntity;
-import li.cil.tis3d.util.WorldUtils;
-import net.minecraft.block.BlockState;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.nbt.CompoundNBT;
@@ -47,7 +45,7 @@ import java.util.function.Function;
 public final class Network {
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "3";
 
     public static final int RANGE_HIGH = 48;
     public static final int RANGE_MEDIUM = 32;
@@ -76,10 +74,11 @@ public final class Network {
         registerMessage(CasingLockedStateMessage.class, CasingLockedStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(CasingInventoryMessage.class, CasingInventoryMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(HaltAndCatchFireMessage.class, HaltAndCatchFireMessage::new, NetworkDirection.PLAY_TO_CLIENT);
-        registerMessage(RedstoneParticleEffectMessage.class, RedstoneParticleEffectMessage::new, NetworkDirection.PLAY_TO_CLIENT);
+        registerMessage(PipeEffectMessage.class, PipeEffectMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(ReceivingPipeLockedStateMessage.class, ReceivingPipeLockedStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(ServerReadOnlyMemoryModuleDataMessage.class, ServerReadOnlyMemoryModuleDataMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(ClientReadOnlyMemoryModuleDataMessage.class, ClientReadOnlyMemoryModuleDataMessage::new, NetworkDirection.PLAY_TO_SERVER);
+        registerMessage(PipeStatsMessage.class, PipeStatsMessage::new, NetworkDirection.PLAY_TO_CLIENT);
 
         MinecraftForge.EVENT_BUS.addListener(Network::onClientTick);
         MinecraftForge.EVENT_BUS.addListener(Network::onServerTick);
@@ -123,17 +122,16 @@ public final class Network {
         getQueueFor(casing).queueData(face, data, type);
     }
 
-    public static void sendPipeEffect(final World world, final double x, final double y, final double z) {
-        final BlockPos position = new BlockPos(x, y, z);
-        if (WorldUtils.isLoaded(world, position)) {
-            final BlockState state = world.getBlockState(position);
-            if (state.isSolidRender(world, position)) {
-                // Skip particle emission when inside a block where they aren't visible anyway.
-                return;
-            }
-        }
-
-        queueParticleEffect(world, (float) x, (float) y, (float) z);
+    /**
+     * Send the transfer effects of the specified computer block to nearby
+     * clients with the next batch of effects, see {@link ComputerTileEntity#takeTransferredPipes()}.
+     * Called when a pipe of the block first transferred a value since effects
+     * were last sent.
+     *
+     * @param tileEntity the computer block with pipes that transferred a value.
+     */
+    public static void sendPipeEffect(final ComputerTileEntity tileEntity) {
+        pipeEffectQueue.add(tileEntity);
     }
 
     // --------------------------------------------------------------------- //
@@ -148,7 +146,7 @@ public final class Network {
     private static void onServerTick(final TickEvent.ServerTickEvent event) {
         if (event.type == TickEvent.Type.SERVER && event.getPhase() == EventPriority.NORMAL) {
             flushCasingQueues(Dist.DEDICATED_SERVER);
-            flushParticleQueue();
+            flushPipeEffectQueue();
         }
     }
 
@@ -159,88 +157,70 @@ public final class Network {
     }
 
     // --------------------------------------------------------------------- //
-    // Particle message queueing
+    // Pipe effect queueing
 
     private static final int TICK_TIME = 50;
-    private static final Set<Position> particleQueue = new HashSet<>();
-    private static long lastParticlesSent = 0;
-    private static int particlesSent = 0;
-    private static int particleSendInterval = TICK_TIME;
-
-    private static void queueParticleEffect(final World world, final float x, final float y, final float z) {
-        final Position position = new Position(world, x, y, z);
-        particleQueue.add(position);
-    }
-
-    private static void flushParticleQueue() {
-        final long now = System.currentTimeMillis();
-        if (now - lastParticlesSent < particleSendInterval) {
-            return;
-        }
-        lastParticlesSent = now;
-
-        particlesSent = 0;
-        particleQueue.forEach(Position::sendMessage);
-
-        if (particlesSent > CommonConfig.maxParticlesPerTick) {
-            final int throttle = (int) Math.ceil(particlesSent / (float) CommonConfig.maxParticlesPerTick);
-            particleSendInterval = Math.min(2000, TICK_TIME * throttle);
-        } else {
-            particleSendInterval = TICK_TIME;
-        }
 
-        particleQueue.clear();
-    }
+    /**
+     * Size of the areas effects are batched in, as a bit shift, i.e. 16x16x16 blocks.
+     */
+    private static final int EFFECT_AREA_SHIFT = 4;
 
     /**
-     * Track dimensional position of particle emission for culling duplicates
-     * when currently throttling.
+     * Distance from the center of an effect area to its corners, rounded up.
      */
-    private static final class Position {
-        private final World world;
-        private final float x;
-        private final float y;
-        private final float z;
-
-        private Position(final World world, final float x, final float y, final float z) {
-            this.world = world;
-            this.x = x;
-            this.y = y;
-            this.z = z;
-        }
+    private static final int EFFECT_AREA_RADIUS = 14;
 
-        private void sendMessage() {
-            final RedstoneParticleEffectMessage message = new RedstoneParticleEffectMessage(x, y, z);
-            if (areAnyPlayersNear(world, new Vector3d(x, y, z), RANGE_LOW)) {
-                Network.INSTANCE.send(getTargetPoint(world, x, y, z, RANGE_LOW), message);
-                particlesSent++;
-            }
-        }
+    private static final Set<ComputerTileEntity> pipeEffectQueue = new LinkedHashSet<>();
+    private static long lastPipeEffectsSent = 0;
+    private static int pipeEffectSendInterval = TICK_TIME;
 
-        @Override
-        public boolean equals(final Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null || getClass() != obj.getClass()) {
-                return false;
+    private static void flushPipeEffectQueue() {
+        final long now = System.currentTimeMillis();
+        if (now - lastPipeEffectsSent < pipeEffectSendInterval) {
+            return;
+        }
+        lastPipeEffectsSent = now;
+
+        // Batch effects per area, so there's one message per area instead of one per particle.
+        final Map<World, Map<Long, PipeEffectMessage>> messages = new HashMap<>();
+        for (final ComputerTileEntity tileEntity : pipeEffectQueue) {
+            final int pipes = tileEntity.takeTransferredPipes();
+            if (pipes == 0 || tileEntity.isRemoved()) {
+                continue;
             }
 
-            final Position that = (Position) obj;
-            return Objects.equals(world.dimension(), that.world.dimension()) &&
-                   Float.compare(that.x, x) == 0 &&
-                   Float.compare(that.y, y) == 0 &&
-                   Float.compare(that.z, z) == 0;
+            final World world = tileEntity.getBlockEntityWorld();
+            final BlockPos position = tileEntity.getBlockPos();
+            if (!areAnyPlayersNear(world, position, RANGE_LOW)) {
+                continue;
+            }
 
+            final long area = BlockPos.asLong(position.getX() >> EFFECT_AREA_SHIFT, position.getY() >> EFFECT_AREA_SHIFT, position.getZ() >> EFFECT_AREA_SHIFT);
+            messages.computeIfAbsent(world, w -> new HashMap<>())
+                .computeIfAbsent(area, a -> new PipeEffectMessage())
+                .add(position, pipes);
+        }
+        pipeEffectQueue.clear();
+
+        int messagesSent = 0;
+        for (final Map.Entry<World, Map<Long, PipeEffectMessage>> worldMessages : messages.entrySet()) {
+            for (final Map.Entry<Long, PipeEffectMessage> areaMessage : worldMessages.getValue().entrySet()) {
+                final BlockPos area = BlockPos.of(areaMessage.getKey());
+                final double halfSize = (1 << EFFECT_AREA_SHIFT) / 2.0;
+                final double x = (area.getX() << EFFECT_AREA_SHIFT) + halfSize;
+                final double y = (area.getY() << EFFECT_AREA_SHIFT) + halfSize;
+                final double z = (area.getZ() << EFFECT_AREA_SHIFT) + halfSize;
+                Network.INSTANCE.send(getTargetPoint(worldMessages.getKey(), x, y, z, RANGE_LOW + EFFECT_AREA_RADIUS), areaMessage.getValue());
+                messagesSent++;
+            }
         }
 
-        @Override
-        public int hashCode() {
-            int result = world.dimension().hashCode();
-            result = 31 * result + (x != +0.0f ? Float.floatToIntBits(x) : 0);
-            result = 31 * result + (y != +0.0f ? Float.floatToIntBits(y) : 0);
-            result = 31 * result + (z != +0.0f ? Float.floatToIntBits(z) : 0);
-            return result;
+        if (messagesSent > CommonConfig.maxParticlesPerTick) {
+            final int throttle = (int) Math.ceil(messagesSent / (float) CommonConfig.maxParticlesPerTick);
+            pipeEffectSendInterval = Math.min(2000, TICK_TIME * throttle);
+        } else {
+            pipeEffectSendInterval = TICK_TIME;
         }
     }
 
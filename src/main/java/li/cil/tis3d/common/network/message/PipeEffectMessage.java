@@ -0,0 +1,114 @@
+package li.cil.tis3d.common.network.message;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.util.WorldUtils;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.particles.RedstoneParticleData;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+import java.util.Arrays;
+
+/**
+ * Transfer effects of the computer blocks in one area, spawned on the client.
+ * <p>
+ * Instead of particle positions, this holds the position of each computer
+ * block and the pipes of that block that transferred a value since effects
+ * were last sent, as a bit mask indexed using {@link PipeTopology#pack(Face, Port)}.
+ * Clients compute the particle positions from that.
+ */
+public final class PipeEffectMessage extends AbstractMessage {
+    private int count;
+    private long[] positions;
+    private int[] pipes;
+
+    public PipeEffectMessage() {
+        positions = new long[4];
+        pipes = new int[4];
+    }
+
+    @SuppressWarnings("unused") // For deserialization.
+    public PipeEffectMessage(final PacketBuffer buffer) {
+        super(buffer);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Add the effects of the computer block at the specified position.
+     *
+     * @param position the position of the computer block.
+     * @param pipes    the pipes that transferred a value, as a bit mask.
+     */
+    public void add(final BlockPos position, final int pipes) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+            this.pipes = Arrays.copyOf(this.pipes, count * 2);
+        }
+        positions[count] = position.asLong();
+        this.pipes[count] = pipes;
+        count++;
+    }
+
+    // --------------------------------------------------------------------- //
+    // AbstractMessage
+
+    @Override
+    protected void handleMessage(final NetworkEvent.Context context) {
+        final World world = getClientWorld();
+        if (world == null) {
+            return;
+        }
+
+        final BlockPos.Mutable particlePosition = new BlockPos.Mutable();
+        for (int i = 0; i < count; i++) {
+            final BlockPos position = BlockPos.of(positions[i]);
+            final int mask = pipes[i];
+            for (int pipeIndex = 0; pipeIndex < PipeTopology.PIPE_COUNT; pipeIndex++) {
+                if ((mask & (1 << pipeIndex)) == 0) {
+                    continue;
+                }
+
+                final Face receivingFace = Face.VALUES[pipeIndex / Port.VALUES.length];
+                final Face sendingFace = PipeTopology.mapFace(receivingFace, Port.VALUES[pipeIndex % Port.VALUES.length]);
+                final double ox = Face.toDirection(receivingFace).getStepX() + Face.toDirection(sendingFace).getStepX();
+                final double oy = Face.toDirection(receivingFace).getStepY() + Face.toDirection(sendingFace).getStepY();
+                final double oz = Face.toDirection(receivingFace).getStepZ() + Face.toDirection(sendingFace).getStepZ();
+                final double x = ox * 0.55 + position.getX() + 0.5;
+                final double y = oy * 0.55 + position.getY() + 0.5 + (oy < 0 ? -0.2 : (oy > 0) ? 0.1 : 0);
+                final double z = oz * 0.55 + position.getZ() + 0.5;
+
+                // Skip particle emission when inside a block where they aren't visible anyway.
+                particlePosition.set(x, y, z);
+                if (WorldUtils.isLoaded(world, particlePosition) && world.getBlockState(particlePosition).isSolidRender(world, particlePosition)) {
+                    continue;
+                }
+
+                world.addParticle(RedstoneParticleData.REDSTONE, x, y, z, 0, 0, 0);
+            }
+        }
+    }
+
+    @Override
+    public void fromBytes(final PacketBuffer buffer) {
+        count = buffer.readVarInt();
+        positions = new long[count];
+        pipes = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = buffer.readLong();
+            pipes[i] = buffer.readUnsignedMedium();
+        }
+    }
+
+    @Override
+    public void toBytes(final PacketBuffer buffer) {
+        buffer.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.writeLong(positions[i]);
+            buffer.writeMedium(pipes[i]);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package li.cil.tis3d.common.network.message;
+
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.common.tileentity.CasingTileEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+import javax.annotation.Nullable;
+
+/**
+ * Counters of the receiving pipes of a casing, for the port overlay, see
+ * {@link CasingTileEntity#setPipeStatsClient(int[], int)}.
+ */
+public final class PipeStatsMessage extends AbstractMessageWithPosition {
+    @Nullable
+    private int[] stats;
+    private int windowSteps;
+
+    public PipeStatsMessage(final BlockPos position, @Nullable final int[] stats, final int windowSteps) {
+        super(position);
+        this.stats = stats;
+        this.windowSteps = windowSteps;
+    }
+
+    @SuppressWarnings("unused") // For deserialization.
+    public PipeStatsMessage(final PacketBuffer buffer) {
+        super(buffer);
+    }
+
+    // --------------------------------------------------------------------- //
+    // AbstractMessage
+
+    @Override
+    protected void handleMessage(final NetworkEvent.Context context) {
+        final World world = getClientWorld();
+        if (world != null) {
+            withTileEntity(world, CasingTileEntity.class, casing ->
+                casing.setPipeStatsClient(stats, windowSteps));
+        }
+    }
+
+    @Override
+    public void fromBytes(final PacketBuffer buffer) {
+        super.fromBytes(buffer);
+
+        windowSteps = buffer.readVarInt();
+        if (buffer.readBoolean()) {
+            stats = new int[PipeTopology.PIPE_COUNT * CasingTileEntity.PIPE_STATS_COUNT];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = buffer.readVarInt();
+            }
+        } else {
+            stats = null;
+        }
+    }
+
+    @Override
+    public void toBytes(final PacketBuffer buffer) {
+        super.toBytes(buffer);
+
+        buffer.writeVarInt(windowSteps);
+        buffer.writeBoolean(stats != null);
+        if (stats != null) {
+            for (final int value : stats) {
+                buffer.writeVarInt(value);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ public final class ModuleProviders {
 
     public static void initialize() {
         register(Items.AUDIO_MODULE, AudioModule::new);
+        register(Items.BRIDGE_MODULE, BridgeModule::new);
         register(Items.DISPLAY_MODULE, DisplayModule::new);
         register(Items.EXECUTION_MODULE, ExecutionModule::new);
         register(Items.FACADE_MODULE, FacadeModule::new);
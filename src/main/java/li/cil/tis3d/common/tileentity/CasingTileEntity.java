@@ -13,9 +13,15 @@ import li.cil.tis3d.common.inventory.CasingInventory;
 import li.cil.tis3d.common.inventory.SidedInventoryProxy;
 import li.cil.tis3d.common.machine.CasingImpl;
 import li.cil.tis3d.common.machine.CasingProxy;
+import li.cil.tis3d.common.machine.LockedPipe;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.PipeStats;
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.common.machine.TraceRecorder;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.CasingEnabledStateMessage;
 import li.cil.tis3d.common.network.message.CasingLockedStateMessage;
+import li.cil.tis3d.common.network.message.PipeStatsMessage;
 import li.cil.tis3d.common.network.message.ReceivingPipeLockedStateMessage;
 import li.cil.tis3d.common.provider.RedstoneInputProviders;
 import li.cil.tis3d.util.InventoryUtils;
@@ -77,10 +83,27 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
     private static final String TAG_INVENTORY = "inventory";
     private static final String TAG_LOCKED = "locked";
 
+    /**
+     * Number of counters per receiving pipe sent to clients while counting,
+     * and their offsets, see {@link #setPipeStatsClient(int[], int)}.
+     */
+    public static final int PIPE_STATS_COUNT = 3;
+    public static final int PIPE_STATS_TRANSFERS = 0;
+    public static final int PIPE_STATS_WRITE_STALLS = 1;
+    public static final int PIPE_STATS_READ_STALLS = 2;
+
     private ControllerTileEntity controller;
     private boolean isEnabled;
     private boolean redstoneDirty = true;
 
+    /**
+     * Client side counters of the receiving pipes of this casing, while the
+     * multi-block's pipes are counted, and the number of steps they cover.
+     */
+    @Nullable
+    private int[] pipeStats;
+    private int pipeStatsWindow;
+
     // --------------------------------------------------------------------- //
 
     public CasingTileEntity() {
@@ -102,6 +125,22 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
      */
     public void markRedstoneDirty() {
         redstoneDirty = true;
+        if (getController() != null) {
+            getController().markRedstoneDirty(this);
+        }
+    }
+
+    /**
+     * Mark the casing as changed, so that it will be saved. While the casing
+     * is part of a multi-block, this is passed on to the world once per tick
+     * by the controller, since modules may change many times per tick.
+     */
+    public void markChanged() {
+        if (getController() != null) {
+            getController().markChanged(this);
+        } else {
+            setChanged();
+        }
     }
 
     /**
@@ -120,6 +159,10 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         if (isReceivingPipeLocked(face, port) != value) {
             getReceivingPipe(face, port).cancelRead();
             locked[face.ordinal()][port.ordinal()] = value;
+            casing.resumeModules();
+            if (getController() != null) {
+                getController().onModulesChanged();
+            }
             sendReceivingPipeLockedState(face, port);
         }
     }
@@ -158,7 +201,14 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
     }
 
     public void setController(@Nullable final ControllerTileEntity controller) {
+        if (controller != this.controller) {
+            // Counters are tied to the multi-block, its controller adds new ones if counting.
+            getPipeStates().setStats(null);
+        }
         this.controller = controller;
+        if (controller != null && redstoneDirty) {
+            controller.markRedstoneDirty(this);
+        }
     }
 
     public void scheduleScan() {
@@ -168,6 +218,16 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         if (getController() != null) {
             getController().scheduleScan();
         } else {
+            // If a neighbor is part of a multi-block, we can simply be added
+            // to that one, without searching for its controller.
+            for (final Face face : Face.VALUES) {
+                final ComputerTileEntity neighbor = getNeighbor(face);
+                if (neighbor instanceof CasingTileEntity && ((CasingTileEntity) neighbor).getController() != null) {
+                    ((CasingTileEntity) neighbor).getController().scheduleUpdate(neighbor);
+                    return;
+                }
+            }
+
             // If we don't have a controller there either isn't one, or
             // the controller is in an error state. In the latter case we
             // have ot actively look for a controller and notify it.
@@ -178,8 +238,25 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         }
     }
 
+    @Nullable
+    @Override
+    TraceRecorder getTraceRecorder() {
+        return getController() != null ? getController().getTraceRecorder() : null;
+    }
+
     public void setModule(final Face face, @Nullable final Module module) {
+        // Changed modules cannot be reproduced from the trace's keyframe.
+        final TraceRecorder traceRecorder = getTraceRecorder();
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+        }
+
         casing.setModule(face, module);
+
+        // Modules may now be connected differently.
+        if (getController() != null) {
+            getController().onModulesChanged();
+        }
     }
 
     public void lock(final ItemStack stack) {
@@ -242,9 +319,37 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         casing.stepModules();
     }
 
+    boolean hasModules() {
+        return casing.hasModules();
+    }
+
+    boolean isConcurrent() {
+        return casing.isConcurrent();
+    }
+
+    @Override
+    void rebuildOverrides() {
+        super.rebuildOverrides();
+
+        // Modules may be waiting on pipes that are no longer connected to them.
+        casing.resumeModules();
+    }
+
     // --------------------------------------------------------------------- //
     // PipeHost
 
+    @Override
+    protected void onNeighborChanged() {
+        if (getBlockEntityWorld().isClientSide()) {
+            return;
+        }
+        if (getController() != null) {
+            getController().scheduleUpdate(this);
+        } else {
+            scheduleScan();
+        }
+    }
+
     @Override
     protected void setNeighbor(final Face face, @Nullable final ComputerTileEntity neighbor) {
         super.setNeighbor(face, neighbor);
@@ -323,7 +428,11 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
             onDisabled();
         }
 
-        dispose();
+        // Let the controller check whether this split the multi-block.
+        if (getController() != null) {
+            getController().scheduleRemoval(this);
+        }
+        casing.onDisposed();
     }
 
     @Override
@@ -478,6 +587,72 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         locked[face.ordinal()][port.ordinal()] = value;
     }
 
+    /**
+     * Used for synchronizing state between server and client, letting the
+     * client know the counters of the receiving pipes, for overlay rendering.
+     *
+     * @param stats       the counters, {@link #PIPE_STATS_COUNT} per receiving pipe,
+     *                    indexed like {@link #getPipes()}, or <code>null</code> if not counting.
+     * @param windowSteps the number of steps the counters cover.
+     */
+    @OnlyIn(Dist.CLIENT)
+    public void setPipeStatsClient(@Nullable final int[] stats, final int windowSteps) {
+        pipeStats = stats;
+        pipeStatsWindow = windowSteps;
+    }
+
+    /**
+     * The counters of the receiving pipes, see {@link #setPipeStatsClient(int[], int)}.
+     *
+     * @return the counters, or <code>null</code> if not counting.
+     */
+    @OnlyIn(Dist.CLIENT)
+    @Nullable
+    public int[] getPipeStatsClient() {
+        return pipeStats;
+    }
+
+    /**
+     * The number of steps the counters of the receiving pipes cover.
+     *
+     * @return the number of steps.
+     */
+    @OnlyIn(Dist.CLIENT)
+    public int getPipeStatsWindowClient() {
+        return pipeStatsWindow;
+    }
+
+    /**
+     * Send the counters of the pipes modules in this casing receive from to
+     * nearby clients, or clear them. These may be pipes of neighboring casings.
+     *
+     * @param isCounting whether the multi-block's pipes are being counted.
+     */
+    void sendPipeStats(final boolean isCounting) {
+        int[] stats = null;
+        int windowSteps = 0;
+        final PipeStats ownStats = getPipeStates().getStats();
+        if (isCounting && ownStats != null) {
+            stats = new int[PipeTopology.PIPE_COUNT * PIPE_STATS_COUNT];
+            for (final Face face : Face.VALUES) {
+                for (final Port port : Port.VALUES) {
+                    final Pipe pipe = getReceivingPipe(face, port);
+                    if (pipe instanceof PipeImpl) {
+                        final PipeImpl pipeImpl = (PipeImpl) pipe;
+                        final int offset = PipeTopology.pack(face, port) * PIPE_STATS_COUNT;
+                        stats[offset + PIPE_STATS_TRANSFERS] = pipeImpl.getTransfers();
+                        stats[offset + PIPE_STATS_WRITE_STALLS] = pipeImpl.getWriteStalls();
+                        stats[offset + PIPE_STATS_READ_STALLS] = pipeImpl.getReadStalls();
+                    }
+                }
+            }
+            windowSteps = ownStats.getWindowSteps();
+        }
+
+        final PipeStatsMessage message = new PipeStatsMessage(getBlockPos(), stats, windowSteps);
+        Network.INSTANCE.send(Network.getTargetPoint(this, Network.RANGE_LOW), message);
+    }
+
     // --------------------------------------------------------------------- //
 
     @Nullable
@@ -592,53 +767,4 @@ public final class CasingTileEntity extends ComputerTileEntity implements SidedI
         }
         return compressed;
     }
-
-    // --------------------------------------------------------------------- //
-
-    /**
-     * A pipe that cannot be written to nor read from, effectively locking up
-     * blocking reads/writes. Used for locked ports. Since it is immutable, we
-     * can use one for all ports on all faces in all casings.
-     */
-    private static final class LockedPipe implements Pipe {
-        public static final Pipe INSTANCE = new LockedPipe();
-
-        @Override
-        public void beginWrite(final short value) throws IllegalStateException {
-            throw new IllegalStateException("Trying to write to a busy pipe. Check isWriting().");
-        }
-
-        @Override
-        public void cancelWrite() {
-        }
-
-        @Override
-        public boolean isWriting() {
-            return true;
-        }
-
-        @Override
-        public void beginRead() throws IllegalStateException {
-            throw new IllegalStateException("Trying to write to a busy pipe. Check isReading().");
-        }
-
-        @Override
-        public void cancelRead() {
-        }
-
-        @Override
-        public boolean isReading() {
-            return true;
-        }
-
-        @Override
-        public boolean canTransfer() {
-            return false;
-        }
-
-        @Override
-        public short read() throws IllegalStateException {
-            throw new IllegalStateException("No data to read. Check canTransfer().");
-        }
-    }
 }
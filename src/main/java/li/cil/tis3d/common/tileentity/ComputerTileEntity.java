@@ -3,8 +3,15 @@ package li.cil.tis3d.common.tileentity;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.ActivePipes;
 import li.cil.tis3d.common.machine.PipeHost;
 import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.PipeStates;
+import li.cil.tis3d.common.machine.PipeStats;
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.common.machine.TraceRecorder;
+import li.cil.tis3d.common.machine.WorldEffects;
+import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.WorldUtils;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
@@ -20,6 +27,9 @@ import net.minecraftforge.common.util.Constants;
 
 import javax.annotation.Nullable;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static li.cil.tis3d.common.machine.PipeTopology.*;
 
 public abstract class ComputerTileEntity extends TileEntity implements PipeHost {
     // --------------------------------------------------------------------- //
@@ -28,45 +38,37 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
     /**
      * The flat list of all {@link Pipe}s on this casing.
      * <p>
-     * Indexed by face and port using {@link #pack(Face, Port)}.
+     * Indexed by face and port using {@link PipeTopology#pack(Face, Port)}.
      */
-    private final PipeImpl[] pipes = new PipeImpl[Face.VALUES.length * Port.VALUES.length];
+    private final PipeImpl[] pipes = new PipeImpl[PipeTopology.PIPE_COUNT];
+
+    /**
+     * The packed state of all {@link #pipes}, indexed the same way.
+     */
+    private final PipeStates pipeStates = new PipeStates(PipeTopology.PIPE_COUNT);
 
     // --------------------------------------------------------------------- //
     // Computed data.
 
-    // Mapping for faces and ports around edges, i.e. to get the other side
-    // of an edge specified by a face and port.
-    private static final Face[][] FACE_MAPPING;
-    private static final Port[][] PORT_MAPPING;
-
-    static {
-        FACE_MAPPING = new Face[][]{
-            {Face.X_POS, Face.X_NEG, Face.Z_NEG, Face.Z_POS}, // Y_NEG
-            {Face.X_POS, Face.X_NEG, Face.Z_POS, Face.Z_NEG}, // Y_POS
-            {Face.X_POS, Face.X_NEG, Face.Y_POS, Face.Y_NEG}, // Z_NEG
-            {Face.X_NEG, Face.X_POS, Face.Y_POS, Face.Y_NEG}, // Z_POS
-            {Face.Z_NEG, Face.Z_POS, Face.Y_POS, Face.Y_NEG}, // X_NEG
-            {Face.Z_POS, Face.Z_NEG, Face.Y_POS, Face.Y_NEG}  // X_POS
-            //    LEFT        RIGHT       UP          DOWN
-        };
-        PORT_MAPPING = new Port[][]{
-            {Port.DOWN, Port.DOWN, Port.DOWN, Port.DOWN},     // Y_NEG
-            {Port.UP, Port.UP, Port.UP, Port.UP},             // Y_POS
-            {Port.RIGHT, Port.LEFT, Port.DOWN, Port.UP},      // Z_NEG
-            {Port.RIGHT, Port.LEFT, Port.UP, Port.DOWN},      // Z_POS
-            {Port.RIGHT, Port.LEFT, Port.RIGHT, Port.RIGHT},  // X_NEG
-            {Port.RIGHT, Port.LEFT, Port.LEFT, Port.LEFT}     // X_POS
-            //    LEFT        RIGHT       UP          DOWN
-        };
-    }
-
     // NBT tag names.
     private static final String TAG_PIPES = "pipes";
 
     private final ComputerTileEntity[] neighbors = new ComputerTileEntity[Face.VALUES.length];
     private final PipeImpl[] pipeOverride = new PipeImpl[pipes.length];
 
+    /**
+     * The pipes that transferred a value since transfer effects were last
+     * sent to clients, as a bit mask, see {@link #takeTransferredPipes()}.
+     * Atomic because pipes of a part may be stepped in different partitions.
+     */
+    private final AtomicInteger transferredPipes = new AtomicInteger();
+
+    /**
+     * Queues this part for sending transfer effects, issued on the first
+     * transfer after effects were last sent.
+     */
+    private final Runnable queuePipeEffect = () -> Network.sendPipeEffect(this);
+
     // --------------------------------------------------------------------- //
 
     protected ComputerTileEntity(final TileEntityType<?> type) {
@@ -75,7 +77,7 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
         for (final Face face : Face.VALUES) {
             for (final Port port : Port.VALUES) {
                 final int pipeIndex = pack(face, port);
-                pipeOverride[pipeIndex] = pipes[pipeIndex] = new PipeImpl(this, face, mapFace(face, port), mapPort(face, port));
+                pipeOverride[pipeIndex] = pipes[pipeIndex] = new PipeImpl(pipeStates, pipeIndex, this, face, mapFace(face, port), mapPort(face, port));
             }
         }
     }
@@ -85,24 +87,25 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
     }
 
     /**
-     * Advances the logic of all pipes by calling {@link PipeImpl#step()} on them.
+     * The packed state of all pipes of this part, stepped by the controller
+     * via its {@link ActivePipes} worklist.
      * <p>
-     * This will advance pipes with both an active read and write operation to
+     * Stepping advances pipes with both an active read and write operation to
      * transferring mode, if they're not already in transferring mode.
      */
-    void stepPipes() {
-        for (final PipeImpl pipe : pipes) {
-            pipe.step();
-        }
+    PipeStates getPipeStates() {
+        return pipeStates;
     }
 
     /**
-     * Get the list of all pipes managed by this computer part.
+     * The counters of the pipes of this part, while the pipes of the
+     * multi-block it belongs to are being counted.
      *
-     * @return the list of pipes.
+     * @return the counters, or <code>null</code> if not counting.
      */
-    public Pipe[] getPipes() {
-        return pipes;
+    @Nullable
+    public PipeStats getPipeStats() {
+        return pipeStates.getStats();
     }
 
     /**
@@ -133,13 +136,44 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
     // PipeHost
 
     @Override
-    public World getPipeHostWorld() {
-        return getBlockEntityWorld();
+    public BlockPos getPipeHostPosition() {
+        return getBlockPos();
     }
 
     @Override
-    public BlockPos getPipeHostPosition() {
-        return getBlockPos();
+    public PipeImpl[] getPipes() {
+        return pipes;
+    }
+
+    @Override
+    public void onTransfer(final Face receivingFace, final Face sendingFace, final Port sendingPort, final short value) {
+        final TraceRecorder recorder = getTraceRecorder();
+        if (recorder != null) {
+            recorder.recordTransfer(this, sendingFace, sendingPort, value);
+        }
+
+        final int pipeMask = 1 << pack(receivingFace, sendingFace);
+        int pipes;
+        do {
+            pipes = transferredPipes.get();
+            if ((pipes & pipeMask) != 0) {
+                return;
+            }
+        } while (!transferredPipes.compareAndSet(pipes, pipes | pipeMask));
+
+        if (pipes == 0) {
+            WorldEffects.run(queuePipeEffect);
+        }
+    }
+
+    /**
+     * Get the pipes that transferred a value since this was last called, to
+     * send transfer effects to clients, and reset them.
+     *
+     * @return the pipes that transferred a value, as a bit mask indexed like {@link #getPipes()}.
+     */
+    public int takeTransferredPipes() {
+        return transferredPipes.getAndSet(0);
     }
 
     // --------------------------------------------------------------------- //
@@ -208,14 +242,28 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
         }
     }
 
-    protected abstract void scheduleScan();
+    /**
+     * Called when a neighbor of this computer part changed, i.e. when a part
+     * was added next to it or a neighboring part was removed, so that the
+     * multi-block it belongs to can be updated.
+     */
+    protected abstract void onNeighborChanged();
+
+    /**
+     * The recorder tracing the multi-block this computer part belongs to, if
+     * tracing is armed for it.
+     *
+     * @return the trace recorder, or <code>null</code> if tracing is not armed.
+     */
+    @Nullable
+    abstract TraceRecorder getTraceRecorder();
 
     protected void setNeighbor(final Face face, @Nullable final ComputerTileEntity neighbor) {
-        // If a neighbor changed, do a rescan in the controller.
+        // If a neighbor changed, let the controller update the multi-block.
         final ComputerTileEntity oldNeighbor = neighbors[face.ordinal()];
         if (neighbor != oldNeighbor) {
             neighbors[face.ordinal()] = neighbor;
-            scheduleScan();
+            onNeighborChanged();
         }
     }
 
@@ -259,6 +307,27 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
         return neighbors[face.ordinal()] != null;
     }
 
+    /**
+     * Whether any face of this computer part is not connected to another part.
+     * Only pipes of such parts are ever used, since pipe overrides only ever
+     * lead to pipes on open faces.
+     *
+     * @return <code>true</code> if the part has an open face; <code>false</code> otherwise.
+     */
+    boolean hasOpenFace() {
+        for (final ComputerTileEntity neighbor : neighbors) {
+            if (neighbor == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    ComputerTileEntity getNeighbor(final Face face) {
+        return neighbors[face.ordinal()];
+    }
+
     void rebuildOverrides() {
         // Reset to initial state before checking for inter-block connections.
         System.arraycopy(pipes, 0, pipeOverride, 0, pipes.length);
@@ -286,69 +355,6 @@ public abstract class ComputerTileEntity extends TileEntity implements PipeHost
 
     // --------------------------------------------------------------------- //
 
-    /**
-     * Get the the face on the other side of an edge.
-     *
-     * @param face the face defining the edge.
-     * @param port the port defining the edge.
-     * @return the face on the other side of the edge.
-     */
-    private static Face mapFace(final Face face, final Port port) {
-        return FACE_MAPPING[face.ordinal()][port.ordinal()];
-    }
-
-    /**
-     * Get the the port on the other side of an edge, relative to the face on
-     * the other side of the edge.
-     *
-     * @param face the face defining the edge.
-     * @param port the port defining the edge.
-     * @return the port on the other side of the edge.
-     */
-    private static Port mapPort(final Face face, final Port port) {
-        return PORT_MAPPING[face.ordinal()][port.ordinal()];
-    }
-
-    /**
-     * Convert a face-port tuple to a unique number.
-     *
-     * @param face the face to pack into the number.
-     * @param port the port to pack into the number.
-     * @return the compressed representation of the face-port tuple.
-     */
-    private static int pack(final Face face, final Port port) {
-        return face.ordinal() * Port.VALUES.length + port.ordinal();
-    }
-
-    /**
-     * Map a face-port tuple to the face-tuple representing its opposite (i.e.
-     * the face-port tuple defining the same edge but from the other side),
-     * then convert it to a unique number.
-     *
-     * @param face the face defining the edge to the face to pack.
-     * @param port the port defining the edge to the port to pack.
-     * @return the compressed representation of the mapped face-port tuple.
-     */
-    private static int packMapped(final Face face, final Port port) {
-        return mapFace(face, port).ordinal() * Port.VALUES.length + mapPort(face, port).ordinal();
-    }
-
-    /**
-     * Get the port opposite to the specified port in a casing opposite to the
-     * the specified facing. Used when connecting across multiple casings.
-     *
-     * @param face the face opposite to which to get the port for.
-     * @param port the port opposite to which to get the port for.
-     * @return the port opposite to the specified port on the specified face.
-     */
-    private static Port flipSide(final Face face, final Port port) {
-        if (face == Face.Y_NEG || face == Face.Y_POS) {
-            return (port == Port.UP || port == Port.DOWN) ? port.getOpposite() : port;
-        } else {
-            return (port == Port.LEFT || port == Port.RIGHT) ? port.getOpposite() : port;
-        }
-    }
-
     /**
      * Populates the {@link #pipeOverride} array for the specified computer's
      * face and port by traversing the computer multi-block until an open face
@@ -0,0 +1,188 @@
+package li.cil.tis3d.common.tileentity;
+
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.common.CommonConfig;
+import li.cil.tis3d.common.machine.WorldEffects;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Steps independent controllers in parallel, if enabled via {@link CommonConfig#controllerThreads}.
+ * <p>
+ * Instead of stepping right away, running controllers schedule their steps
+ * while ticking. At the end of the world tick, all scheduled controllers are
+ * stepped on a pool of worker threads. Multi-blocks share no pipes, so the only
+ * state they share is the world, which must not be accessed while stepping, and
+ * the links of bridge modules, which are lock-free, see {@link li.cil.tis3d.common.machine.BridgeChannels}.
+ * Effects on the world are collected per controller via {@link WorldEffects},
+ * and applied on the server thread afterwards, in the order the controllers
+ * ticked in.
+ * <p>
+ * Only multi-blocks consisting of {@link li.cil.tis3d.common.machine.ConcurrentModule}s
+ * are stepped in parallel, all others keep stepping on the server thread.
+ */
+public final class ControllerScheduler {
+    /**
+     * Controllers scheduled to be stepped at the end of the current world tick.
+     */
+    private static final List<Job> jobs = new ArrayList<>();
+
+    /**
+     * The pool controllers are stepped on, created when first needed. Only
+     * accessed on the server thread, see {@link #getPool(int)}.
+     */
+    @Nullable
+    private static ForkJoinPool pool;
+
+    // --------------------------------------------------------------------- //
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.addListener(ControllerScheduler::onWorldTick);
+    }
+
+    /**
+     * Schedule stepping the specified controller at the end of the current
+     * world tick, if it may be stepped in parallel with other controllers.
+     *
+     * @param controller the controller to step.
+     * @param steps      the number of steps to run.
+     * @param turbo      whether the steps are run in turbo mode.
+     * @return <code>true</code> if the controller was scheduled; <code>false</code> if it must step right away.
+     */
+    static boolean schedule(final ControllerTileEntity controller, final int steps, final boolean turbo) {
+        if (CommonConfig.controllerThreads < 1 || !controller.isConcurrent()) {
+            return false;
+        }
+
+        jobs.add(new Job(controller, steps, turbo));
+        return true;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void onWorldTick(final TickEvent.WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || !event.side.isServer() || jobs.isEmpty()) {
+            return;
+        }
+
+        final List<Job> scheduled = new ArrayList<>(jobs);
+        jobs.clear();
+
+        // The config may be reloaded at any time, so only read it once per tick.
+        final ForkJoinPool tickPool = getPool(CommonConfig.controllerThreads);
+        if (tickPool != null) {
+            tickPool.submit(() -> scheduled.parallelStream().forEach(job -> job.run(tickPool))).join();
+        } else {
+            // Disabled since the controllers were scheduled, step them serially.
+            scheduled.forEach(job -> job.run(null));
+        }
+
+        scheduled.forEach(Job::commit);
+    }
+
+    /**
+     * Get the pool controllers are stepped on, (re-)creating or shutting it down
+     * as necessary. Must only be called on the server thread, while no steps run
+     * on the pool.
+     *
+     * @param threads the number of threads to step controllers on.
+     * @return the pool controllers are stepped on, or <code>null</code> if they are stepped serially.
+     */
+    @Nullable
+    private static ForkJoinPool getPool(final int threads) {
+        if (pool != null && pool.getParallelism() != threads) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (pool == null && threads > 0) {
+            pool = new ForkJoinPool(threads, forkJoinPool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("TIS-3D Controller " + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Steps of a single controller scheduled for the current world tick.
+     */
+    private static final class Job {
+        private final ControllerTileEntity controller;
+        private final int steps;
+        private final boolean turbo;
+
+        /**
+         * Effects on the world issued while stepping, applied in {@link #commit()}.
+         */
+        private final List<Runnable> effects = new ArrayList<>();
+
+        /**
+         * Whether a module halted the multi-block while stepping.
+         */
+        private boolean halted;
+
+        private Job(final ControllerTileEntity controller, final int steps, final boolean turbo) {
+            this.controller = controller;
+            this.steps = steps;
+            this.turbo = turbo;
+        }
+
+        /**
+         * Step the controller, collecting its effects on the world. Runs on a
+         * worker thread of the specified pool, or on the server thread if none.
+         *
+         * @param pool the pool the controller is stepped on, to also step its modules on.
+         */
+        private void run(@Nullable final ForkJoinPool pool) {
+            if (!isValid()) {
+                return;
+            }
+
+            final List<Runnable> outer = WorldEffects.deferTo(effects);
+            try {
+                controller.step(steps, turbo, pool);
+            } catch (final HaltAndCatchFireException e) {
+                halted = true;
+            } finally {
+                WorldEffects.deferTo(outer);
+            }
+        }
+
+        /**
+         * Apply the effects collected while stepping. Runs on the server thread.
+         */
+        private void commit() {
+            effects.forEach(Runnable::run);
+
+            if (halted && isValid()) {
+                controller.haltAndCatchFire();
+            }
+
+            if (!controller.isRemoved()) {
+                controller.flushChangedCasings();
+            }
+        }
+
+        /**
+         * Whether the controller is still running, e.g. it may have been
+         * removed by a block ticking after it.
+         */
+        private boolean isValid() {
+            return !controller.isRemoved() && controller.getState() == ControllerTileEntity.ControllerState.RUNNING;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ControllerScheduler() {
+    }
+}
@@ -1,8 +1,15 @@
 package li.cil.tis3d.common.tileentity;
 
 import li.cil.tis3d.api.API;
+import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
 import li.cil.tis3d.common.CommonConfig;
+import li.cil.tis3d.common.machine.ActivePipes;
+import li.cil.tis3d.common.machine.ParallelModulePhase;
+import li.cil.tis3d.common.machine.PipeStates;
+import li.cil.tis3d.common.machine.PipeStats;
+import li.cil.tis3d.common.machine.PipeTopology;
+import li.cil.tis3d.common.machine.TraceRecorder;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.HaltAndCatchFireMessage;
 import li.cil.tis3d.util.WorldUtils;
@@ -15,15 +22,19 @@ import net.minecraft.util.Direction;
 import net.minecraft.util.SoundCategory;
 import net.minecraft.util.SoundEvents;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TranslationTextComponent;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.network.PacketDistributor;
 
+import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The controller tile entity.
@@ -44,6 +55,25 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
      */
     private static final int COOLDOWN_HCF = 60;
 
+    /**
+     * The power level at which the controller switches to turbo mode, if
+     * enabled via {@link CommonConfig#turboNanosPerTick}.
+     */
+    private static final int POWER_TURBO = 75;
+
+    /**
+     * Time in ticks to wait for all parts of a multi-block to be loaded when
+     * restoring it from its saved topology, before falling back to a scan.
+     */
+    private static final int WARM_START_TIMEOUT = 100;
+
+    /**
+     * The order casings are stepped in. Deterministic order of execution is
+     * important when modules write / read from multiple ports but only want
+     * to make the data available to the first [e.g. execution module's ANY target].
+     */
+    private static final Comparator<CasingTileEntity> CASING_ORDER = Comparator.comparing(CasingTileEntity::getPosition);
+
     /**
      * Possible states of a controller.
      */
@@ -107,7 +137,44 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
     /**
      * The list of casings managed by this controller.
      */
-    private final List<CasingTileEntity> casings = new ArrayList<>(CommonConfig.maxCasingsPerController);
+    private final List<CasingTileEntity> casings = new ArrayList<>();
+
+    /**
+     * The casings with modules, in the order they are stepped in. All other
+     * casings have no modules to step.
+     */
+    private final List<CasingTileEntity> moduleCasings = new ArrayList<>();
+
+    /**
+     * The pipes of the multi-block that are not idle, stepped after modules.
+     * Members are the casings with open faces, in the order they are stepped
+     * in, followed by the controller. Only pipes of casings with open faces
+     * are ever used, see {@link ComputerTileEntity#hasOpenFace()}, so all other
+     * casings, i.e. those inside of the multi-block, have no pipes to step.
+     */
+    private final ActivePipes activePipes = new ActivePipes();
+
+    /**
+     * Casings whose redstone input may have changed since it was last passed on to their modules.
+     */
+    private final Set<CasingTileEntity> redstoneCasings = new LinkedHashSet<>();
+
+    /**
+     * Casings marked as changed since changes were last passed on to the world,
+     * see {@link #markChanged(CasingTileEntity)}.
+     */
+    private final Set<CasingTileEntity> changedCasings = new LinkedHashSet<>();
+
+    /**
+     * Parts of the multi-block whose neighbors changed since the last update,
+     * see {@link #scheduleUpdate(ComputerTileEntity)}.
+     */
+    private final Set<ComputerTileEntity> changedParts = new LinkedHashSet<>();
+
+    /**
+     * Casings of the multi-block removed since the last update.
+     */
+    private final List<CasingTileEntity> removedCasings = new ArrayList<>();
 
     /**
      * The current state of the controller.
@@ -122,6 +189,8 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
     // NBT tag names.
     private static final String TAG_HCF_COOLDOWN = "hcfCooldown";
     private static final String TAG_STATE = "state";
+    private static final String TAG_CASINGS = "casings";
+    private static final String TAG_TOPOLOGY = "topology";
 
     /**
      * User scheduled a forced step for the next tick.
@@ -132,6 +201,63 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
      */
     private boolean forceStep;
 
+    /**
+     * Estimated duration of a single step in nanoseconds, used to determine
+     * the number of steps to run per tick in turbo mode. Zero if unknown.
+     */
+    private long nanosPerStep;
+
+    /**
+     * The recorder tracing execution of the multi-block, while tracing is armed.
+     */
+    @Nullable
+    private TraceRecorder traceRecorder;
+
+    /**
+     * Whether {@link #moduleCasings}, {@link #activePipes} and {@link #isConcurrent}
+     * must be rebuilt before they are used next.
+     */
+    private boolean isActiveCasingsDirty = true;
+
+    /**
+     * Whether all casings of the multi-block may be stepped concurrently, see {@link #isConcurrent()}.
+     */
+    private boolean isConcurrent;
+
+    /**
+     * Partitions of the modules for stepping them in parallel, see {@link #getModulePhase()}.
+     */
+    @Nullable
+    private ParallelModulePhase modulePhase;
+
+    /**
+     * Whether {@link #modulePhase} must be rebuilt before it is used next.
+     */
+    private boolean isModulePhaseDirty = true;
+
+    /**
+     * The number of partitions {@link #modulePhase} was built for.
+     */
+    private int modulePhasePartitions;
+
+    /**
+     * Number of steps performed since the last full second of game time.
+     */
+    private int stepCount;
+
+    /**
+     * Whether transfers and stalls of the pipes of the multi-block are being
+     * counted, see {@link #startPipeStats()}, and the number of steps performed
+     * since, which is the clock of the counters.
+     */
+    private boolean isCountingPipes;
+    private long pipeStatsSteps;
+
+    /**
+     * Number of steps performed in the last full second of game time.
+     */
+    private int stepsPerSecond;
+
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -140,6 +266,19 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
      */
     private int hcfCooldown = 0;
 
+    /**
+     * Positions of the casings of the multi-block when it was saved, in the
+     * order they are stepped in, while the multi-block has not been restored
+     * from them yet, see {@link #warmStart()}.
+     */
+    @Nullable
+    private long[] savedCasings;
+
+    /**
+     * Number of ticks spent waiting for parts to be loaded in {@link #warmStart()}.
+     */
+    private int warmStartTicks;
+
     // --------------------------------------------------------------------- //
 
     public ControllerTileEntity() {
@@ -155,6 +294,16 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         return state;
     }
 
+    /**
+     * Get the number of steps the controller performed in the last second of
+     * game time. Only tracked on the server.
+     *
+     * @return the achieved steps per second.
+     */
+    public int getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
     /**
      * Schedule a rescan for connected casings.
      * <p>
@@ -164,6 +313,58 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         state = ControllerState.SCANNING;
     }
 
+    /**
+     * Schedule an update of the multi-block in the next tick, because the
+     * neighbors of the specified part of the multi-block changed.
+     * <p>
+     * Unlike a rescan, this only looks at the surroundings of the changed
+     * parts, see {@link #update()}. If the controller is not operational, this
+     * schedules a rescan instead.
+     *
+     * @param part the part of the multi-block whose neighbors changed.
+     */
+    void scheduleUpdate(final ComputerTileEntity part) {
+        if (state == ControllerState.READY || state == ControllerState.RUNNING) {
+            changedParts.add(part);
+        } else {
+            scheduleScan();
+        }
+    }
+
+    /**
+     * Schedule an update of the multi-block in the next tick, because the
+     * specified casing of the multi-block was removed.
+     *
+     * @param casing the removed casing.
+     */
+    void scheduleRemoval(final CasingTileEntity casing) {
+        if (state == ControllerState.READY || state == ControllerState.RUNNING) {
+            removedCasings.add(casing);
+        } else {
+            scheduleScan();
+        }
+    }
+
+    /**
+     * Remember that the redstone input of the specified casing may have
+     * changed, to pass it on to its modules in the next step.
+     *
+     * @param casing the casing whose redstone input may have changed.
+     */
+    void markRedstoneDirty(final CasingTileEntity casing) {
+        redstoneCasings.add(casing);
+    }
+
+    /**
+     * Remember that the specified casing changed, to pass this on to the world
+     * once in this tick, see {@link #flushChangedCasings()}.
+     *
+     * @param casing the casing that changed.
+     */
+    void markChanged(final CasingTileEntity casing) {
+        changedCasings.add(casing);
+    }
+
     /**
      * If the controller is running, force at least one step in the next tick,
      * even if the controller is currently in the paused state. This will not
@@ -179,14 +380,133 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         }
     }
 
+    /**
+     * Start tracing execution of the multi-block, replacing the current trace,
+     * if any. Tracing requires the controller to be in an operational state,
+     * and the multi-block to be replayable, see {@link #isTraceReplayable()}.
+     * <p>
+     * Tracing stops when the multi-block is disabled, halts and catches fire or
+     * changes, since execution then cannot be reproduced from the trace anymore.
+     * The trace is kept until tracing is {@link #disarmTrace() disarmed}, though.
+     *
+     * @param capacity the maximum number of records to keep.
+     * @return <code>true</code> if tracing was started; <code>false</code> otherwise.
+     */
+    public boolean armTrace(final int capacity) {
+        if (state != ControllerState.READY && state != ControllerState.RUNNING) {
+            return false;
+        }
+        if (!isTraceReplayable()) {
+            return false;
+        }
+
+        traceRecorder = new TraceRecorder(casings, this, capacity);
+        return true;
+    }
+
+    /**
+     * Whether execution of the multi-block could be replayed from a trace,
+     * i.e. all its modules can be stepped without a world.
+     *
+     * @return <code>true</code> if the multi-block can be traced; <code>false</code> otherwise.
+     */
+    public boolean isTraceReplayable() {
+        return TraceRecorder.isReplayable(casings);
+    }
+
+    /**
+     * Stop tracing execution of the multi-block and discard the trace.
+     */
+    public void disarmTrace() {
+        traceRecorder = null;
+    }
+
+    /**
+     * Get the recorder tracing the multi-block, if tracing is armed.
+     *
+     * @return the trace recorder, or <code>null</code> if tracing is not armed.
+     */
+    @Nullable
+    @Override
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Start counting transfers and stalls of the pipes of the multi-block over
+     * a sliding window, see {@link PipeStats}, restarting counting if already
+     * counting. Counters are shown in the port overlay of casings, and require
+     * the controller to be in an operational state.
+     *
+     * @return <code>true</code> if counting was started; <code>false</code> otherwise.
+     */
+    public boolean startPipeStats() {
+        if (state != ControllerState.READY && state != ControllerState.RUNNING) {
+            return false;
+        }
+
+        isCountingPipes = true;
+        casings.forEach(casing -> casing.getPipeStates().setStats(null));
+        getPipeStates().setStats(null);
+        updatePipeStats();
+        return true;
+    }
+
+    /**
+     * Stop counting transfers and stalls of the pipes of the multi-block.
+     */
+    public void stopPipeStats() {
+        if (!isCountingPipes) {
+            return;
+        }
+
+        isCountingPipes = false;
+        updatePipeStats();
+    }
+
+    /**
+     * Whether transfers and stalls of the pipes of the multi-block are being counted.
+     *
+     * @return <code>true</code> if counting; <code>false</code> otherwise.
+     */
+    public boolean isCountingPipes() {
+        return isCountingPipes;
+    }
+
+    /**
+     * Get the casings of the multi-block, in the order they are stepped in.
+     *
+     * @return the casings of the multi-block.
+     */
+    public List<CasingTileEntity> getCasings() {
+        return Collections.unmodifiableList(casings);
+    }
+
+    /**
+     * Called when casings, modules or connections between them changed, to
+     * rebuild everything derived from them before the next step, such as the
+     * partitions of the modules for stepping them in parallel.
+     */
+    public void onModulesChanged() {
+        isActiveCasingsDirty = true;
+        isModulePhaseDirty = true;
+    }
+
     /**
      * Reset the controller, pause for a moment and catch fire.
      */
     public void haltAndCatchFire() {
         final World world = getBlockEntityWorld();
         if (!world.isClientSide()) {
+            stopTrace();
             state = ControllerState.READY;
             casings.forEach(CasingTileEntity::onDisabled);
+
+            // Queueing transfer effects may have been dropped with effects of modules
+            // after the halting one, so don't leave parts waiting for it.
+            casings.forEach(ComputerTileEntity::takeTransferredPipes);
+            takeTransferredPipes();
+
             final HaltAndCatchFireMessage message = new HaltAndCatchFireMessage(getBlockPos());
             final PacketDistributor.PacketTarget target = Network.getTargetPoint(this, Network.RANGE_MEDIUM);
             Network.INSTANCE.send(target, message);
@@ -216,6 +536,10 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
             casing.setController(null);
         }
         casings.clear();
+        changedParts.clear();
+        removedCasings.clear();
+        redstoneCasings.clear();
+        flushChangedCasings();
     }
 
     @Override
@@ -231,11 +555,27 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
     // --------------------------------------------------------------------- //
     // TileEntityComputer
 
+    @Override
+    protected void onNeighborChanged() {
+        if (!getBlockEntityWorld().isClientSide()) {
+            scheduleUpdate(this);
+        }
+    }
+
     @Override
     protected void readFromNBTForServer(final CompoundNBT nbt) {
         super.readFromNBTForServer(nbt);
 
         hcfCooldown = nbt.getInt(TAG_HCF_COOLDOWN);
+
+        // Only trust the topology if it was saved completely.
+        savedCasings = null;
+        if (nbt.contains(TAG_CASINGS, Constants.NBT.TAG_LONG_ARRAY)) {
+            final long[] positions = nbt.getLongArray(TAG_CASINGS);
+            if (nbt.getInt(TAG_TOPOLOGY) == computeTopologyHash(positions)) {
+                savedCasings = positions;
+            }
+        }
     }
 
     @Override
@@ -243,6 +583,17 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         super.writeToNBTForServer(nbt);
 
         nbt.putInt(TAG_HCF_COOLDOWN, hcfCooldown);
+
+        final long[] positions;
+        if (state == ControllerState.READY || state == ControllerState.RUNNING) {
+            positions = casings.stream().mapToLong(casing -> casing.getBlockPos().asLong()).toArray();
+        } else {
+            positions = savedCasings;
+        }
+        if (positions != null) {
+            nbt.putLongArray(TAG_CASINGS, positions);
+            nbt.putInt(TAG_TOPOLOGY, computeTopologyHash(positions));
+        }
     }
 
     @Override
@@ -294,6 +645,9 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
             return;
         }
 
+        // Pass on changes from outside of steps, e.g. from enabling casings.
+        flushChangedCasings();
+
         if (state != lastSentState) {
             final Chunk chunk = world.getChunkAt(getBlockPos());
             final BlockState blockState = world.getBlockState(getBlockPos());
@@ -301,15 +655,29 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
             lastSentState = state;
         }
 
+        // Update achieved speed once per second.
+        if (world.getGameTime() % 20 == 0) {
+            stepsPerSecond = stepCount;
+            stepCount = 0;
+
+            if (isCountingPipes) {
+                sendPipeStats();
+            }
+        }
+
         // Enforce cooldown after HCF event.
         if (hcfCooldown > 0) {
             --hcfCooldown;
             return;
         }
 
-        // Check if we need to rescan our multi-block structure.
+        // Check if we need to rescan our multi-block structure, or can update it in place.
         if (state == ControllerState.SCANNING) {
-            scan();
+            if (savedCasings == null || !warmStart()) {
+                scan();
+            }
+        } else if (!changedParts.isEmpty() || !removedCasings.isEmpty()) {
+            update();
         }
 
         // Stop if we're in an invalid state.
@@ -340,34 +708,45 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
             // Are we powered?
             if (!world.hasNeighborSignal(getBlockPos())) {
                 // Nope, fall back to ready state, disable modules.
+                stopTrace();
                 state = ControllerState.READY;
                 casings.forEach(CasingTileEntity::onDisabled);
             } else if (power > 1 || forceStep) {
-                // Operating, step all casings redstone input info once.
-                casings.forEach(CasingTileEntity::stepRedstone);
-
-                try {
-                    // 0 = off, we never have this or we'd be in the READY state.
-                    // 1 = paused, i.e. we don't lose state, but don't step.
-                    // [2-14] = step every 15-n-th step.
-                    // 15 = step every tick.
-                    // [16-75] = step n/15 times a tick.
-                    // 75 = step 5 times a tick.
-                    if (power < 15) {
-                        // Stepping slower than 100%.
-                        final int delay = 15 - power;
-                        if (world.getGameTime() % delay == 0 || forceStep) {
-                            step();
-                        }
-                    } else {
-                        // Stepping faster than 100%.
-                        final int steps = power / 15;
-                        for (int step = 0; step < steps; step++) {
-                            step();
-                        }
+                // Operating, pass on changed redstone input. This may change
+                // redstone input of other casings, which is picked up next tick.
+                if (!redstoneCasings.isEmpty()) {
+                    final List<CasingTileEntity> redstoneChanged = new ArrayList<>(redstoneCasings);
+                    redstoneCasings.clear();
+                    redstoneChanged.forEach(CasingTileEntity::stepRedstone);
+                }
+
+                // 0 = off, we never have this or we'd be in the READY state.
+                // 1 = paused, i.e. we don't lose state, but don't step.
+                // [2-14] = step every 15-n-th step.
+                // 15 = step every tick.
+                // [16-75] = step n/15 times a tick.
+                // [75-90] = in turbo mode, step as often as fits the time budget, but at least n/15 times a tick.
+                final boolean turbo = power >= POWER_TURBO && CommonConfig.turboNanosPerTick > 0;
+                final int steps;
+                if (turbo) {
+                    steps = getTurboSteps(power);
+                } else if (power < 15) {
+                    // Stepping slower than 100%.
+                    final int delay = 15 - power;
+                    steps = world.getGameTime() % delay == 0 || forceStep ? 1 : 0;
+                } else {
+                    // Stepping faster than 100%.
+                    steps = power / 15;
+                }
+
+                // Step right away, unless stepping in parallel with other controllers.
+                if (steps > 0 && !ControllerScheduler.schedule(this, steps, turbo)) {
+                    try {
+                        step(steps, turbo, null);
+                    } catch (final HaltAndCatchFireException e) {
+                        haltAndCatchFire();
                     }
-                } catch (final HaltAndCatchFireException e) {
-                    haltAndCatchFire();
+                    flushChangedCasings();
                 }
             }
 
@@ -437,6 +816,11 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         // when our neighbors change (e.g. duplicate controller removed).
         checkNeighbors();
 
+        // Pending updates and the saved topology are covered by the scan.
+        changedParts.clear();
+        removedCasings.clear();
+        savedCasings = null;
+
         final World world = getBlockEntityWorld();
 
         // List of processed tile entities to avoid loops.
@@ -444,7 +828,7 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         // List of pending tile entities that still need to be scanned.
         final Queue<TileEntity> queue = new ArrayDeque<>();
         // List of new found casings.
-        final List<CasingTileEntity> newCasings = new ArrayList<>(CommonConfig.maxCasingsPerController);
+        final List<CasingTileEntity> newCasings = new ArrayList<>();
 
         // Start at our location, keep going until there's nothing left to do.
         processed.add(this);
@@ -498,6 +882,7 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
 
         // Replace old list of casings with the new found ones, now that we're
         // sure we don't have to disable our old ones.
+        stopTrace();
         casings.clear();
         casings.addAll(newCasings);
         casings.forEach(c -> c.setController(this));
@@ -506,16 +891,359 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         casings.forEach(CasingTileEntity::checkNeighbors);
         casings.forEach(ComputerTileEntity::rebuildOverrides);
         rebuildOverrides();
+        redstoneCasings.removeIf(casing -> casing.getController() != this);
+        onModulesChanged();
 
-        // Sort casings for deterministic order of execution (important when modules
-        // write / read from multiple ports but only want to make the data available
-        // to the first [e.g. execution module's ANY target]).
-        casings.sort(Comparator.comparing(CasingTileEntity::getPosition));
+        // Sort casings for deterministic order of execution.
+        casings.sort(CASING_ORDER);
 
         // All done. Make sure this comes after the checkNeighbors or we get CMEs!
         state = ControllerState.READY;
     }
 
+    /**
+     * Restore the multi-block from the positions of its casings saved with the
+     * controller, instead of scanning for them, e.g. after being loaded.
+     * <p>
+     * Unlike a scan, this does not search for casings, and does not sort them,
+     * it only checks that the saved casings are still there, and that there
+     * are no other parts next to them, which would have to be part of the
+     * multi-block. Neighbors within the multi-block are known from the saved
+     * positions, so only open faces are looked up in the world. Parts may be
+     * loaded after the controller, so instead of failing while they are not,
+     * this waits for them for a while.
+     * <p>
+     * If anything does not match the saved topology, it is discarded, and
+     * the multi-block has to be scanned.
+     *
+     * @return <code>true</code> if the multi-block was restored or is waiting for parts to load;
+     * <code>false</code> if it has to be scanned.
+     */
+    private boolean warmStart() {
+        final World world = getBlockEntityWorld();
+        final long[] positions = Objects.requireNonNull(savedCasings);
+
+        // The limit may have been lowered since saving, leave it to the scan to report.
+        if (positions.length + 1 > CommonConfig.maxCasingsPerController) {
+            savedCasings = null;
+            return false;
+        }
+
+        final Map<BlockPos, ComputerTileEntity> parts = new HashMap<>();
+        parts.put(getBlockPos(), this);
+        final List<CasingTileEntity> newCasings = new ArrayList<>(positions.length);
+        for (final long packedPosition : positions) {
+            final BlockPos position = BlockPos.of(packedPosition);
+            if (!WorldUtils.isLoaded(world, position)) {
+                return waitForWarmStart();
+            }
+
+            final TileEntity tileEntity = world.getBlockEntity(position);
+            if (!(tileEntity instanceof CasingTileEntity) || !tileEntity.hasLevel() || parts.containsKey(position)) {
+                savedCasings = null;
+                return false;
+            }
+
+            final CasingTileEntity casing = (CasingTileEntity) tileEntity;
+            if (casing.getController() != null && casing.getController() != this) {
+                savedCasings = null;
+                return false;
+            }
+
+            parts.put(position, casing);
+            newCasings.add(casing);
+        }
+
+        // Find neighbors before changing anything, in case we have to bail.
+        final Map<ComputerTileEntity, ComputerTileEntity[]> neighbors = new LinkedHashMap<>();
+        for (final ComputerTileEntity part : parts.values()) {
+            final ComputerTileEntity[] partNeighbors = new ComputerTileEntity[Face.VALUES.length];
+            for (final Face face : Face.VALUES) {
+                final BlockPos neighborPos = part.getBlockPos().relative(Face.toDirection(face));
+                final ComputerTileEntity neighbor = parts.get(neighborPos);
+                if (neighbor != null) {
+                    partNeighbors[face.ordinal()] = neighbor;
+                    continue;
+                }
+
+                // Open face, make sure nothing was added here.
+                if (!WorldUtils.isLoaded(world, neighborPos)) {
+                    return waitForWarmStart();
+                }
+                if (world.getBlockEntity(neighborPos) instanceof ComputerTileEntity) {
+                    savedCasings = null;
+                    return false;
+                }
+            }
+            neighbors.put(part, partNeighbors);
+        }
+
+        savedCasings = null;
+        warmStartTicks = 0;
+
+        casings.clear();
+        casings.addAll(newCasings);
+        casings.forEach(c -> c.setController(this));
+
+        neighbors.forEach((part, partNeighbors) -> {
+            for (final Face face : Face.VALUES) {
+                part.setNeighbor(face, partNeighbors[face.ordinal()]);
+            }
+        });
+        casings.forEach(ComputerTileEntity::rebuildOverrides);
+        rebuildOverrides();
+        redstoneCasings.removeIf(casing -> casing.getController() != this);
+        onModulesChanged();
+
+        state = ControllerState.READY;
+        return true;
+    }
+
+    /**
+     * Keep waiting for parts of the multi-block to be loaded in {@link #warmStart()},
+     * unless we have been waiting for too long already.
+     *
+     * @return <code>true</code> to keep waiting; <code>false</code> to scan instead.
+     */
+    private boolean waitForWarmStart() {
+        if (++warmStartTicks < WARM_START_TIMEOUT) {
+            return true;
+        }
+
+        savedCasings = null;
+        warmStartTicks = 0;
+        return false;
+    }
+
+    /**
+     * Compute the hash stored with the saved positions of the casings of the
+     * multi-block, to detect incomplete or otherwise invalid topology data.
+     *
+     * @param positions the packed positions of the casings.
+     * @return the hash of the topology.
+     */
+    private int computeTopologyHash(final long[] positions) {
+        return 31 * Long.hashCode(getBlockPos().asLong()) + Arrays.hashCode(positions);
+    }
+
+    /**
+     * Update the multi-block for parts added and removed since the last tick,
+     * without scanning the whole multi-block.
+     * <p>
+     * Added casings are found by searching from the parts whose neighbors
+     * changed, visiting only casings that are not part of the multi-block yet.
+     * Removing a casing may split the multi-block, which is ruled out by
+     * checking that its remaining neighbors are still connected to each other
+     * around it, see {@link #isConnectedAround(World, BlockPos)}. If that is not
+     * the case, or anything else out of the ordinary is found, such as another
+     * controller, this falls back to a rescan in the next tick.
+     * <p>
+     * Pipe overrides of a part only depend on the parts directly around it,
+     * so only the overrides of parts around a change are rebuilt.
+     */
+    private void update() {
+        final World world = getBlockEntityWorld();
+
+        final List<ComputerTileEntity> changed = new ArrayList<>(changedParts);
+        final List<CasingTileEntity> removed = new ArrayList<>(removedCasings);
+        changedParts.clear();
+        removedCasings.clear();
+
+        // Check for splits. This only holds for removed casings that were not
+        // adjacent to each other, otherwise their neighbors may only have been
+        // connected through each other.
+        for (int i = 0; i < removed.size(); i++) {
+            final BlockPos position = removed.get(i).getBlockPos();
+            for (int j = i + 1; j < removed.size(); j++) {
+                if (removed.get(j).getBlockPos().distManhattan(position) <= 1) {
+                    scheduleScan();
+                    return;
+                }
+            }
+            if (!isConnectedAround(world, position)) {
+                scheduleScan();
+                return;
+            }
+        }
+
+        // Search for casings that were added next to changed parts.
+        final Set<TileEntity> processed = new HashSet<>();
+        final Queue<TileEntity> queue = new ArrayDeque<>();
+        for (final ComputerTileEntity part : changed) {
+            if (!part.isRemoved() && isPart(part) && !addNewNeighbors(world, part, processed, queue)) {
+                scheduleScan();
+                return;
+            }
+        }
+
+        final List<CasingTileEntity> added = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            final TileEntity tileEntity = queue.remove();
+
+            // Other controllers, be it directly or via their casings, and too
+            // many casings are errors, leave it to the scan to report them.
+            if (tileEntity instanceof ControllerTileEntity ||
+                ((CasingTileEntity) tileEntity).getController() != null ||
+                casings.size() + added.size() + 1 > CommonConfig.maxCasingsPerController) {
+                scheduleScan();
+                return;
+            }
+
+            final CasingTileEntity casing = (CasingTileEntity) tileEntity;
+            if (!casing.hasLevel() || !addNewNeighbors(world, casing, processed, queue)) {
+                scheduleScan();
+                return;
+            }
+            added.add(casing);
+        }
+
+        // Changes cannot be reproduced from the trace's keyframe.
+        stopTrace();
+
+        for (final CasingTileEntity casing : removed) {
+            if (casings.remove(casing)) {
+                casing.setController(null);
+                redstoneCasings.remove(casing);
+            }
+        }
+
+        for (final CasingTileEntity casing : added) {
+            final int index = Collections.binarySearch(casings, casing, CASING_ORDER);
+            casings.add(index < 0 ? -index - 1 : index, casing);
+            casing.setController(this);
+            if (state == ControllerState.RUNNING) {
+                casing.onEnabled();
+            }
+        }
+        added.forEach(CasingTileEntity::checkNeighbors);
+
+        // Rebuild overrides of all parts around changes.
+        final Set<ComputerTileEntity> affected = new LinkedHashSet<>();
+        changed.forEach(part -> collectPartsAround(world, part.getBlockPos(), affected));
+        removed.forEach(casing -> collectPartsAround(world, casing.getBlockPos(), affected));
+        added.forEach(casing -> collectPartsAround(world, casing.getBlockPos(), affected));
+        affected.forEach(ComputerTileEntity::rebuildOverrides);
+        onModulesChanged();
+
+        // Neighbors of added casings were just checked, nothing left to update.
+        changedParts.clear();
+    }
+
+    /**
+     * Whether the specified tile entity is this controller or one of its casings.
+     *
+     * @param tileEntity the tile entity to check.
+     * @return <code>true</code> if the tile entity is part of the multi-block; <code>false</code> otherwise.
+     */
+    private boolean isPart(@Nullable final TileEntity tileEntity) {
+        return tileEntity == this || (tileEntity instanceof CasingTileEntity && ((CasingTileEntity) tileEntity).getController() == this);
+    }
+
+    /**
+     * Like {@link #addNeighbors(World, TileEntity, Set, Queue)}, but skips
+     * parts of the multi-block.
+     *
+     * @param world      the world we're scanning for tile entities in.
+     * @param tileEntity the tile entity to get the neighbors for.
+     * @param processed  the list of processed tile entities.
+     * @param queue      the list of pending tile entities.
+     * @return <tt>true</tt> if all neighbors could be checked, <tt>false</tt> otherwise.
+     */
+    private boolean addNewNeighbors(final World world, final TileEntity tileEntity, final Set<TileEntity> processed, final Queue<TileEntity> queue) {
+        for (final Direction facing : Direction.values()) {
+            final BlockPos neighborPos = tileEntity.getBlockPos().relative(facing);
+            if (!WorldUtils.isLoaded(world, neighborPos)) {
+                return false;
+            }
+
+            final TileEntity neighborTileEntity = world.getBlockEntity(neighborPos);
+            if (neighborTileEntity == null || isPart(neighborTileEntity)) {
+                continue;
+            }
+            if (!processed.add(neighborTileEntity)) {
+                continue;
+            }
+            if (neighborTileEntity instanceof ControllerTileEntity || neighborTileEntity instanceof CasingTileEntity) {
+                queue.add(neighborTileEntity);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the parts of the multi-block next to the specified
+     * position are connected to each other via parts of the multi-block in
+     * the 3x3x3 area centered on the position, not counting the center.
+     * <p>
+     * If so, removing a casing at that position did not split the multi-block.
+     * If not, it may have, and only a scan can tell. Typically, the area is
+     * either filled with casings, or the casing was at the end of a line.
+     *
+     * @param world  the world the multi-block is in.
+     * @param center the position of the removed casing.
+     * @return <code>true</code> if the neighbors are connected; <code>false</code> if they may not be.
+     */
+    private boolean isConnectedAround(final World world, final BlockPos center) {
+        final List<BlockPos> neighbors = new ArrayList<>();
+        for (final Direction facing : Direction.values()) {
+            final BlockPos neighborPos = center.relative(facing);
+            if (!WorldUtils.isLoaded(world, neighborPos)) {
+                return false;
+            }
+            if (isPart(world.getBlockEntity(neighborPos))) {
+                neighbors.add(neighborPos);
+            }
+        }
+        if (neighbors.size() < 2) {
+            return true;
+        }
+
+        final Set<BlockPos> reached = new HashSet<>();
+        final Queue<BlockPos> queue = new ArrayDeque<>();
+        reached.add(neighbors.get(0));
+        queue.add(neighbors.get(0));
+        while (!queue.isEmpty()) {
+            final BlockPos position = queue.remove();
+            for (final Direction facing : Direction.values()) {
+                final BlockPos neighborPos = position.relative(facing);
+                if (neighborPos.equals(center) ||
+                    Math.abs(neighborPos.getX() - center.getX()) > 1 ||
+                    Math.abs(neighborPos.getY() - center.getY()) > 1 ||
+                    Math.abs(neighborPos.getZ() - center.getZ()) > 1) {
+                    continue;
+                }
+                if (reached.contains(neighborPos) || !WorldUtils.isLoaded(world, neighborPos)) {
+                    continue;
+                }
+                if (isPart(world.getBlockEntity(neighborPos))) {
+                    reached.add(neighborPos);
+                    queue.add(neighborPos);
+                }
+            }
+        }
+        return reached.containsAll(neighbors);
+    }
+
+    /**
+     * Add all parts of the multi-block in the 3x3x3 area centered on the
+     * specified position to the specified set.
+     *
+     * @param world  the world the multi-block is in.
+     * @param center the center of the area.
+     * @param parts  the set to add the parts to.
+     */
+    private void collectPartsAround(final World world, final BlockPos center, final Set<ComputerTileEntity> parts) {
+        for (final BlockPos position : BlockPos.betweenClosed(center.offset(-1, -1, -1), center.offset(1, 1, 1))) {
+            if (!WorldUtils.isLoaded(world, position)) {
+                continue;
+            }
+            final TileEntity tileEntity = world.getBlockEntity(position);
+            if (isPart(tileEntity)) {
+                parts.add((ComputerTileEntity) tileEntity);
+            }
+        }
+    }
+
     /**
      * Compute the <em>accumulative</em> redstone power applied to the controller.
      *
@@ -531,13 +1259,213 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
         return acc;
     }
 
+    /**
+     * Whether all casings of the multi-block may be stepped concurrently with
+     * other multi-blocks, see {@link ControllerScheduler}.
+     *
+     * @return <code>true</code> if the multi-block may be stepped concurrently; <code>false</code> otherwise.
+     */
+    boolean isConcurrent() {
+        updateActiveCasings();
+        return isConcurrent;
+    }
+
+    /**
+     * Pass on changes to casings marked as changed while stepping to the world.
+     * <p>
+     * Like {@link TileEntity#setChanged()}, but only once per casing and tick,
+     * and marking each chunk as unsaved only once, instead of once per casing.
+     */
+    void flushChangedCasings() {
+        if (changedCasings.isEmpty()) {
+            return;
+        }
+
+        final World world = getBlockEntityWorld();
+        final Set<Long> chunks = new HashSet<>();
+        for (final CasingTileEntity casing : changedCasings) {
+            if (casing.isRemoved()) {
+                continue;
+            }
+
+            final BlockPos position = casing.getBlockPos();
+            if (chunks.add(ChunkPos.asLong(position.getX() >> 4, position.getZ() >> 4))) {
+                world.getChunkAt(position).markUnsaved();
+            }
+
+            // Comparators read the state of casings.
+            world.updateNeighbourForOutputSignal(position, casing.getBlockState().getBlock());
+        }
+        changedCasings.clear();
+    }
+
+    /**
+     * Advance all computer parts by the specified number of steps.
+     * <p>
+     * In turbo mode, the duration of the steps is measured, to adjust the
+     * number of steps to run in following ticks, see {@link #getTurboSteps(int)}.
+     * Steps are not timed individually to keep the overhead low.
+     *
+     * @param steps the number of steps to run.
+     * @param turbo whether the steps are run in turbo mode.
+     * @param pool  the pool to step modules on in parallel, or <code>null</code> to step them serially.
+     * @throws HaltAndCatchFireException if a module halted the multi-block.
+     */
+    void step(final int steps, final boolean turbo, @Nullable final ForkJoinPool pool) {
+        final long start = turbo ? System.nanoTime() : 0;
+        for (int step = 0; step < steps; step++) {
+            step(pool);
+        }
+
+        if (turbo) {
+            final long measured = Math.max(1, (System.nanoTime() - start) / steps);
+
+            // Smooth out outliers, e.g. from garbage collection.
+            nanosPerStep = nanosPerStep > 0 ? (3 * nanosPerStep + measured) / 4 : measured;
+        }
+    }
+
     /**
      * Advance all computer parts by one step.
+     *
+     * @param pool the pool to step modules on in parallel, or <code>null</code> to step them serially.
+     */
+    private void step(@Nullable final ForkJoinPool pool) {
+        updateActiveCasings();
+
+        final ParallelModulePhase phase = pool != null ? getModulePhase() : null;
+        if (phase != null) {
+            phase.step(pool);
+        } else {
+            moduleCasings.forEach(CasingTileEntity::stepModules);
+        }
+        activePipes.step();
+        stepCount++;
+        pipeStatsSteps++;
+
+        if (traceRecorder != null) {
+            traceRecorder.finishStep();
+        }
+    }
+
+    /**
+     * Get the partitions of the modules for stepping them in parallel, if
+     * enabled via {@link CommonConfig#modulePartitions}, rebuilding them if
+     * necessary.
+     * <p>
+     * Transfers are traced in the order they happen, which only matches the
+     * serial order when stepping serially, so tracing disables this.
+     *
+     * @return the partitions, or <code>null</code> if modules must be stepped serially.
      */
-    private void step() {
-        casings.forEach(CasingTileEntity::stepModules);
-        casings.forEach(CasingTileEntity::stepPipes);
-        stepPipes();
+    @Nullable
+    private ParallelModulePhase getModulePhase() {
+        final int partitions = CommonConfig.modulePartitions;
+        if (traceRecorder != null || partitions < 2) {
+            return null;
+        }
+
+        if (isModulePhaseDirty || modulePhasePartitions != partitions) {
+            isModulePhaseDirty = false;
+            modulePhasePartitions = partitions;
+            modulePhase = isConcurrent() ? ParallelModulePhase.create(moduleCasings, modulePhasePartitions) : null;
+        }
+        return modulePhase;
+    }
+
+    /**
+     * Rebuild the lists of casings that need stepping, if necessary.
+     */
+    private void updateActiveCasings() {
+        if (!isActiveCasingsDirty) {
+            return;
+        }
+        isActiveCasingsDirty = false;
+
+        moduleCasings.clear();
+        final List<PipeStates> pipeStates = new ArrayList<>();
+        isConcurrent = true;
+        for (final CasingTileEntity casing : casings) {
+            if (casing.hasModules()) {
+                moduleCasings.add(casing);
+            }
+            if (casing.hasOpenFace()) {
+                pipeStates.add(casing.getPipeStates());
+            }
+            isConcurrent = isConcurrent && casing.isConcurrent();
+        }
+        pipeStates.add(getPipeStates());
+        activePipes.setMembers(pipeStates);
+
+        if (isCountingPipes) {
+            updatePipeStats();
+        }
+    }
+
+    /**
+     * Start or stop counting on all parts of the multi-block, depending on
+     * whether pipes are being counted, e.g. after parts were added. Clears
+     * counters on clients when stopping.
+     */
+    private void updatePipeStats() {
+        for (final CasingTileEntity casing : casings) {
+            updatePipeStats(casing);
+        }
+        updatePipeStats(this);
+
+        if (!isCountingPipes) {
+            for (final CasingTileEntity casing : casings) {
+                if (casing.hasOpenFace()) {
+                    casing.sendPipeStats(false);
+                }
+            }
+        }
+    }
+
+    private void updatePipeStats(final ComputerTileEntity part) {
+        final PipeStates pipeStates = part.getPipeStates();
+        if (!isCountingPipes) {
+            pipeStates.setStats(null);
+        } else if (pipeStates.getStats() == null) {
+            pipeStates.setStats(new PipeStats(PipeTopology.PIPE_COUNT, () -> pipeStatsSteps));
+        }
+    }
+
+    /**
+     * Send the counters of the pipes to clients, for the port overlay.
+     */
+    private void sendPipeStats() {
+        for (final CasingTileEntity casing : casings) {
+            if (casing.hasOpenFace()) {
+                casing.sendPipeStats(true);
+            }
+        }
+    }
+
+    /**
+     * Get the number of steps that fit into the configured time budget in
+     * turbo mode, estimated from the duration of previous steps. Never less
+     * than the number of steps per tick at the specified power in regular mode.
+     *
+     * @param power the current power level of the controller.
+     * @return the number of steps to run this tick.
+     */
+    private int getTurboSteps(final int power) {
+        final int minSteps = power / 15;
+        if (nanosPerStep > 0) {
+            return (int) Math.max(minSteps, Math.min(CommonConfig.maxTurboStepsPerTick, CommonConfig.turboNanosPerTick / nanosPerStep));
+        } else {
+            return minSteps;
+        }
+    }
+
+    /**
+     * Stop tracing, if tracing is armed, keeping the trace.
+     */
+    private void stopTrace() {
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+        }
     }
 
     /**
@@ -547,6 +1475,8 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
      * @param toState the state to enter after clearing.
      */
     private void clear(final ControllerState toState) {
+        stopTrace();
+
         // Whatever we're clearing to, remove self from all casings first. If
         // we're clearing for a schedule that's fine because we'll find them
         // again (or won't, in which case we're unloading/partially unloaded
@@ -565,6 +1495,10 @@ public final class ControllerTileEntity extends ComputerTileEntity implements IT
             casings.forEach(CasingTileEntity::onDisabled);
         }
         casings.clear();
+        changedParts.clear();
+        removedCasings.clear();
+        redstoneCasings.clear();
+        onModulesChanged();
 
         state = toState;
     }
@@ -77,6 +77,7 @@ public final class ModItemModelProvider extends ItemModelProvider {
             .end();
 
         module(Items.AUDIO_MODULE, BLOCK_FOLDER + "/overlay/audio_module");
+        module(Items.BRIDGE_MODULE, BLOCK_FOLDER + "/overlay/bridge_module");
         module(Items.DISPLAY_MODULE, ITEM_FOLDER + "/display_module");
         module(Items.EXECUTION_MODULE, BLOCK_FOLDER + "/overlay/execution_module_running");
         module(Items.FACADE_MODULE, mcLoc(BLOCK_FOLDER + "/iron_block"));
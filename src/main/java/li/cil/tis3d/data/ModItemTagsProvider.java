@@ -22,6 +22,7 @@ public class ModItemTagsProvider extends ItemTagsProvider {
 
         tag(MODULES).add(
             AUDIO_MODULE.get(),
+            BRIDGE_MODULE.get(),
             DISPLAY_MODULE.get(),
             EXECUTION_MODULE.get(),
             FACADE_MODULE.get(),
@@ -69,6 +69,9 @@ public class ModRecipesProvider extends RecipeProvider {
         module(Items.AUDIO_MODULE, 2, net.minecraft.item.Items.NOTE_BLOCK)
             .unlockedBy("has_sequencer_module", inventoryChange(Items.SEQUENCER_MODULE.get()))
             .save(consumer);
+        module(Items.BRIDGE_MODULE, 2, net.minecraft.item.Items.ENDER_EYE)
+            .unlockedBy("has_infrared_module", inventoryChange(Items.INFRARED_MODULE.get()))
+            .save(consumer);
         module(Items.DISPLAY_MODULE, 2, Items.PRISM.get())
             .unlockedBy("has_execution_module", inventoryChange(Items.EXECUTION_MODULE.get()))
             .save(consumer);